@@ -1,10 +1,11 @@
 package com.kaori;
 
 import com.kaori.kaori.Kaori;
+import com.kaori.kaori.Options;
 
 public class Main {
     public static void main(String[] args) {
-        Kaori kaori = new Kaori();
+        Kaori kaori = new Kaori(Options.parse(args));
 
         kaori.start();
     }
@@ -0,0 +1,143 @@
+package com.kaori.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import com.kaori.compiler.bytecode.Bytecode;
+import com.kaori.compiler.bytecode.BytecodeGenerator;
+import com.kaori.compiler.bytecode.PeepholeOptimizer;
+import com.kaori.compiler.bytecode.Superinstructions;
+import com.kaori.compiler.lexer.Lexer;
+import com.kaori.compiler.lexer.TokenStream;
+import com.kaori.compiler.optimizer.ConstantFolder;
+import com.kaori.compiler.semantic.Resolver;
+import com.kaori.compiler.semantic.TailCallMarker;
+import com.kaori.compiler.semantic.TypeChecker;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.Parser;
+import com.kaori.kaori.Options;
+import com.kaori.runtime.KaoriVM;
+
+/*
+ * Times the switch loop of KaoriVM against its threaded dispatch on a few
+ * small workloads. Takes the same --superinstructions and --peephole flags
+ * as Main, programs are compiled once and every run gets a fresh VM
+ */
+public class DispatchBenchmark {
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    private static final String[][] WORKLOADS = {
+            { "arithmetic", """
+                    total: f64 = 0;
+                    for i: f64 = 0; i < 3000000; i++ {
+                        total = total + i * 2 % 7 - i / 3;
+                    }
+                    print(total);
+                    """ },
+            { "branches", """
+                    evens: f64 = 0;
+                    odds: f64 = 0;
+                    for i: f64 = 0; i < 1000; i++ {
+                        for j: f64 = 0; j < 1000; j++ {
+                            if (i + j) % 2 == 0 {
+                                evens = evens + 1;
+                            } else {
+                                odds = odds + 1;
+                            }
+                        }
+                    }
+                    print(evens - odds);
+                    """ },
+            { "calls", """
+                    total: f64 = 0;
+                    def add(x: f64, y: f64 = 1) -> void {
+                        total = total + x * y;
+                    }
+                    for i: f64 = 0; i < 1000000; i++ {
+                        add(i);
+                        add(i, 2);
+                    }
+                    print(total);
+                    """ },
+            { "tail calls", """
+                    total: f64 = 0;
+                    def count(n: f64) -> void {
+                        if n > 0 {
+                            total = total + n;
+                            count(n - 1);
+                        }
+                    }
+                    for i: f64 = 0; i < 20; i++ {
+                        count(100000);
+                    }
+                    print(total);
+                    """ },
+    };
+
+    public static void main(String[] args) {
+        Options options = Options.parse(args);
+        PrintStream out = System.out;
+
+        out.printf("%-12s %12s %12s %8s%n", "workload", "switch ms", "threaded ms", "speedup");
+
+        for (String[] workload : WORKLOADS) {
+            Bytecode bytecode = compile(workload[1], options);
+
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+            double switched = time(bytecode, Options.Dispatch.SWITCH);
+            double threaded = time(bytecode, Options.Dispatch.THREADED);
+
+            System.setOut(out);
+
+            out.printf("%-12s %12.2f %12.2f %7.2fx%n", workload[0], switched, threaded, switched / threaded);
+        }
+    }
+
+    /* Best of RUNS after WARMUP untimed runs, in milliseconds */
+    private static double time(Bytecode bytecode, Options.Dispatch dispatch) {
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            KaoriVM vm = new KaoriVM(bytecode);
+            long start = System.nanoTime();
+
+            switch (dispatch) {
+                case SWITCH -> vm.run();
+                case THREADED -> vm.runThreaded();
+            }
+
+            long elapsed = System.nanoTime() - start;
+
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+
+        return best / 1_000_000.0;
+    }
+
+    private static Bytecode compile(String source, Options options) {
+        TokenStream tokens = new TokenStream(new Lexer(source).scan(), source);
+        List<DeclarationAST> declarations = new Parser(tokens).declarations();
+
+        new Resolver(declarations).run();
+        new TypeChecker(declarations).run();
+        new ConstantFolder(declarations).run();
+        new TailCallMarker(declarations).run();
+
+        Bytecode bytecode = new BytecodeGenerator(declarations).bytecode();
+
+        if (options.superinstructions()) {
+            bytecode = new Superinstructions().apply(bytecode);
+        }
+
+        if (options.peephole()) {
+            bytecode = new PeepholeOptimizer().apply(bytecode);
+        }
+
+        return bytecode;
+    }
+}
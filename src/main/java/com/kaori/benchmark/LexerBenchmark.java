@@ -0,0 +1,131 @@
+package com.kaori.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.kaori.compiler.lexer.Lexer;
+import com.kaori.compiler.lexer.MappedSource;
+import com.kaori.compiler.lexer.Source;
+import com.kaori.compiler.lexer.StringSource;
+
+/*
+ * Lexing throughput on a generated program of a few megabytes, read from a
+ * String and from a memory-mapped file, against the BaselineLexer on the
+ * same String. The first argument scales the program in thousands of
+ * statements, 50 by default
+ */
+public class LexerBenchmark {
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    private static final String STATEMENTS = """
+            total_%1$d: f64 = %1$d.25 * 3 - (%1$d %% 7) / 2;
+            label_%1$d: str = "generated line %1$d";
+            /* keep every %1$d-th value */
+            if total_%1$d >= 10 && !(total_%1$d == 3) || false {
+                for i: f64 = 0; i <= total_%1$d; i++ {
+                    total_%1$d = total_%1$d + i;
+                }
+            } else {
+                print(label_%1$d);
+            }
+            """;
+
+    public static void main(String[] args) throws IOException {
+        int thousands = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        String source = program(thousands * 1000);
+        Path file = Files.createTempFile("kaori-lexer", ".kaori");
+        PrintStream out = System.out;
+
+        try {
+            Files.writeString(file, source, StandardCharsets.UTF_8);
+
+            double megabytes = source.length() / (1024.0 * 1024.0);
+            long tokens = lex(new StringSource(source));
+
+            out.printf("%.1f MB, %d tokens%n", megabytes, tokens);
+            out.printf("%-10s %10s %10s %14s %9s%n", "source", "ms", "MB/s", "tokens/s", "speedup");
+
+            double baseline = time(() -> new StringSource(source), LexerBenchmark::baseline);
+            double string = time(() -> new StringSource(source), LexerBenchmark::lex);
+            double mapped = time(() -> MappedSource.open(file), LexerBenchmark::lex);
+
+            print(out, "baseline", baseline, baseline, megabytes, tokens);
+            print(out, "string", string, baseline, megabytes, tokens);
+            print(out, "mapped", mapped, baseline, megabytes, tokens);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String program(int statements) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < statements; i++) {
+            builder.append(String.format(STATEMENTS, i));
+        }
+
+        return builder.toString();
+    }
+
+    private static void print(PrintStream out, String name, double ms, double baseline, double megabytes,
+            long tokens) {
+        out.printf("%-10s %10.2f %10.1f %14.0f %8.2fx%n", name, ms, megabytes / ms * 1000, tokens / ms * 1000,
+                baseline / ms);
+    }
+
+    private static long lex(Source source) {
+        Lexer lexer = new Lexer(source);
+        long tokens = 0;
+
+        while (lexer.next() != null) {
+            source.release(lexer.position());
+            tokens++;
+        }
+
+        return tokens;
+    }
+
+    private static long baseline(Source source) {
+        BaselineLexer lexer = new BaselineLexer(source);
+        long tokens = 0;
+
+        while (lexer.next() != null) {
+            source.release(lexer.position());
+            tokens++;
+        }
+
+        return tokens;
+    }
+
+    /* Best of RUNS after WARMUP untimed runs, in milliseconds */
+    private static double time(Opener opener, Scanner scanner) throws IOException {
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            Source source = opener.open();
+            long start = System.nanoTime();
+
+            scanner.scan(source);
+
+            long elapsed = System.nanoTime() - start;
+
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+
+        return best / 1_000_000.0;
+    }
+
+    private interface Opener {
+        Source open() throws IOException;
+    }
+
+    private interface Scanner {
+        long scan(Source source);
+    }
+}
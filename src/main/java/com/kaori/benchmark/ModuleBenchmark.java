@@ -0,0 +1,109 @@
+package com.kaori.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import com.kaori.compiler.module.ModuleLoader;
+import com.kaori.compiler.module.Program;
+import com.kaori.compiler.semantic.Resolver;
+import com.kaori.compiler.semantic.TypeChecker;
+
+/*
+ * Front end time of a generated program split into files, parsed and
+ * checked by one worker and by a pool with a worker per core. The first
+ * argument is the number of files, 8 by default, the second the functions
+ * in each file, 100 by default
+ */
+public class ModuleBenchmark {
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+
+    private static final String FUNCTION = """
+            def f%1$d_%2$d(x: f64) -> f64 {
+                total: f64 = x * %2$d + base%1$d;
+                while total > 100 {
+                    total = total - 3;
+                }
+                print(total);
+            }
+            """;
+
+    public static void main(String[] args) throws IOException {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int functions = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        Path directory = Files.createTempDirectory("kaori-modules");
+        PrintStream out = System.out;
+
+        try {
+            Path main = program(directory, files, functions);
+            ForkJoinPool single = new ForkJoinPool(1);
+            ForkJoinPool parallel = new ForkJoinPool();
+
+            out.printf("%d files of %d functions%n", files, functions);
+            out.printf("%-8s %8s %10s%n", "pool", "workers", "ms");
+            out.printf("%-8s %8d %10.2f%n", "single", 1, time(main, single));
+            out.printf("%-8s %8d %10.2f%n", "parallel", parallel.getParallelism(), time(main, parallel));
+
+            single.shutdown();
+            parallel.shutdown();
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /* Files of the same size, all imported by a main file that calls into each */
+    private static Path program(Path directory, int files, int functions) throws IOException {
+        StringBuilder main = new StringBuilder();
+
+        for (int i = 0; i < files; i++) {
+            StringBuilder builder = new StringBuilder(String.format("base%d: f64 = %d;%n", i, i));
+
+            for (int j = 0; j < functions; j++) {
+                builder.append(String.format(FUNCTION, i, j));
+            }
+
+            Files.writeString(directory.resolve("module" + i + ".kaori"), builder, StandardCharsets.UTF_8);
+            main.insert(0, String.format("import \"module%d.kaori\";%n", i));
+            main.append(String.format("f%d_0(1);%n", i));
+        }
+
+        Path path = directory.resolve("main.kaori");
+
+        Files.writeString(path, main, StandardCharsets.UTF_8);
+
+        return path;
+    }
+
+    /* Best of RUNS after WARMUP untimed runs, in milliseconds */
+    private static double time(Path main, ForkJoinPool pool) throws IOException {
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            long start = System.nanoTime();
+            Program program = new ModuleLoader(pool).load(main);
+
+            program.check(pool, (declarations, globals) -> {
+                new Resolver(declarations, globals).run();
+                new TypeChecker(declarations, globals).run();
+            });
+
+            long elapsed = System.nanoTime() - start;
+
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+
+        return best / 1_000_000.0;
+    }
+}
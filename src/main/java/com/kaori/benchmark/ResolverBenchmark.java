@@ -0,0 +1,88 @@
+package com.kaori.benchmark;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import com.kaori.compiler.lexer.Lexer;
+import com.kaori.compiler.lexer.StringSource;
+import com.kaori.compiler.lexer.TokenStream;
+import com.kaori.compiler.semantic.Resolver;
+import com.kaori.compiler.semantic.SemanticAnalyzer;
+import com.kaori.compiler.semantic.TypeChecker;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.Parser;
+
+/*
+ * Resolving and type checking generated programs of growing size, to show
+ * the cost per declaration stays flat, as two passes and fused into the
+ * SemanticAnalyzer. Every declaration reads the one
+ * before it and every tenth is a function with a shadowing local, so the
+ * symbol table is exercised across scopes. The first argument is the
+ * largest program in thousands of declarations, 200 by default
+ */
+public class ResolverBenchmark {
+    private static final int WARMUP = 5;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int largest = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        PrintStream out = System.out;
+
+        out.printf("%-14s %10s %16s %10s%n", "declarations", "ms", "ns/declaration", "fused ms");
+
+        for (int thousands = largest / 8; thousands <= largest; thousands *= 2) {
+            int declarations = thousands * 1000;
+            List<DeclarationAST> program = parse(program(declarations));
+            double ms = time(() -> {
+                new Resolver(program).run();
+                new TypeChecker(program).run();
+            });
+            double fused = time(() -> new SemanticAnalyzer(program).run());
+
+            out.printf("%-14d %10.2f %16.1f %10.2f%n", declarations, ms, ms * 1_000_000 / declarations, fused);
+        }
+    }
+
+    private static String program(int declarations) {
+        StringBuilder builder = new StringBuilder("v0: f64 = 0;\n");
+
+        for (int i = 1; i < declarations; i++) {
+            int last = i - 1 > 0 && (i - 1) % 10 == 0 ? i - 2 : i - 1;
+            String previous = "v" + last;
+
+            if (i % 10 == 0) {
+                builder.append(String.format("def f%d(%s: f64) -> void {%n    %s = %s + v0;%n}%n", i, previous,
+                        previous, previous));
+            } else {
+                builder.append(String.format("v%d: f64 = %s + 1;%n", i, previous));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static List<DeclarationAST> parse(String source) {
+        Parser parser = new Parser(new TokenStream(new Lexer(new StringSource(source))));
+
+        return parser.declarations();
+    }
+
+    /* Best of RUNS after WARMUP untimed runs, in milliseconds */
+    private static double time(Runnable analysis) {
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            long start = System.nanoTime();
+
+            analysis.run();
+
+            long elapsed = System.nanoTime() - start;
+
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+
+        return best / 1_000_000.0;
+    }
+}
@@ -3,6 +3,7 @@ package com.kaori.compiler;
 import java.util.List;
 
 import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.DeclarationList;
 import com.kaori.compiler.syntax.ExpressionAST;
 import com.kaori.compiler.syntax.StatementAST;
 
@@ -22,10 +23,14 @@ public abstract class Visitor<T> {
     }
 
     protected void visitDeclarations(List<DeclarationAST> declarations) {
-        for (DeclarationAST declaration : declarations) {
-            if (declaration instanceof DeclarationAST.Function decl) {
-                this.line = declaration.line();
-                this.visitFunctionDeclaration(decl);
+        if (declarations instanceof DeclarationList list) {
+            this.visitFunctionDeclarations(list);
+        } else {
+            for (DeclarationAST declaration : declarations) {
+                if (declaration instanceof DeclarationAST.Function decl) {
+                    this.line = declaration.line();
+                    this.visitFunctionDeclaration(decl);
+                }
             }
         }
 
@@ -35,6 +40,18 @@ public abstract class Visitor<T> {
         }
     }
 
+    /* Only builds the functions, the rest of the list is built once by the loop that visits it */
+    private void visitFunctionDeclarations(DeclarationList declarations) {
+        for (int i = 0; i < declarations.size(); i++) {
+            if (declarations.function(i)) {
+                DeclarationAST.Function declaration = (DeclarationAST.Function) declarations.get(i);
+
+                this.line = declaration.line();
+                this.visitFunctionDeclaration(declaration);
+            }
+        }
+    }
+
     protected void visit(DeclarationAST declaration) {
         if (declaration instanceof DeclarationAST.Variable decl) {
             this.visitVariableDeclaration(decl);
@@ -1,15 +1,131 @@
 package com.kaori.compiler.bytecode;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-public record Bytecode(List<Instruction> instructions) {
+/*
+ * Packed bytecode: every instruction is stored in the code array as its opcode
+ * ordinal followed by its inline int operands. PUSH_CONST operands index the
+ * constant pool and jump operands are absolute offsets into the code array.
+ * maxStack is the deepest the operand stack can grow at the top level,
+ * computed at compile time, frameSize is how many slots the top level lays
+ * its variables out over and functions is the function table
+ */
+public record Bytecode(int[] code, Object[] constants, int maxStack, int frameSize, Function[] functions) {
+    /* Decodes the code array, turning branch offsets into instruction indexes */
+    public List<Instruction> instructions() {
+        List<Instruction> instructions = new ArrayList<>();
+        int[] indexes = new int[this.code.length + 1];
+
+        int offset = 0;
+
+        while (offset < this.code.length) {
+            Opcode opcode = Opcode.of(this.code[offset]);
+            int[] operands = Arrays.copyOfRange(this.code, offset + 1, offset + opcode.size());
+
+            indexes[offset] = instructions.size();
+            instructions.add(new Instruction(opcode, operands));
+
+            offset += opcode.size();
+        }
+
+        indexes[this.code.length] = instructions.size();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+
+            if (instruction.opcode().branch) {
+                instructions.set(i, instruction.withTarget(indexes[instruction.target()]));
+            }
+        }
+
+        return instructions;
+    }
+
+    /*
+     * Encodes instructions back into a packed Bytecode sharing this constant
+     * pool, recomputing the operand stack bounds and function entries for the
+     * rewritten code
+     */
+    public Bytecode withInstructions(List<Instruction> instructions) {
+        int[] offsets = new int[instructions.size() + 1];
+        int size = 0;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            offsets[i] = size;
+            size += instructions.get(i).opcode().size();
+        }
+
+        offsets[instructions.size()] = size;
+
+        int[] code = new int[size];
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            int offset = offsets[i];
+
+            code[offset] = instruction.opcode().ordinal();
+
+            for (int j = 0; j < instruction.operands().length; j++) {
+                code[offset + 1 + j] = instruction.operand(j);
+            }
+
+            if (instruction.opcode().branch) {
+                code[offset + instruction.operands().length] = offsets[instruction.target()];
+            }
+        }
+
+        Function[] functions = this.functions.clone();
+
+        for (Instruction instruction : instructions) {
+            if (instruction.opcode() == Opcode.PUSH_FUNCTION) {
+                Function function = functions[instruction.operand(0)];
+                int entry = instruction.target();
+
+                functions[instruction.operand(0)] = function.relocated(offsets[entry],
+                        InstructionBuffer.maxStack(instructions, entry));
+            }
+        }
+
+        return new Bytecode(code, this.constants, InstructionBuffer.maxStack(instructions, 0), this.frameSize,
+                functions);
+    }
+
     @Override
     public String toString() {
         List<String> bytecode = new ArrayList<>();
 
-        for (Instruction instruction : this.instructions) {
+        int index = 0;
+
+        while (index < this.code.length) {
+            Opcode opcode = Opcode.of(this.code[index]);
+
+            StringBuilder instruction = new StringBuilder();
+            instruction.append(String.format("%04d %s", index, opcode));
+
+            for (int i = 1; i <= opcode.operands; i++) {
+                int operand = this.code[index + i];
+
+                if (opcode == Opcode.PUSH_CONST || opcode == Opcode.PUSH_CONST_REF) {
+                    instruction.append(" ").append(this.constants[operand]);
+                } else if (opcode == Opcode.PUSH_FUNCTION && i == 1) {
+                    instruction.append(" ").append(this.functions[operand].name());
+                } else {
+                    instruction.append(" ").append(operand);
+                }
+            }
+
             bytecode.add(instruction.toString());
+
+            index += opcode.size();
+        }
+
+        bytecode.add(String.format("top level: frame %d, stack %d", this.frameSize, this.maxStack));
+
+        for (Function function : this.functions) {
+            bytecode.add(String.format("function %s: entry %04d, arity %d, frame %d, stack %d", function.name(),
+                    function.entry(), function.arity(), function.frameSize(), function.maxStack()));
         }
 
         return String.join("\n", bytecode);
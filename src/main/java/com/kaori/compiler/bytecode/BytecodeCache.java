@@ -0,0 +1,146 @@
+package com.kaori.compiler.bytecode;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * Directory of compiled programs, one file per key. A key hashes the source
+ * together with the compiler version and the options that shape the
+ * bytecode, so editing the program, upgrading the compiler or switching
+ * optimizations each land on a different entry. Entries are read through a
+ * memory mapping and written to a temporary file first, so concurrent runs
+ * only ever see complete entries
+ */
+public class BytecodeCache {
+    private static final String EXTENSION = ".kbc";
+
+    /* Digest of the compiler's class files, computed by the first key of the process */
+    private static byte[] compiler;
+
+    private final Path directory;
+    private final BytecodeFormat format;
+
+    public BytecodeCache(Path directory) {
+        this.directory = directory;
+        this.format = new BytecodeFormat();
+    }
+
+    /*
+     * The compiler version is the digest of the compiler's own class files,
+     * so any change to a pass, to code generation or to the opcode table
+     * invalidates every entry, without anyone having to bump VERSION. Every
+     * file of the program is hashed, so editing an imported file misses too.
+     * Files are hashed through a memory mapping so they are never read into
+     * the heap
+     */
+    public String key(List<Path> sources, String options) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update(("kaori " + BytecodeFormat.VERSION + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(compiler());
+            digest.update((options + "\n").getBytes(StandardCharsets.UTF_8));
+
+            for (Path source : sources) {
+                try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                    digest.update((source + " " + channel.size() + "\n").getBytes(StandardCharsets.UTF_8));
+                    digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                }
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException("SHA-256 is not available", error);
+        }
+    }
+
+    /*
+     * Run from a jar the whole jar is hashed, run from a class directory
+     * every class file under com/kaori is, in a fixed order. Only the
+     * directory walk reads files into the heap, one class at a time
+     */
+    private static synchronized byte[] compiler() throws IOException, NoSuchAlgorithmException {
+        if (compiler != null) {
+            return compiler;
+        }
+
+        CodeSource source = BytecodeCache.class.getProtectionDomain().getCodeSource();
+
+        if (source == null) {
+            throw new IllegalStateException("The compiler's class files can't be located");
+        }
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        Path location;
+
+        try {
+            location = Path.of(source.getLocation().toURI());
+        } catch (URISyntaxException error) {
+            throw new IllegalStateException("The compiler's class files can't be located", error);
+        }
+
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> files = Files.walk(location.resolve("com").resolve("kaori"))) {
+                for (Path file : files.filter(path -> path.toString().endsWith(".class")).sorted().toList()) {
+                    digest.update((location.relativize(file) + "\n").getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(file));
+                }
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(location, StandardOpenOption.READ)) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        compiler = digest.digest();
+
+        return compiler;
+    }
+
+    /* A missing or damaged entry is a miss, the caller compiles and stores it again */
+    public Bytecode load(String key) {
+        try (FileChannel channel = FileChannel.open(this.path(key), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            return this.format.read(key, buffer);
+        } catch (IOException | RuntimeException error) {
+            return null;
+        }
+    }
+
+    /* Failing to write only costs the next run a compile, so errors are ignored */
+    public void store(String key, Bytecode bytecode) {
+        try {
+            Files.createDirectories(this.directory);
+
+            Path temporary = Files.createTempFile(this.directory, key, ".tmp");
+
+            try {
+                Files.write(temporary, this.format.write(key, bytecode));
+                Files.move(temporary, this.path(key), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException error) {
+            return;
+        }
+    }
+
+    private Path path(String key) {
+        return this.directory.resolve(key + EXTENSION);
+    }
+}
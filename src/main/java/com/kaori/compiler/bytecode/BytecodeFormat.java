@@ -0,0 +1,163 @@
+package com.kaori.compiler.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/*
+ * Binary encoding of a Bytecode, big endian:
+ *
+ *   magic, version, key, maxStack, frameSize
+ *   code length, code ints
+ *   constant count, constants as a tag byte followed by the value
+ *   function count, functions as name, arity, entry, frameSize, maxStack
+ *   CRC32 of everything before it
+ *
+ * Strings are an int byte length followed by UTF-8. The key is whatever the
+ * caller identifies the program with, it is stored so a reader can check it
+ * got the bytecode it asked for
+ */
+public class BytecodeFormat {
+    public static final int MAGIC = 0x4B414F52;
+    /* Bumped when the layout changes, a compiler change already moves every cache key */
+    public static final int VERSION = 2;
+
+    private static final byte NULL = 0;
+    private static final byte NUMBER = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte STRING = 3;
+
+    public byte[] write(String key, Bytecode bytecode) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            this.writeString(out, key);
+            out.writeInt(bytecode.maxStack());
+            out.writeInt(bytecode.frameSize());
+
+            out.writeInt(bytecode.code().length);
+
+            for (int value : bytecode.code()) {
+                out.writeInt(value);
+            }
+
+            out.writeInt(bytecode.constants().length);
+
+            for (Object constant : bytecode.constants()) {
+                this.writeConstant(out, constant);
+            }
+
+            out.writeInt(bytecode.functions().length);
+
+            for (Function function : bytecode.functions()) {
+                this.writeString(out, function.name());
+                out.writeInt(function.arity());
+                out.writeInt(function.entry());
+                out.writeInt(function.frameSize());
+                out.writeInt(function.maxStack());
+            }
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+
+        crc.update(payload);
+
+        return ByteBuffer.allocate(payload.length + Integer.BYTES).put(payload).putInt((int) crc.getValue()).array();
+    }
+
+    private void writeConstant(DataOutputStream out, Object constant) throws IOException {
+        if (constant == null) {
+            out.writeByte(NULL);
+        } else if (constant instanceof Double number) {
+            out.writeByte(NUMBER);
+            out.writeDouble(number);
+        } else if (constant instanceof Boolean bool) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(bool);
+        } else if (constant instanceof String string) {
+            out.writeByte(STRING);
+            this.writeString(out, string);
+        } else {
+            throw new IllegalStateException("Unhandled constant type: " + constant.getClass().getSimpleName());
+        }
+    }
+
+    private void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /* Returns null when the buffer holds another key, fails on anything that isn't this format */
+    public Bytecode read(String key, ByteBuffer buffer) {
+        int end = buffer.limit() - Integer.BYTES;
+        CRC32 crc = new CRC32();
+
+        crc.update(buffer.duplicate().limit(end));
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalStateException("Not a Kaori bytecode file of version " + VERSION);
+        }
+
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IllegalStateException("Damaged Kaori bytecode file");
+        }
+
+        if (!this.readString(buffer).equals(key)) {
+            return null;
+        }
+
+        int maxStack = buffer.getInt();
+        int frameSize = buffer.getInt();
+        int[] code = new int[buffer.getInt()];
+
+        buffer.asIntBuffer().get(code);
+        buffer.position(buffer.position() + code.length * Integer.BYTES);
+
+        Object[] constants = new Object[buffer.getInt()];
+
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = this.readConstant(buffer);
+        }
+
+        Function[] functions = new Function[buffer.getInt()];
+
+        for (int i = 0; i < functions.length; i++) {
+            String name = this.readString(buffer);
+
+            functions[i] = new Function(name, buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+        }
+
+        return new Bytecode(code, constants, maxStack, frameSize, functions);
+    }
+
+    private Object readConstant(ByteBuffer buffer) {
+        byte tag = buffer.get();
+
+        return switch (tag) {
+            case NULL -> null;
+            case NUMBER -> buffer.getDouble();
+            case BOOLEAN -> buffer.get() != 0;
+            case STRING -> this.readString(buffer);
+            default -> throw new IllegalStateException("Unhandled constant tag: " + tag);
+        };
+    }
+
+    private String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,63 +1,377 @@
 package com.kaori.compiler.bytecode;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.kaori.compiler.Visitor;
 import com.kaori.compiler.syntax.DeclarationAST;
 import com.kaori.compiler.syntax.ExpressionAST;
 import com.kaori.compiler.syntax.StatementAST;
+import com.kaori.compiler.syntax.TypeAST;
 
 public class BytecodeGenerator extends Visitor<Object> {
-    public final List<Instruction> instructions;
+    private int[] code;
+    private int size;
+    private final List<Object> constants;
+    private final Map<Object, Integer> constantIndexes;
+    private int depth;
+    private int maxDepth;
+    private final List<Function> functions;
+    private final Map<DeclarationAST.Function, Integer> functionIndexes;
+    private final List<Integer> functionPushes;
+    private int declared;
+    private int frameSize;
 
     public BytecodeGenerator(List<DeclarationAST> declarations) {
         super(declarations);
-        this.instructions = new ArrayList<>();
+        this.code = new int[64];
+        this.size = 0;
+        this.constants = new ArrayList<>();
+        this.constantIndexes = new HashMap<>();
+        this.depth = 0;
+        this.maxDepth = 0;
+        this.functions = new ArrayList<>();
+        this.functionIndexes = new IdentityHashMap<>();
+        this.functionPushes = new ArrayList<>();
+        this.declared = 0;
+        this.frameSize = 0;
     }
 
     public Bytecode bytecode() {
         this.visitDeclarations(this.declarations);
 
-        return new Bytecode(instructions);
+        return new Bytecode(Arrays.copyOf(this.code, this.size), this.constants.toArray(), this.maxDepth,
+                this.frameSize, this.functions.toArray(new Function[0]));
     }
 
-    public void emit(Opcode opcode) {
-        Instruction instruction = new Instruction(opcode, null);
+    private void write(int value) {
+        if (this.size == this.code.length) {
+            this.code = Arrays.copyOf(this.code, this.code.length * 2);
+        }
+
+        this.code[this.size] = value;
+        this.size++;
+    }
+
+    /* Tracks the operand stack depth so the VM can preallocate its stack */
+    private void account(Opcode opcode) {
+        this.depth += opcode.effect;
+        this.maxDepth = Math.max(this.maxDepth, this.depth);
+    }
+
+    public int emit(Opcode opcode) {
+        int position = this.size;
+
+        this.write(opcode.ordinal());
+        this.account(opcode);
+
+        return position;
+    }
+
+    public int emit(Opcode opcode, int operand) {
+        int position = this.size;
+
+        this.write(opcode.ordinal());
+        this.write(operand);
+        this.account(opcode);
+
+        return position;
+    }
+
+    public int emit(Opcode opcode, int first, int second) {
+        int position = this.size;
+
+        this.write(opcode.ordinal());
+        this.write(first);
+        this.write(second);
+        this.account(opcode);
+
+        return position;
+    }
+
+    /* Points the branch emitted at position to target */
+    public void patch(int position, int target) {
+        this.code[position + Opcode.of(this.code[position]).operands] = target;
+    }
+
+    /*
+     * Counts a slot in the current frame. Slots are laid out at compile time
+     * like the Resolver's offsets, a block gives its slots back when it ends
+     * so sibling blocks share them, and frameSize is the most any point of
+     * the frame needs
+     */
+    private void declare() {
+        this.declared++;
+        this.frameSize = Math.max(this.frameSize, this.declared);
+    }
+
+    /* Returns the pool index of value, reusing the slot of an equal constant */
+    public int constant(Object value) {
+        Integer index = this.constantIndexes.get(value);
+
+        if (index == null) {
+            index = this.constants.size();
+            this.constants.add(value);
+            this.constantIndexes.put(value, index);
+        }
+
+        return index;
+    }
+
+    /* Numbers and booleans are kept unboxed, everything else is a reference */
+    private boolean reference(TypeAST type) {
+        return !type.equals(TypeAST.Primitive.NUMBER) && !type.equals(TypeAST.Primitive.BOOLEAN);
+    }
+
+    private Opcode binary(ExpressionAST.BinaryOperator operator, TypeAST operand) {
+        return switch (operator) {
+            case PLUS -> Opcode.ADD_F64;
+            case MINUS -> Opcode.SUB_F64;
+            case MULTIPLY -> Opcode.MUL_F64;
+            case DIVIDE -> Opcode.DIV_F64;
+            case MODULO -> Opcode.MOD_F64;
+            case GREATER -> Opcode.GT_F64;
+            case GREATER_EQUAL -> Opcode.GE_F64;
+            case LESS -> Opcode.LT_F64;
+            case LESS_EQUAL -> Opcode.LE_F64;
+            case AND, OR -> throw new IllegalStateException("Unhandled logical operator: " + operator);
+            case EQUAL -> operand.equals(TypeAST.Primitive.NUMBER) ? Opcode.EQ_F64
+                    : operand.equals(TypeAST.Primitive.BOOLEAN) ? Opcode.EQ_BOOL : Opcode.EQ_STR;
+            case NOT_EQUAL -> operand.equals(TypeAST.Primitive.NUMBER) ? Opcode.NE_F64
+                    : operand.equals(TypeAST.Primitive.BOOLEAN) ? Opcode.NE_BOOL : Opcode.NE_STR;
+        };
+    }
+
+    /*
+     * The compare and branch for a comparison that jumps when it evaluates to
+     * when, null when there is none. Ordered comparisons only jump when they
+     * fail, since NaN makes both a < b and a >= b false
+     */
+    private Opcode comparison(ExpressionAST.BinaryOperator operator, TypeAST operand, boolean when) {
+        if (!operand.equals(TypeAST.Primitive.NUMBER)) {
+            return null;
+        }
+
+        if (when) {
+            return switch (operator) {
+                case EQUAL -> Opcode.JUMP_UNLESS_NE_F64;
+                case NOT_EQUAL -> Opcode.JUMP_UNLESS_EQ_F64;
+                default -> null;
+            };
+        }
+
+        return switch (operator) {
+            case EQUAL -> Opcode.JUMP_UNLESS_EQ_F64;
+            case NOT_EQUAL -> Opcode.JUMP_UNLESS_NE_F64;
+            case GREATER -> Opcode.JUMP_UNLESS_GT_F64;
+            case GREATER_EQUAL -> Opcode.JUMP_UNLESS_GE_F64;
+            case LESS -> Opcode.JUMP_UNLESS_LT_F64;
+            case LESS_EQUAL -> Opcode.JUMP_UNLESS_LE_F64;
+            default -> null;
+        };
+    }
+
+    private boolean logical(ExpressionAST.BinaryOperator operator) {
+        return operator == ExpressionAST.BinaryOperator.AND || operator == ExpressionAST.BinaryOperator.OR;
+    }
+
+    /* Points every branch in jumps to target */
+    private void patch(List<Integer> jumps, int target) {
+        for (int jump : jumps) {
+            this.patch(jump, target);
+        }
+    }
+
+    /* Ends a condition that left a boolean on the stack */
+    private void branch(boolean when, List<Integer> jumps) {
+        jumps.add(this.emit(when ? Opcode.JUMP_IF_TRUE : Opcode.JUMP_IF_FALSE, -1));
+    }
+
+    /*
+     * The value of && and || once the left operand went through branch: the
+     * right operand's value when the left one didn't decide, the deciding
+     * value otherwise. Only one of the two ends up on the stack
+     */
+    private int exitLogical(List<Integer> jumps, boolean decides) {
+        int jumpEnd = this.emit(Opcode.JUMP, -1);
+
+        this.patch(jumps, this.size);
+        this.depth--;
+        this.literal(TypeAST.Primitive.BOOLEAN, decides);
+
+        return jumpEnd;
+    }
+
+    private Opcode unary(ExpressionAST.UnaryOperator operator) {
+        return switch (operator) {
+            case NEGATE -> Opcode.NEG_F64;
+            case NOT -> Opcode.NOT_BOOL;
+        };
+    }
+
+    private void store(TypeAST type, int offset, boolean local) {
+        boolean reference = this.reference(type);
+
+        if (local) {
+            this.emit(reference ? Opcode.STORE_LOCAL_REF : Opcode.STORE_LOCAL, offset);
+        } else {
+            this.emit(reference ? Opcode.STORE_GLOBAL_REF : Opcode.STORE_GLOBAL, offset);
+        }
+    }
+
+    /* Stores like store but leaves the value on the stack, an assignment is an expression */
+    private void storeKeep(TypeAST type, int offset, boolean local) {
+        boolean reference = this.reference(type);
 
-        this.instructions.add(instruction);
+        if (local) {
+            this.emit(reference ? Opcode.STORE_LOCAL_REF_KEEP : Opcode.STORE_LOCAL_KEEP, offset);
+        } else {
+            this.emit(reference ? Opcode.STORE_GLOBAL_REF_KEEP : Opcode.STORE_GLOBAL_KEEP, offset);
+        }
     }
 
-    public void emit(Opcode opcode, Object operand) {
-        Instruction instruction = new Instruction(opcode, operand);
+    private void load(TypeAST type, int offset, boolean local) {
+        boolean reference = this.reference(type);
 
-        this.instructions.add(instruction);
+        if (local) {
+            this.emit(reference ? Opcode.LOAD_LOCAL_REF : Opcode.LOAD_LOCAL, offset);
+        } else {
+            this.emit(reference ? Opcode.LOAD_GLOBAL_REF : Opcode.LOAD_GLOBAL, offset);
+        }
+    }
+
+    private void literal(TypeAST type, Object value) {
+        Opcode opcode = this.reference(type) ? Opcode.PUSH_CONST_REF : Opcode.PUSH_CONST;
+
+        this.emit(opcode, this.constant(value));
+    }
+
+    private void print(TypeAST type) {
+        if (type.equals(TypeAST.Primitive.NUMBER)) {
+            this.emit(Opcode.PRINT_F64);
+        } else if (type.equals(TypeAST.Primitive.BOOLEAN)) {
+            this.emit(Opcode.PRINT_BOOL);
+        } else {
+            this.emit(Opcode.PRINT_REF);
+        }
+    }
+
+    /* A declaration is a store to the next slot of the frame, it never runs any bookkeeping */
+    private void declareVariable(TypeAST type) {
+        this.store(type, this.declared, true);
+        this.declare();
+    }
+
+    /* Returns the index of a function whose entry is filled in by exitFunction */
+    private int declareFunction() {
+        int index = this.functions.size();
+
+        this.functions.add(null);
+        this.functionPushes.add(this.emit(Opcode.PUSH_FUNCTION, index, -1));
+
+        this.emit(Opcode.STORE_LOCAL_REF, this.declared);
+        this.declare();
+
+        return index;
+    }
+
+    /* Starts a body behind a jump over it, with the counters of a fresh frame */
+    private Frame enterFunction(int index) {
+        int jumpEnd = this.emit(Opcode.JUMP, -1);
+        Frame frame = new Frame(jumpEnd, this.size, this.depth, this.maxDepth, this.declared, this.frameSize);
+
+        this.patch(this.functionPushes.get(index), this.size);
+
+        this.depth = 0;
+        this.maxDepth = 0;
+        this.declared = 0;
+        this.frameSize = 0;
+
+        return frame;
+    }
+
+    private void exitFunction(Frame frame, int index, String name, int arity) {
+        this.emit(Opcode.RETURN);
+
+        this.functions.set(index, new Function(name, arity, frame.entry(), this.frameSize, this.maxDepth));
+
+        this.depth = frame.depth();
+        this.maxDepth = frame.maxDepth();
+        this.declared = frame.declared();
+        this.frameSize = frame.frameSize();
+
+        this.patch(frame.jumpEnd(), this.size);
+    }
+
+    /* Arguments already fill the first slots of the frame, the default only runs for the ones left out */
+    private int enterParameter(int index) {
+        return this.emit(Opcode.JUMP_IF_DECLARED, index, -1);
+    }
+
+    private void exitParameter(int jumpDeclared, TypeAST type) {
+        this.store(type, this.declared, true);
+        this.patch(jumpDeclared, this.size);
+        this.declare();
+    }
+
+    /*
+     * Emits a condition as branches, adding to jumps the ones taken when it
+     * evaluates to when and falling through otherwise, with nothing left on
+     * the stack. && and || never evaluate a right operand they don't need,
+     * ! swaps the sense and comparisons on numbers fuse with their branch
+     */
+    private void branch(ExpressionAST expression, boolean when, List<Integer> jumps) {
+        if (expression instanceof ExpressionAST.BinaryExpression binary && this.logical(binary.operator())) {
+            boolean decides = binary.operator() == ExpressionAST.BinaryOperator.OR;
+
+            if (decides == when) {
+                this.branch(binary.left(), when, jumps);
+                this.branch(binary.right(), when, jumps);
+            } else {
+                List<Integer> skips = new ArrayList<>();
+
+                this.branch(binary.left(), decides, skips);
+                this.branch(binary.right(), when, jumps);
+                this.patch(skips, this.size);
+            }
+        } else if (expression instanceof ExpressionAST.BinaryExpression binary
+                && this.comparison(binary.operator(), binary.left().type(), when) != null) {
+            this.visit(binary.left());
+            this.visit(binary.right());
+            jumps.add(this.emit(this.comparison(binary.operator(), binary.left().type(), when), -1));
+        } else if (expression instanceof ExpressionAST.UnaryExpression unary
+                && unary.operator() == ExpressionAST.UnaryOperator.NOT) {
+            this.branch(unary.left(), !when, jumps);
+        } else if (expression instanceof ExpressionAST.Literal literal && literal.value() instanceof Boolean value) {
+            if (value == when) {
+                jumps.add(this.emit(Opcode.JUMP, -1));
+            }
+        } else {
+            this.visit(expression);
+            this.branch(when, jumps);
+        }
     }
 
     @Override
     public Object visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
-        this.visit(expression.left());
-        this.visit(expression.right());
+        if (this.logical(expression.operator())) {
+            boolean decides = expression.operator() == ExpressionAST.BinaryOperator.OR;
+            List<Integer> jumps = new ArrayList<>();
 
-        ExpressionAST.BinaryOperator operator = expression.operator();
-
-        Opcode opcode = switch (operator) {
-            case PLUS -> Opcode.PLUS;
-            case MINUS -> Opcode.MINUS;
-            case MULTIPLY -> Opcode.MULTIPLY;
-            case DIVIDE -> Opcode.DIVIDE;
-            case MODULO -> Opcode.MODULO;
-            case GREATER -> Opcode.GREATER;
-            case GREATER_EQUAL -> Opcode.GREATER_EQUAL;
-            case LESS -> Opcode.LESS;
-            case LESS_EQUAL -> Opcode.LESS_EQUAL;
-            case AND -> Opcode.AND;
-            case OR -> Opcode.OR;
-            case EQUAL -> Opcode.EQUAL;
-            case NOT_EQUAL -> Opcode.NOT_EQUAL;
-        };
+            this.branch(expression.left(), decides, jumps);
+            this.visit(expression.right());
+            this.patch(this.exitLogical(jumps, decides), this.size);
+
+            return null;
+        }
 
-        this.emit(opcode);
+        this.visit(expression.left());
+        this.visit(expression.right());
+        this.emit(this.binary(expression.operator(), expression.left().type()));
 
         return null;
     }
@@ -65,15 +379,7 @@ public class BytecodeGenerator extends Visitor<Object> {
     @Override
     public Object visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
         this.visit(expression.left());
-
-        ExpressionAST.UnaryOperator operator = expression.operator();
-
-        Opcode opcode = switch (operator) {
-            case NEGATE -> Opcode.NEGATE;
-            case NOT -> Opcode.NOT;
-        };
-
-        this.emit(opcode);
+        this.emit(this.unary(expression.operator()));
 
         return null;
     }
@@ -84,36 +390,39 @@ public class BytecodeGenerator extends Visitor<Object> {
 
         ExpressionAST.Identifier identifier = expression.left();
 
-        if (identifier.local()) {
-            this.emit(Opcode.STORE_LOCAL, identifier.offset());
-        } else {
-            this.emit(Opcode.STORE_GLOBAL, identifier.offset());
-        }
+        this.storeKeep(expression.type(), identifier.offset(), identifier.local());
 
         return null;
     }
 
     @Override
     public Object visitLiteral(ExpressionAST.Literal expression) {
-        this.emit(Opcode.PUSH_CONST, expression.value());
+        this.literal(expression.type(), expression.value());
 
         return null;
     }
 
     @Override
     public Object visitIdentifier(ExpressionAST.Identifier expression) {
-
-        if (expression.local()) {
-            this.emit(Opcode.LOAD_LOCAL, expression.offset());
-        } else {
-            this.emit(Opcode.LOAD_GLOBAL, expression.offset());
-        }
+        this.load(expression.type(), expression.offset(), expression.local());
 
         return null;
     }
 
+    /* Arguments past the last parameter are never evaluated, like in the Interpreter */
     @Override
     public Object visitFunctionCall(ExpressionAST.FunctionCall expression) {
+        TypeAST.Function type = (TypeAST.Function) expression.callee().type();
+        int arguments = Math.min(type.parameters().size(), expression.arguments().size());
+
+        this.visit(expression.callee());
+
+        for (int i = 0; i < arguments; i++) {
+            this.visit(expression.arguments().get(i));
+        }
+
+        this.emit(expression.tail() ? Opcode.TAIL_CALL : Opcode.CALL, arguments);
+        this.depth -= arguments;
 
         return null;
     }
@@ -121,71 +430,93 @@ public class BytecodeGenerator extends Visitor<Object> {
     @Override
     public void visitPrintStatement(StatementAST.Print statement) {
         this.visit(statement.expression());
-
-        this.emit(Opcode.PRINT);
+        this.print(statement.expression().type());
     }
 
     @Override
     public void visitBlockStatement(StatementAST.Block statement) {
-        this.emit(Opcode.ENTER_SCOPE);
+        int declared = this.declared;
+
         this.visitDeclarations(statement.declarations());
-        this.emit(Opcode.EXIT_SCOPE);
+
+        this.declared = declared;
     }
 
     @Override
     public void visitExpressionStatement(StatementAST.Expr statement) {
         this.visit(statement.expression());
+        this.emit(Opcode.POP);
     }
 
     @Override
     public void visitIfStatement(StatementAST.If statement) {
-        this.visit(statement.condition());
+        List<Integer> jumpElse = new ArrayList<>();
 
-        int jumpElse = this.instructions.size();
-        this.emit(Opcode.JUMP_IF_FALSE, null);
+        this.branch(statement.condition(), false, jumpElse);
 
         this.visit(statement.thenBranch());
 
-        int jumpEnd = this.instructions.size();
-        this.emit(Opcode.JUMP, null);
+        int jumpEnd = this.emit(Opcode.JUMP, -1);
 
-        this.instructions.get(jumpElse).setOperand(this.instructions.size());
+        this.patch(jumpElse, this.size);
         this.visit(statement.elseBranch());
 
-        this.instructions.get(jumpEnd).setOperand(this.instructions.size());
+        this.patch(jumpEnd, this.size);
     }
 
     @Override
     public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
-        int jumpCondition = this.instructions.size();
-
-        this.visit(statement.condition());
+        int jumpCondition = this.size;
+        List<Integer> jumpEnd = new ArrayList<>();
 
-        int jumpEnd = this.instructions.size();
-        this.emit(Opcode.JUMP_IF_FALSE, null);
+        this.branch(statement.condition(), false, jumpEnd);
 
         this.visit(statement.block());
 
         this.emit(Opcode.JUMP, jumpCondition);
 
-        this.instructions.get(jumpEnd).setOperand(this.instructions.size());
+        this.patch(jumpEnd, this.size);
     }
 
     /* Declarations */
     @Override
     public void visitVariableDeclaration(DeclarationAST.Variable declaration) {
         this.visit(declaration.right());
-
-        this.emit(Opcode.DECLARE);
+        this.declareVariable(declaration.type());
     }
 
+    /* Functions are declared first in their scope, their entry is patched once the body is emitted */
     @Override
     public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
-
+        this.functionIndexes.put(declaration, this.declareFunction());
     }
 
+    /*
+     * The body is emitted in place behind a jump over it. Arguments already
+     * fill the first slots of the frame when it starts, so the prologue only
+     * evaluates the defaults of the parameters that were left out
+     */
     @Override
     public void visitFunctionDefinition(DeclarationAST.Function declaration) {
+        int index = this.functionIndexes.get(declaration);
+        Frame frame = this.enterFunction(index);
+
+        List<DeclarationAST.Variable> parameters = declaration.parameters();
+
+        for (int i = 0; i < parameters.size(); i++) {
+            DeclarationAST.Variable parameter = parameters.get(i);
+            int jumpDeclared = this.enterParameter(i);
+
+            this.visit(parameter.right());
+            this.exitParameter(jumpDeclared, parameter.type());
+        }
+
+        this.visitDeclarations(declaration.block().declarations());
+
+        this.exitFunction(frame, index, declaration.name().name(), parameters.size());
+    }
 
+    /* Counters of the enclosing code saved while a function body is emitted */
+    private record Frame(int jumpEnd, int entry, int depth, int maxDepth, int declared, int frameSize) {
     }
 }
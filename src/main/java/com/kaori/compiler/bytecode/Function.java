@@ -0,0 +1,17 @@
+package com.kaori.compiler.bytecode;
+
+/*
+ * Function table entry. entry is the code offset of the parameter prologue,
+ * frameSize the slots the frame needs for parameters and locals, and
+ * maxStack the operand stack the body needs on top of its caller's
+ */
+public record Function(String name, int arity, int entry, int frameSize, int maxStack) {
+    public Function relocated(int entry, int maxStack) {
+        return new Function(this.name, this.arity, entry, this.frameSize, maxStack);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<function %s>", this.name);
+    }
+}
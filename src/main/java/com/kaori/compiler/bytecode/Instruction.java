@@ -1,32 +1,40 @@
 package com.kaori.compiler.bytecode;
 
-public class Instruction {
-    private final Opcode opcode;
-    private Object operand;
-
-    public Instruction(
-            Opcode opcode, Object operand) {
-        this.opcode = opcode;
-        this.operand = operand;
+import java.util.Arrays;
+
+/*
+ * Decoded form of a packed instruction used by the bytecode passes. Branch
+ * targets are indexes into the instruction list rather than code offsets
+ */
+public record Instruction(Opcode opcode, int... operands) {
+    public int operand(int index) {
+        return this.operands[index];
     }
 
-    @Override
-    public String toString() {
-        if (operand == null) {
-            return String.format("%s", this.opcode);
-        }
-        return String.format("%s %s", this.opcode, this.operand);
+    /* Stack effect of the instruction, a CALL consumes its arguments and leaves the result in the function's place */
+    public int effect() {
+        return this.opcode == Opcode.CALL || this.opcode == Opcode.TAIL_CALL ? -this.operand(0) : this.opcode.effect;
     }
 
-    public Opcode opcode() {
-        return this.opcode;
+    public int target() {
+        return this.operands[this.operands.length - 1];
     }
 
-    public Object operand() {
-        return this.operand;
+    public Instruction withTarget(int target) {
+        int[] operands = Arrays.copyOf(this.operands, this.operands.length);
+        operands[operands.length - 1] = target;
+
+        return new Instruction(this.opcode, operands);
     }
 
-    public void setOperand(Object operand) {
-        this.operand = operand;
+    @Override
+    public String toString() {
+        StringBuilder instruction = new StringBuilder(this.opcode.toString());
+
+        for (int operand : this.operands) {
+            instruction.append(" ").append(operand);
+        }
+
+        return instruction.toString();
     }
 }
@@ -0,0 +1,104 @@
+package com.kaori.compiler.bytecode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/*
+ * Collects the output of a bytecode pass and relocates branch targets. Every
+ * input instruction is mapped to the output index it was rewritten into, so
+ * removed or fused instructions send their incoming jumps to what replaced them
+ */
+class InstructionBuffer {
+    private final List<Instruction> instructions;
+    private final int[] mapping;
+
+    InstructionBuffer(int size) {
+        this.instructions = new ArrayList<>();
+        this.mapping = new int[size + 1];
+    }
+
+    /* Maps the input instructions in [from, to) to the next output instruction */
+    void map(int from, int to) {
+        for (int i = from; i < to; i++) {
+            this.mapping[i] = this.instructions.size();
+        }
+    }
+
+    void add(Instruction instruction) {
+        this.instructions.add(instruction);
+    }
+
+    List<Instruction> relocated() {
+        this.mapping[this.mapping.length - 1] = this.instructions.size();
+
+        List<Instruction> relocated = new ArrayList<>();
+
+        for (Instruction instruction : this.instructions) {
+            if (instruction.opcode().branch) {
+                relocated.add(instruction.withTarget(this.mapping[instruction.target()]));
+            } else {
+                relocated.add(instruction);
+            }
+        }
+
+        return relocated;
+    }
+
+    /*
+     * Walks every path from root to find the deepest stack. Function bodies are
+     * only entered through CALL, so the entries PUSH_FUNCTION points at are
+     * walked separately with their own root
+     */
+    static int maxStack(List<Instruction> instructions, int root) {
+        int[] depths = new int[instructions.size() + 1];
+        Arrays.fill(depths, -1);
+
+        Deque<Integer> pending = new ArrayDeque<>();
+        depths[root] = 0;
+        pending.push(root);
+
+        int maxStack = 0;
+
+        while (!pending.isEmpty()) {
+            int index = pending.pop();
+
+            if (index == instructions.size()) {
+                continue;
+            }
+
+            Instruction instruction = instructions.get(index);
+            Opcode opcode = instruction.opcode();
+            int depth = depths[index] + instruction.effect();
+
+            maxStack = Math.max(maxStack, depth);
+
+            if (opcode.branch && opcode != Opcode.PUSH_FUNCTION && depths[instruction.target()] == -1) {
+                depths[instruction.target()] = depth;
+                pending.push(instruction.target());
+            }
+
+            if (opcode.fallsThrough() && depths[index + 1] == -1) {
+                depths[index + 1] = depth;
+                pending.push(index + 1);
+            }
+        }
+
+        return maxStack;
+    }
+
+    /* Marks the instructions some branch jumps to */
+    static boolean[] targets(List<Instruction> instructions) {
+        boolean[] targets = new boolean[instructions.size() + 1];
+
+        for (Instruction instruction : instructions) {
+            if (instruction.opcode().branch) {
+                targets[instruction.target()] = true;
+            }
+        }
+
+        return targets;
+    }
+}
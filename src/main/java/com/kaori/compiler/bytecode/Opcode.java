@@ -1,35 +1,126 @@
 package com.kaori.compiler.bytecode;
 
+/*
+ * Opcodes are specialized by the types proven by the TypeChecker. Numbers and
+ * booleans live unboxed in the value lane of the stacks (booleans as 1 and 0),
+ * strings in the reference lane, which is what the *_REF variants operate on
+ */
 public enum Opcode {
-    PLUS,
-    MINUS,
-    MULTIPLY,
-    DIVIDE,
-    MODULO,
-    AND,
-    OR,
-    NOT_EQUAL,
-    EQUAL,
-    GREATER,
-    GREATER_EQUAL,
-    LESS,
-    LESS_EQUAL,
-
-    NOT,
-    NEGATE,
-
-    DECLARE,
-    LOAD_LOCAL,
-    LOAD_GLOBAL,
-    STORE_LOCAL,
-    STORE_GLOBAL,
-
-    ENTER_SCOPE,
-    EXIT_SCOPE,
-
-    PUSH_CONST,
-
-    JUMP,
-    JUMP_IF_FALSE,
-    PRINT,
+    ADD_F64(0, -1),
+    SUB_F64(0, -1),
+    MUL_F64(0, -1),
+    DIV_F64(0, -1),
+    MOD_F64(0, -1),
+    NEG_F64(0, 0),
+
+    EQ_F64(0, -1),
+    NE_F64(0, -1),
+    GT_F64(0, -1),
+    GE_F64(0, -1),
+    LT_F64(0, -1),
+    LE_F64(0, -1),
+
+    NOT_BOOL(0, 0),
+    EQ_BOOL(0, -1),
+    NE_BOOL(0, -1),
+
+    EQ_STR(0, -1),
+    NE_STR(0, -1),
+
+    LOAD_LOCAL(1, 1),
+    LOAD_LOCAL_REF(1, 1),
+    LOAD_GLOBAL(1, 1),
+    LOAD_GLOBAL_REF(1, 1),
+    STORE_LOCAL(1, -1),
+    STORE_LOCAL_REF(1, -1),
+    STORE_GLOBAL(1, -1),
+    STORE_GLOBAL_REF(1, -1),
+
+    /* Stores the value on top of the stack without popping it, a STORE x; LOAD x in one dispatch */
+    STORE_LOCAL_KEEP(1, 0),
+    STORE_LOCAL_REF_KEEP(1, 0),
+    STORE_GLOBAL_KEEP(1, 0),
+    STORE_GLOBAL_REF_KEEP(1, 0),
+
+    PUSH_CONST(1, 1),
+    PUSH_CONST_REF(1, 1),
+    POP(0, -1),
+
+    JUMP(1, 0, true),
+    JUMP_IF_FALSE(1, -1, true),
+    JUMP_IF_TRUE(1, -1, true),
+
+    /*
+     * Conditions on numbers branch without a boolean in between:
+     * JUMP_UNLESS_LT_F64 t pops right and left and jumps to t unless left <
+     * right holds, which NaN never does, so there is no negated form
+     */
+    JUMP_UNLESS_EQ_F64(1, -2, true),
+    JUMP_UNLESS_NE_F64(1, -2, true),
+    JUMP_UNLESS_GT_F64(1, -2, true),
+    JUMP_UNLESS_GE_F64(1, -2, true),
+    JUMP_UNLESS_LT_F64(1, -2, true),
+    JUMP_UNLESS_LE_F64(1, -2, true),
+
+    PRINT_F64(0, -1),
+    PRINT_BOOL(0, -1),
+    PRINT_REF(0, -1),
+
+    /*
+     * PUSH_FUNCTION f entry pushes entry f of the function table, its entry
+     * operand is only there so passes relocate it like any other branch.
+     * CALL n pops the function and its n arguments, which become the first
+     * slots of the new frame, and RETURN leaves a default result behind.
+     * TAIL_CALL n does the same as CALL but reuses the caller's frame, the
+     * callee returns straight to the caller's caller.
+     * JUMP_IF_DECLARED i t skips the default of parameter i when an argument
+     * was passed for it
+     */
+    PUSH_FUNCTION(2, 1, true),
+    CALL(1, 0),
+    TAIL_CALL(1, 0),
+    RETURN(0, 0),
+    JUMP_IF_DECLARED(2, 0, true),
+
+    /* Superinstructions fused by the Superinstructions pass */
+    INC_LOCAL(2, 0),
+    DEC_LOCAL(2, 0),
+    JUMP_UNLESS_LOCAL_LT_CONST(3, 0, true),
+    JUMP_UNLESS_LOCAL_LE_CONST(3, 0, true),
+    JUMP_UNLESS_LOCAL_GT_CONST(3, 0, true),
+    JUMP_UNLESS_LOCAL_GE_CONST(3, 0, true);
+
+    private static final Opcode[] OPCODES = Opcode.values();
+
+    /* number of int operands stored inline after the opcode in the code array */
+    public final int operands;
+
+    /* net change in operand stack depth after the instruction executes */
+    public final int effect;
+
+    /* branch opcodes keep their jump target in the last operand */
+    public final boolean branch;
+
+    private Opcode(int operands, int effect) {
+        this(operands, effect, false);
+    }
+
+    private Opcode(int operands, int effect, boolean branch) {
+        this.operands = operands;
+        this.effect = effect;
+        this.branch = branch;
+    }
+
+    public int size() {
+        return 1 + this.operands;
+    }
+
+    /* Whether execution can continue with the next instruction */
+    public boolean fallsThrough() {
+        return this != JUMP && this != RETURN && this != TAIL_CALL;
+    }
+
+    public static Opcode of(int code) {
+        return OPCODES[code];
+    }
 }
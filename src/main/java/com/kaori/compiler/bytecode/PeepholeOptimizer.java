@@ -0,0 +1,238 @@
+package com.kaori.compiler.bytecode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/*
+ * Runs a set of peephole rules over the decoded instructions until none of
+ * them changes the code anymore. Rules share InstructionBuffer, so every
+ * removal keeps branch targets pointing at the instruction that followed
+ */
+public class PeepholeOptimizer {
+    private static final int MAX_PASSES = 16;
+
+    private final List<PeepholeRule> rules;
+
+    public PeepholeOptimizer(List<PeepholeRule> rules) {
+        this.rules = rules;
+    }
+
+    public PeepholeOptimizer() {
+        this(List.of(
+                new JumpThreading(),
+                new RedundantJumps(),
+                new StoreLoads(),
+                new UnreachableCode()));
+    }
+
+    public Bytecode apply(Bytecode bytecode) {
+        List<Instruction> instructions = bytecode.instructions();
+
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean changed = false;
+
+            for (PeepholeRule rule : this.rules) {
+                List<Instruction> rewritten = rule.apply(instructions);
+
+                if (rewritten != instructions) {
+                    instructions = rewritten;
+                    changed = true;
+                }
+            }
+
+            if (!changed) {
+                break;
+            }
+        }
+
+        return bytecode.withInstructions(instructions);
+    }
+
+    /* Keeps the instructions flagged in kept and relocates branches around the rest */
+    private static List<Instruction> keep(List<Instruction> instructions, boolean[] kept) {
+        InstructionBuffer buffer = new InstructionBuffer(instructions.size());
+
+        for (int i = 0; i < instructions.size(); i++) {
+            buffer.map(i, i + 1);
+
+            if (kept[i]) {
+                buffer.add(instructions.get(i));
+            }
+        }
+
+        return buffer.relocated();
+    }
+
+    /* Points branches that land on a JUMP straight at the end of the chain */
+    public static class JumpThreading implements PeepholeRule {
+        @Override
+        public List<Instruction> apply(List<Instruction> instructions) {
+            List<Instruction> threaded = new ArrayList<>(instructions);
+            boolean changed = false;
+
+            for (int i = 0; i < threaded.size(); i++) {
+                Instruction instruction = threaded.get(i);
+
+                if (!instruction.opcode().branch) {
+                    continue;
+                }
+
+                int target = instruction.target();
+                int hops = 0;
+
+                while (target < threaded.size() && threaded.get(target).opcode() == Opcode.JUMP
+                        && hops < threaded.size()) {
+                    target = threaded.get(target).target();
+                    hops++;
+                }
+
+                if (target != instruction.target()) {
+                    threaded.set(i, instruction.withTarget(target));
+                    changed = true;
+                }
+            }
+
+            return changed ? threaded : instructions;
+        }
+    }
+
+    /* Drops a JUMP to the next instruction, a JUMP_IF_FALSE or JUMP_IF_TRUE to it only has to pop */
+    public static class RedundantJumps implements PeepholeRule {
+        @Override
+        public List<Instruction> apply(List<Instruction> instructions) {
+            boolean[] kept = new boolean[instructions.size()];
+            List<Instruction> rewritten = new ArrayList<>(instructions);
+            boolean changed = false;
+
+            for (int i = 0; i < instructions.size(); i++) {
+                Instruction instruction = instructions.get(i);
+                kept[i] = true;
+
+                if (instruction.opcode() == Opcode.JUMP && instruction.target() == i + 1) {
+                    kept[i] = false;
+                    changed = true;
+                } else if ((instruction.opcode() == Opcode.JUMP_IF_FALSE || instruction.opcode() == Opcode.JUMP_IF_TRUE)
+                        && instruction.target() == i + 1) {
+                    rewritten.set(i, new Instruction(Opcode.POP));
+                    changed = true;
+                }
+            }
+
+            return changed ? keep(rewritten, kept) : instructions;
+        }
+    }
+
+    /*
+     * Fuses STORE x; LOAD x into a STORE_*_KEEP x that leaves the value on
+     * the stack, and STORE_*_KEEP x; POP back into a STORE x
+     */
+    public static class StoreLoads implements PeepholeRule {
+        @Override
+        public List<Instruction> apply(List<Instruction> instructions) {
+            boolean[] targets = InstructionBuffer.targets(instructions);
+            InstructionBuffer buffer = new InstructionBuffer(instructions.size());
+            boolean changed = false;
+
+            int index = 0;
+
+            while (index < instructions.size()) {
+                Instruction store = instructions.get(index);
+                Instruction load = index + 1 < instructions.size() ? instructions.get(index + 1) : null;
+
+                if (load != null && !targets[index + 1] && this.matches(store, load)) {
+                    buffer.map(index, index + 2);
+                    buffer.add(new Instruction(this.keep(store.opcode()), store.operand(0)));
+                    index += 2;
+                    changed = true;
+                } else if (load != null && !targets[index + 1] && load.opcode() == Opcode.POP
+                        && this.drop(store.opcode()) != null) {
+                    buffer.map(index, index + 2);
+                    buffer.add(new Instruction(this.drop(store.opcode()), store.operand(0)));
+                    index += 2;
+                    changed = true;
+                } else {
+                    buffer.map(index, index + 1);
+                    buffer.add(store);
+                    index++;
+                }
+            }
+
+            return changed ? buffer.relocated() : instructions;
+        }
+
+        private boolean matches(Instruction store, Instruction load) {
+            Opcode expected = switch (store.opcode()) {
+                case STORE_LOCAL -> Opcode.LOAD_LOCAL;
+                case STORE_LOCAL_REF -> Opcode.LOAD_LOCAL_REF;
+                case STORE_GLOBAL -> Opcode.LOAD_GLOBAL;
+                case STORE_GLOBAL_REF -> Opcode.LOAD_GLOBAL_REF;
+                default -> null;
+            };
+
+            return load.opcode() == expected && load.operand(0) == store.operand(0);
+        }
+
+        private Opcode keep(Opcode store) {
+            return switch (store) {
+                case STORE_LOCAL -> Opcode.STORE_LOCAL_KEEP;
+                case STORE_LOCAL_REF -> Opcode.STORE_LOCAL_REF_KEEP;
+                case STORE_GLOBAL -> Opcode.STORE_GLOBAL_KEEP;
+                case STORE_GLOBAL_REF -> Opcode.STORE_GLOBAL_REF_KEEP;
+                default -> throw new IllegalStateException("Unhandled store opcode: " + store);
+            };
+        }
+
+        /* The store that pops what a STORE_*_KEEP leaves, null for any other opcode */
+        private Opcode drop(Opcode keep) {
+            return switch (keep) {
+                case STORE_LOCAL_KEEP -> Opcode.STORE_LOCAL;
+                case STORE_LOCAL_REF_KEEP -> Opcode.STORE_LOCAL_REF;
+                case STORE_GLOBAL_KEEP -> Opcode.STORE_GLOBAL;
+                case STORE_GLOBAL_REF_KEEP -> Opcode.STORE_GLOBAL_REF;
+                default -> null;
+            };
+        }
+    }
+
+    /* Removes instructions no path from the entry reaches */
+    public static class UnreachableCode implements PeepholeRule {
+        @Override
+        public List<Instruction> apply(List<Instruction> instructions) {
+            boolean[] kept = new boolean[instructions.size()];
+            Deque<Integer> pending = new ArrayDeque<>();
+
+            if (!instructions.isEmpty()) {
+                pending.push(0);
+            }
+
+            while (!pending.isEmpty()) {
+                int index = pending.pop();
+
+                if (index >= instructions.size() || kept[index]) {
+                    continue;
+                }
+
+                kept[index] = true;
+                Instruction instruction = instructions.get(index);
+
+                if (instruction.opcode().branch) {
+                    pending.push(instruction.target());
+                }
+
+                if (instruction.opcode().fallsThrough()) {
+                    pending.push(index + 1);
+                }
+            }
+
+            for (boolean reachable : kept) {
+                if (!reachable) {
+                    return keep(instructions, kept);
+                }
+            }
+
+            return instructions;
+        }
+    }
+}
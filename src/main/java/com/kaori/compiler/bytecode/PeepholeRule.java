@@ -0,0 +1,8 @@
+package com.kaori.compiler.bytecode;
+
+import java.util.List;
+
+public interface PeepholeRule {
+    /* Returns the rewritten instructions, or the same list when the rule does not apply */
+    List<Instruction> apply(List<Instruction> instructions);
+}
@@ -0,0 +1,100 @@
+package com.kaori.compiler.bytecode;
+
+import java.util.List;
+
+/*
+ * Fuses the instruction sequences produced by counting loops into single
+ * dispatches:
+ *
+ * LOAD_LOCAL s, PUSH_CONST k, ADD_F64, STORE_LOCAL_KEEP s, POP -> INC_LOCAL s k
+ * LOAD_LOCAL s, PUSH_CONST k, JUMP_UNLESS_LT_F64 t -> JUMP_UNLESS_LOCAL_LT_CONST s k t
+ *
+ * A sequence is only fused when no branch lands in its middle
+ */
+public class Superinstructions {
+    /* Lengths of the sequences fused, longest first */
+    private static final int[] LENGTHS = { 5, 3 };
+
+    public Bytecode apply(Bytecode bytecode) {
+        List<Instruction> instructions = bytecode.instructions();
+        boolean[] targets = InstructionBuffer.targets(instructions);
+        InstructionBuffer buffer = new InstructionBuffer(instructions.size());
+
+        int index = 0;
+
+        while (index < instructions.size()) {
+            Instruction fused = null;
+            int length = 1;
+
+            for (int candidate : LENGTHS) {
+                if (this.fusable(targets, index, candidate, instructions.size())) {
+                    fused = this.fuse(instructions.subList(index, index + candidate));
+                }
+
+                if (fused != null) {
+                    length = candidate;
+                    break;
+                }
+            }
+
+            buffer.map(index, index + length);
+            buffer.add(fused != null ? fused : instructions.get(index));
+            index += length;
+        }
+
+        return bytecode.withInstructions(buffer.relocated());
+    }
+
+    /* Whether the length instructions at index exist and no branch lands after the first */
+    private boolean fusable(boolean[] targets, int index, int length, int size) {
+        if (index + length > size) {
+            return false;
+        }
+
+        for (int i = index + 1; i < index + length; i++) {
+            if (targets[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private Instruction fuse(List<Instruction> sequence) {
+        Instruction load = sequence.get(0);
+        Instruction constant = sequence.get(1);
+        Instruction operation = sequence.get(2);
+
+        if (load.opcode() != Opcode.LOAD_LOCAL || constant.opcode() != Opcode.PUSH_CONST) {
+            return null;
+        }
+
+        int slot = load.operand(0);
+        int value = constant.operand(0);
+
+        if (sequence.size() == 5) {
+            Instruction store = sequence.get(3);
+
+            if (store.opcode() != Opcode.STORE_LOCAL_KEEP || store.operand(0) != slot
+                    || sequence.get(4).opcode() != Opcode.POP) {
+                return null;
+            }
+
+            return switch (operation.opcode()) {
+                case ADD_F64 -> new Instruction(Opcode.INC_LOCAL, slot, value);
+                case SUB_F64 -> new Instruction(Opcode.DEC_LOCAL, slot, value);
+                default -> null;
+            };
+        }
+
+        Opcode opcode = switch (operation.opcode()) {
+            case JUMP_UNLESS_LT_F64 -> Opcode.JUMP_UNLESS_LOCAL_LT_CONST;
+            case JUMP_UNLESS_LE_F64 -> Opcode.JUMP_UNLESS_LOCAL_LE_CONST;
+            case JUMP_UNLESS_GT_F64 -> Opcode.JUMP_UNLESS_LOCAL_GT_CONST;
+            case JUMP_UNLESS_GE_F64 -> Opcode.JUMP_UNLESS_LOCAL_GE_CONST;
+            default -> null;
+        };
+
+        return opcode == null ? null : new Instruction(opcode, slot, value, operation.target());
+    }
+}
@@ -0,0 +1,490 @@
+package com.kaori.compiler.jvm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.kaori.compiler.Visitor;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.ExpressionAST;
+import com.kaori.compiler.syntax.StatementAST;
+import com.kaori.compiler.syntax.TypeAST;
+import com.kaori.error.KaoriError;
+
+/*
+ * Translates the resolved and type checked AST into the source of a Java
+ * class implementing Runnable. Variables declared inside blocks become Java
+ * locals named after their Resolver offset, which is unique along any chain
+ * of nested scopes, while top level variables become fields so every top
+ * level statement can live in its own small method that HotSpot is willing
+ * to compile. Functions become static methods called by name, and a top
+ * level statement that declares one keeps its variables in fields as well,
+ * since the function body may read them
+ */
+public class JavaSourceGenerator extends Visitor<String> {
+    public static final String CLASS_NAME = "KaoriProgram";
+
+    private final StringBuilder fields;
+    private final StringBuilder methods;
+    private StringBuilder body;
+    /* Java names of the global slots and of the slots of the function being generated */
+    private final List<String> names;
+    private List<String> locals;
+    private final Map<DeclarationAST.Function, String> functions;
+    private DeclarationAST.Function function;
+    /* whether the function being generated has a tail call to itself, turned into a jump back to its start */
+    private boolean loops;
+    private boolean shared;
+    private int fieldCount;
+    private int declared;
+    private int indentation;
+    private int depth;
+
+    public JavaSourceGenerator(List<DeclarationAST> declarations) {
+        super(declarations);
+        this.fields = new StringBuilder();
+        this.methods = new StringBuilder();
+        this.body = null;
+        this.names = new ArrayList<>();
+        this.locals = null;
+        this.functions = new HashMap<>();
+        this.function = null;
+        this.loops = false;
+        this.shared = false;
+        this.fieldCount = 0;
+        this.declared = 0;
+        this.indentation = 0;
+        this.depth = 0;
+    }
+
+    public String source() {
+        StringBuilder run = new StringBuilder();
+
+        for (DeclarationAST declaration : this.declarations) {
+            if (declaration instanceof DeclarationAST.Function function) {
+                this.line = declaration.line();
+                this.visitFunctionDeclaration(function);
+            }
+        }
+
+        for (int i = 0; i < this.declarations.size(); i++) {
+            DeclarationAST declaration = this.declarations.get(i);
+
+            this.line = declaration.line();
+            this.shared = this.declaresFunction(declaration);
+            this.body = new StringBuilder();
+            this.indentation = 2;
+            this.visit(declaration);
+
+            run.append("        this.s").append(i).append("();\n");
+            this.methods.append("    private void s").append(i).append("() {\n")
+                    .append(this.body)
+                    .append("    }\n\n");
+        }
+
+        return "public final class " + CLASS_NAME + " implements Runnable {\n"
+                + this.fields + "\n"
+                + "    public void run() {\n"
+                + run
+                + "    }\n\n"
+                + this.methods
+                + "    /* Keeps Double.equals semantics, so NaN == NaN and 0.0 != -0.0 */\n"
+                + "    private static boolean same(double left, double right) {\n"
+                + "        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);\n"
+                + "    }\n\n"
+                + "    private static void discard(Object value) {\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    private void statement(String text) {
+        this.body.append("    ".repeat(this.indentation)).append(text).append('\n');
+    }
+
+    private String javaType(TypeAST type) {
+        if (type.equals(TypeAST.Primitive.NUMBER)) {
+            return "double";
+        }
+
+        if (type.equals(TypeAST.Primitive.BOOLEAN)) {
+            return "boolean";
+        }
+
+        if (type.equals(TypeAST.Primitive.STRING)) {
+            return "String";
+        }
+
+        /* only the return type of a function can be void, such a call gives back null */
+        if (type.equals(TypeAST.Primitive.VOID)) {
+            return "Object";
+        }
+
+        throw new IllegalStateException("Unhandled type: " + type);
+    }
+
+    /* Default value of a type, returned by every function and passed for the arguments left out */
+    private String zero(TypeAST type) {
+        if (type.equals(TypeAST.Primitive.NUMBER)) {
+            return "0.0";
+        }
+
+        if (type.equals(TypeAST.Primitive.BOOLEAN)) {
+            return "false";
+        }
+
+        return "null";
+    }
+
+    /* Inside a function local slots are relative to its frame, at the top level every slot is global */
+    private String name(ExpressionAST.Identifier identifier) {
+        List<String> names = this.function != null && identifier.local() ? this.locals : this.names;
+
+        return names.get(identifier.offset());
+    }
+
+    private void name(List<String> names, int offset, String name) {
+        while (names.size() <= offset) {
+            names.add(null);
+        }
+
+        names.set(offset, name);
+    }
+
+    /* Whether a function is declared anywhere in declaration */
+    private boolean declaresFunction(DeclarationAST declaration) {
+        if (declaration instanceof DeclarationAST.Function) {
+            return true;
+        }
+
+        if (declaration instanceof StatementAST.Block block) {
+            return block.declarations().stream().anyMatch(this::declaresFunction);
+        }
+
+        if (declaration instanceof StatementAST.If statement) {
+            return this.declaresFunction(statement.thenBranch())
+                    || statement.elseBranch() != null && this.declaresFunction(statement.elseBranch());
+        }
+
+        if (declaration instanceof StatementAST.WhileLoop loop) {
+            return this.declaresFunction(loop.block());
+        }
+
+        return false;
+    }
+
+    /* Functions are only known by the methods they became, so they can't be stored, compared or printed */
+    private KaoriError functionValue() {
+        return KaoriError.UnsupportedError("function values are not supported by the jvm engine", this.line);
+    }
+
+    private String number(double value) {
+        if (Double.isNaN(value)) {
+            return "Double.NaN";
+        }
+
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        }
+
+        return "(" + value + ")";
+    }
+
+    private String string(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\r' -> literal.append("\\r");
+                case '\t' -> literal.append("\\t");
+                default -> {
+                    if (c < ' ') {
+                        literal.append(String.format("\\%03o", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+                }
+            }
+        }
+
+        return literal.append('"').toString();
+    }
+
+    /* Expressions */
+    @Override
+    public String visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
+        String left = this.visit(expression.left());
+        String right = this.visit(expression.right());
+        TypeAST operand = expression.left().type();
+
+        /* && and || short-circuit like in every other engine */
+        return switch (expression.operator()) {
+            case PLUS -> "(" + left + " + " + right + ")";
+            case MINUS -> "(" + left + " - " + right + ")";
+            case MULTIPLY -> "(" + left + " * " + right + ")";
+            case DIVIDE -> "(" + left + " / " + right + ")";
+            case MODULO -> "(" + left + " % " + right + ")";
+            case GREATER -> "(" + left + " > " + right + ")";
+            case GREATER_EQUAL -> "(" + left + " >= " + right + ")";
+            case LESS -> "(" + left + " < " + right + ")";
+            case LESS_EQUAL -> "(" + left + " <= " + right + ")";
+            case AND -> "(" + left + " && " + right + ")";
+            case OR -> "(" + left + " || " + right + ")";
+            case EQUAL -> operand.equals(TypeAST.Primitive.NUMBER) ? "same(" + left + ", " + right + ")"
+                    : operand.equals(TypeAST.Primitive.BOOLEAN) ? "(" + left + " == " + right + ")"
+                            : left + ".equals(" + right + ")";
+            case NOT_EQUAL -> operand.equals(TypeAST.Primitive.NUMBER) ? "!same(" + left + ", " + right + ")"
+                    : operand.equals(TypeAST.Primitive.BOOLEAN) ? "(" + left + " != " + right + ")"
+                            : "!" + left + ".equals(" + right + ")";
+        };
+    }
+
+    @Override
+    public String visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
+        String left = this.visit(expression.left());
+
+        return switch (expression.operator()) {
+            case NEGATE -> "(-" + left + ")";
+            case NOT -> "(!" + left + ")";
+        };
+    }
+
+    @Override
+    public String visitAssign(ExpressionAST.Assign expression) {
+        if (expression.type() instanceof TypeAST.Function) {
+            throw this.functionValue();
+        }
+
+        return "(" + this.name(expression.left()) + " = " + this.visit(expression.right()) + ")";
+    }
+
+    /*
+     * Boolean literals go through Boolean.TRUE and Boolean.FALSE so javac
+     * does not treat loops like while (true) as constant and reject the
+     * statements after them as unreachable
+     */
+    @Override
+    public String visitLiteral(ExpressionAST.Literal expression) {
+        TypeAST type = expression.type();
+        Object value = expression.value();
+
+        if (type.equals(TypeAST.Primitive.NUMBER)) {
+            return this.number(value == null ? 0 : (Double) value);
+        }
+
+        if (type.equals(TypeAST.Primitive.BOOLEAN)) {
+            return value != null && (Boolean) value ? "Boolean.TRUE" : "Boolean.FALSE";
+        }
+
+        return value == null ? "((String) null)" : this.string((String) value);
+    }
+
+    @Override
+    public String visitIdentifier(ExpressionAST.Identifier expression) {
+        if (expression.type() instanceof TypeAST.Function) {
+            throw this.functionValue();
+        }
+
+        return this.name(expression);
+    }
+
+    /*
+     * The first argument counts the arguments given, the parameters past it
+     * get a placeholder and the method evaluates their defaults. Arguments
+     * past the last parameter are never evaluated, like in the Interpreter
+     */
+    @Override
+    public String visitFunctionCall(ExpressionAST.FunctionCall expression) {
+        if (!(expression.callee() instanceof ExpressionAST.Identifier callee)) {
+            throw this.functionValue();
+        }
+
+        List<TypeAST> parameters = ((TypeAST.Function) callee.type()).parameters();
+        int given = Math.min(parameters.size(), expression.arguments().size());
+        StringBuilder call = new StringBuilder(this.name(callee)).append('(').append(given);
+
+        for (int i = 0; i < parameters.size(); i++) {
+            String argument = i < given ? this.visit(expression.arguments().get(i)) : this.zero(parameters.get(i));
+
+            call.append(", ").append(argument);
+        }
+
+        return call.append(')').toString();
+    }
+
+    /* A tail call to the function being generated reassigns its parameters and goes back to its start */
+    private void tailCall(ExpressionAST.FunctionCall call) {
+        List<TypeAST> parameters = this.function.type().parameters();
+        int given = Math.min(parameters.size(), call.arguments().size());
+
+        this.statement("{");
+        this.indentation++;
+
+        for (int i = 0; i < given; i++) {
+            String type = this.javaType(parameters.get(i));
+
+            this.statement(type + " a" + i + " = " + this.visit(call.arguments().get(i)) + ";");
+        }
+
+        for (int i = 0; i < given; i++) {
+            this.statement(this.locals.get(i) + " = a" + i + ";");
+        }
+
+        this.statement("given = " + given + ";");
+        this.statement("tail = true;");
+        this.indentation--;
+        this.statement("}");
+
+        this.loops = true;
+    }
+
+    private boolean selfCall(ExpressionAST.FunctionCall call) {
+        return call.tail() && call.callee() instanceof ExpressionAST.Identifier callee && !callee.local()
+                && this.names.get(callee.offset()).equals(this.functions.get(this.function));
+    }
+
+    /* Statements */
+    @Override
+    public void visitPrintStatement(StatementAST.Print statement) {
+        this.statement("System.out.println(" + this.visit(statement.expression()) + ");");
+    }
+
+    @Override
+    public void visitBlockStatement(StatementAST.Block statement) {
+        this.statement("{");
+        this.indentation++;
+        this.depth++;
+
+        int declared = this.declared;
+
+        this.visitDeclarations(statement.declarations());
+
+        this.declared = declared;
+        this.depth--;
+        this.indentation--;
+        this.statement("}");
+    }
+
+    @Override
+    public void visitExpressionStatement(StatementAST.Expr statement) {
+        ExpressionAST expression = statement.expression();
+
+        if (expression instanceof ExpressionAST.Assign assign) {
+            this.statement(this.name(assign.left()) + " = " + this.visit(assign.right()) + ";");
+        } else if (expression instanceof ExpressionAST.FunctionCall call && this.selfCall(call)) {
+            this.tailCall(call);
+        } else if (expression instanceof ExpressionAST.FunctionCall call) {
+            this.statement(this.visit(call) + ";");
+        } else {
+            this.statement("discard(" + this.visit(expression) + ");");
+        }
+    }
+
+    @Override
+    public void visitIfStatement(StatementAST.If statement) {
+        this.statement("if (" + this.visit(statement.condition()) + ")");
+        this.visitBlockStatement(statement.thenBranch());
+
+        if (statement.elseBranch() != null) {
+            this.statement("else");
+            this.visit(statement.elseBranch());
+        }
+    }
+
+    @Override
+    public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
+        this.statement("while (" + this.visit(statement.condition()) + ")");
+        this.visitBlockStatement(statement.block());
+    }
+
+    /* Declarations */
+    @Override
+    public void visitVariableDeclaration(DeclarationAST.Variable declaration) {
+        String type = this.javaType(declaration.type());
+        String right = this.visit(declaration.right());
+        int offset = this.declared++;
+
+        if (this.function == null && (this.depth == 0 || this.shared)) {
+            String name = "g" + this.fieldCount++;
+
+            this.name(this.names, offset, name);
+            this.fields.append("    private static ").append(type).append(' ').append(name).append(";\n");
+            this.statement(name + " = " + right + ";");
+        } else {
+            String name = "v" + offset;
+
+            this.name(this.function == null ? this.names : this.locals, offset, name);
+            this.statement(type + " " + name + " = " + right + ";");
+        }
+    }
+
+    @Override
+    public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
+        String name = "f" + this.functions.size();
+
+        this.functions.put(declaration, name);
+        this.name(this.names, this.declared++, name);
+    }
+
+    /*
+     * The prologue evaluates the defaults of the parameters the caller left
+     * out. A function with a tail call to itself runs its body in a loop that
+     * the call restarts, so it recurses without growing the Java stack
+     */
+    @Override
+    public void visitFunctionDefinition(DeclarationAST.Function declaration) {
+        StringBuilder body = this.body;
+        int indentation = this.indentation;
+        int declared = this.declared;
+        int depth = this.depth;
+
+        this.body = new StringBuilder();
+        this.locals = new ArrayList<>();
+        this.function = declaration;
+        this.loops = false;
+        this.indentation = 2;
+        this.declared = 0;
+        this.depth = 1;
+
+        List<DeclarationAST.Variable> parameters = declaration.parameters();
+        StringBuilder signature = new StringBuilder("int given");
+
+        for (int i = 0; i < parameters.size(); i++) {
+            DeclarationAST.Variable parameter = parameters.get(i);
+            String type = this.javaType(parameter.type());
+
+            this.statement("if (given <= " + i + ") {");
+            this.indentation++;
+            this.statement("v" + i + " = " + this.visit(parameter.right()) + ";");
+            this.indentation--;
+            this.statement("}");
+
+            signature.append(", ").append(type).append(" v").append(i);
+            this.name(this.locals, this.declared++, "v" + i);
+        }
+
+        this.visitDeclarations(declaration.block().declarations());
+
+        TypeAST returnType = declaration.type().returnType();
+        String code = this.loops
+                ? "        boolean tail;\n\n        do {\n            tail = false;\n" + this.body.toString().indent(4)
+                        + "        } while (tail);\n\n"
+                : this.body + "\n";
+
+        this.methods.append("    private static ").append(this.javaType(returnType)).append(' ')
+                .append(this.functions.get(declaration)).append('(').append(signature).append(") {\n")
+                .append(code)
+                .append("        return ").append(this.zero(returnType)).append(";\n")
+                .append("    }\n\n");
+
+        this.body = body;
+        this.locals = null;
+        this.function = null;
+        this.indentation = indentation;
+        this.declared = declared;
+        this.depth = depth;
+    }
+}
@@ -0,0 +1,128 @@
+package com.kaori.compiler.jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import com.kaori.compiler.syntax.DeclarationAST;
+
+/*
+ * Compiles a program into a JVM class at load time. The Java source from
+ * JavaSourceGenerator is compiled in memory with the JDK compiler and the
+ * resulting class is loaded through its own ProgramClassLoader, nothing is
+ * written to disk
+ */
+public class JvmCompiler {
+    private final JavaCompiler compiler;
+
+    public JvmCompiler() {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+
+        if (this.compiler == null) {
+            throw new IllegalStateException("The jvm engine needs a JDK, no system Java compiler was found");
+        }
+    }
+
+    public Runnable compile(List<DeclarationAST> declarations) {
+        String source = new JavaSourceGenerator(declarations).source();
+
+        return this.compile(source);
+    }
+
+    public Runnable compile(String source) {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, byte[]> classes = new HashMap<>();
+
+        StandardJavaFileManager standard = this.compiler.getStandardFileManager(diagnostics, null, null);
+        JavaFileManager files = new MemoryFileManager(standard, classes);
+
+        List<String> options = List.of("-proc:none", "-g:none", "-nowarn");
+        List<JavaFileObject> units = List.of(new SourceFile(JavaSourceGenerator.CLASS_NAME, source));
+
+        boolean compiled = this.compiler.getTask(null, files, diagnostics, options, null, units).call();
+
+        if (!compiled) {
+            StringBuilder message = new StringBuilder("Generated program failed to compile");
+
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                message.append('\n').append(diagnostic.getMessage(null));
+            }
+
+            throw new IllegalStateException(message.toString());
+        }
+
+        ProgramClassLoader loader = new ProgramClassLoader(classes, JvmCompiler.class.getClassLoader());
+
+        try {
+            Class<?> program = loader.loadClass(JavaSourceGenerator.CLASS_NAME);
+
+            return (Runnable) program.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException error) {
+            throw new IllegalStateException("Generated program failed to load", error);
+        }
+    }
+
+    private static class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String name, String source) {
+            super(URI.create("string:///" + name + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return this.source;
+        }
+    }
+
+    private static class ClassFile extends SimpleJavaFileObject {
+        private final String name;
+        private final Map<String, byte[]> classes;
+
+        ClassFile(String name, Map<String, byte[]> classes) {
+            super(URI.create("bytes:///" + name.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.name = name;
+            this.classes = classes;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    classes.put(name, this.toByteArray());
+                }
+            };
+        }
+    }
+
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, byte[]> classes;
+
+        MemoryFileManager(StandardJavaFileManager manager, Map<String, byte[]> classes) {
+            super(manager);
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind,
+                FileObject sibling) {
+            return new ClassFile(name, this.classes);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.kaori.compiler.jvm;
+
+import java.util.Map;
+
+/*
+ * Defines the classes of one compiled program, so they can be collected
+ * together with it once the program is done running
+ */
+class ProgramClassLoader extends ClassLoader {
+    private final Map<String, byte[]> classes;
+
+    ProgramClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+        super(parent);
+        this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = this.classes.get(name);
+
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+
+        return this.defineClass(name, bytes, 0, bytes.length);
+    }
+}
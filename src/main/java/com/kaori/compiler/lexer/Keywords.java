@@ -0,0 +1,91 @@
+package com.kaori.compiler.lexer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/*
+ * Trie over the keyword spellings. Identifiers are matched straight from
+ * the source characters, so telling a keyword from an identifier never
+ * builds a String. Keywords are lowercase ASCII, any other character ends
+ * the walk as an identifier
+ */
+class Keywords {
+    private static final int ALPHABET = 26;
+
+    private static final Map<String, TokenKind> SPELLINGS = Map.ofEntries(
+            Map.entry("if", TokenKind.IF),
+            Map.entry("else", TokenKind.ELSE),
+            Map.entry("while", TokenKind.WHILE),
+            Map.entry("for", TokenKind.FOR),
+            Map.entry("break", TokenKind.BREAK),
+            Map.entry("continue", TokenKind.CONTINUE),
+            Map.entry("return", TokenKind.RETURN),
+            Map.entry("def", TokenKind.FUNCTION),
+            Map.entry("print", TokenKind.PRINT),
+            Map.entry("import", TokenKind.IMPORT),
+            Map.entry("true", TokenKind.BOOLEAN_LITERAL),
+            Map.entry("false", TokenKind.BOOLEAN_LITERAL));
+
+    /* child of node n on letter c at n * ALPHABET + c, 0 for none since the root is nobody's child */
+    private int[] children;
+    /* keyword ending at each node, null when the node is only a prefix */
+    private TokenKind[] kinds;
+    private int nodes;
+
+    Keywords() {
+        this.children = new int[ALPHABET];
+        this.kinds = new TokenKind[1];
+        this.nodes = 1;
+
+        for (Map.Entry<String, TokenKind> entry : SPELLINGS.entrySet()) {
+            this.insert(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void insert(String spelling, TokenKind kind) {
+        int node = 0;
+
+        for (int i = 0; i < spelling.length(); i++) {
+            int edge = node * ALPHABET + spelling.charAt(i) - 'a';
+
+            if (this.children[edge] == 0) {
+                int child = this.addNode();
+
+                this.children[edge] = child;
+            }
+
+            node = this.children[edge];
+        }
+
+        this.kinds[node] = kind;
+    }
+
+    private int addNode() {
+        if (this.nodes == this.kinds.length) {
+            this.kinds = Arrays.copyOf(this.kinds, this.nodes * 2);
+            this.children = Arrays.copyOf(this.children, this.nodes * 2 * ALPHABET);
+        }
+
+        return this.nodes++;
+    }
+
+    TokenKind match(Source source, int start, int end) {
+        int node = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+
+            if (c < 'a' || c > 'z') {
+                return TokenKind.IDENTIFIER;
+            }
+
+            node = this.children[node * ALPHABET + c - 'a'];
+
+            if (node == 0) {
+                return TokenKind.IDENTIFIER;
+            }
+        }
+
+        return this.kinds[node] == null ? TokenKind.IDENTIFIER : this.kinds[node];
+    }
+}
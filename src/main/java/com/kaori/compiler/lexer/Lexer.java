@@ -5,125 +5,203 @@ import java.util.List;
 
 import com.kaori.error.KaoriError;
 
+/*
+ * Turns characters into tokens one at a time. next() only reads as far into
+ * the source as the token it returns, so a parser pulling tokens through a
+ * TokenStream never needs the whole program in memory. The token is left in
+ * the lexer's fields rather than in a new object, callers copy out what
+ * they keep
+ *
+ * Characters are dispatched on a class table for ASCII, keywords are found
+ * by walking a trie over the identifier's characters, and lines are counted
+ * by the loops that already look at every character that can hold a newline
+ */
 public class Lexer {
-    private final String source;
+    private static final byte SYMBOL = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte DIGIT = 2;
+    private static final byte LETTER = 3;
+    private static final byte QUOTE = 4;
+
+    /* class of every ASCII character, the others are classified as they come */
+    private static final byte[] CLASSES = new byte[128];
+    /* ASCII characters that can follow the first letter of an identifier */
+    private static final boolean[] IDENTIFIER_PARTS = new boolean[128];
+    private static final Keywords KEYWORDS = new Keywords();
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            CLASSES[c] = classify(c);
+            IDENTIFIER_PARTS[c] = Character.isLetterOrDigit(c) || c == '_';
+        }
+    }
+
+    private final Source source;
     private int index;
     private int line;
-    private List<Token> tokens;
+    private TokenKind kind;
+    private int tokenLine;
+    private int tokenPosition;
+    private int tokenSize;
 
     public Lexer(String source) {
+        this(new StringSource(source));
+    }
+
+    public Lexer(Source source) {
         this.source = source;
+        this.reset();
+    }
+
+    private static byte classify(char c) {
+        if (Character.isWhitespace(c)) {
+            return WHITESPACE;
+        }
+
+        if (Character.isDigit(c)) {
+            return DIGIT;
+        }
+
+        if (Character.isLetter(c)) {
+            return LETTER;
+        }
+
+        return c == '"' ? QUOTE : SYMBOL;
+    }
+
+    private static byte classOf(char c) {
+        return c < CLASSES.length ? CLASSES[c] : classify(c);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return c < IDENTIFIER_PARTS.length ? IDENTIFIER_PARTS[c]
+                : Character.isLetterOrDigit(c) || Character.isAlphabetic(c);
     }
 
     private void reset() {
         this.index = 0;
         this.line = 1;
-        this.tokens = new ArrayList<>();
+        this.kind = null;
+    }
+
+    public Source source() {
+        return this.source;
     }
 
     public List<Token> scan() {
+        List<Token> tokens = new ArrayList<>();
+
         this.reset();
-        this.start();
+
+        for (TokenKind kind = this.next(); kind != null; kind = this.next()) {
+            tokens.add(new Token(kind, this.tokenLine, this.tokenPosition, this.tokenSize));
+        }
 
         return tokens;
     }
 
-    private void start() {
-        while (!this.atEnd(this.index)) {
+    /* Kind of the next token, or null once the source is exhausted */
+    public TokenKind next() {
+        this.kind = null;
+
+        while (this.kind == null && !this.atEnd(this.index)) {
             char c = this.source.charAt(this.index);
 
-            if (Character.isWhitespace(c)) {
-                this.scanWhiteSpace();
-            } else if (Character.isDigit(c)) {
-                this.scanNumber();
-            } else if (Character.isLetter(c)) {
-                this.scanIdentifierOrKeyword();
-            } else if (c == '"') {
-                this.scanStringLiteral();
-            } else if (this.lookAhead("/*", this.index)) {
-                this.scanComment();
-            } else {
-                this.scanSymbol();
+            switch (classOf(c)) {
+                case WHITESPACE -> this.scanWhiteSpace();
+                case DIGIT -> this.scanNumber();
+                case LETTER -> this.scanIdentifierOrKeyword();
+                case QUOTE -> this.scanStringLiteral();
+                default -> {
+                    if (c == '/' && this.peek(this.index + 1) == '*') {
+                        this.scanComment();
+                    } else {
+                        this.scanSymbol();
+                    }
+                }
             }
         }
-    }
 
-    private void advance(int steps) {
-        for (int i = 0; i < steps; i++) {
-            if (this.source.charAt(this.index) == '\n') {
-                this.line++;
-            }
-
-            this.index++;
-        }
+        return this.kind;
     }
 
-    private boolean atEnd(int current) {
-        return current >= this.source.length();
+    /* Line of the token next() returned last */
+    public int line() {
+        return this.tokenLine;
     }
 
-    private boolean lookAhead(String expected, int currentIndex) {
-        for (int i = 0; i < expected.length(); i++) {
-            int j = currentIndex + i;
+    public int position() {
+        return this.tokenPosition;
+    }
 
-            if (j < this.source.length() && expected.charAt(i) == this.source.charAt(j)) {
-                continue;
-            }
+    public int size() {
+        return this.tokenSize;
+    }
 
-            return false;
-        }
+    private boolean atEnd(int current) {
+        return !this.source.has(current);
+    }
 
-        return true;
+    /* Character at current, or 0 past the end */
+    private char peek(int current) {
+        return this.source.has(current) ? this.source.charAt(current) : '\0';
     }
 
+    /* Tokens never span lines except string literals, which count their own */
     private void createToken(TokenKind kind, int size) {
-        int position = this.index;
-
-        Token token = new Token(kind, this.line, position, size);
-
-        this.tokens.add(token);
-
-        this.advance(size);
+        this.kind = kind;
+        this.tokenLine = this.line;
+        this.tokenPosition = this.index;
+        this.tokenSize = size;
+        this.index += size;
     }
 
     private void scanComment() {
         int current = this.index + 2;
 
-        while (!this.atEnd(current) && !this.lookAhead("*/", current)) {
+        while (!this.atEnd(current) && !(this.source.charAt(current) == '*' && this.peek(current + 1) == '/')) {
+            if (this.source.charAt(current) == '\n') {
+                this.line++;
+            }
+
             current++;
         }
 
-        current += 2;
-
-        int size = current - this.index;
-
-        this.advance(size);
+        this.index = current + 2;
     }
 
     private void scanWhiteSpace() {
         int current = this.index;
 
-        while (!this.atEnd(current) && Character.isWhitespace(this.source.charAt(current))) {
+        while (!this.atEnd(current)) {
+            char c = this.source.charAt(current);
+
+            if (classOf(c) != WHITESPACE) {
+                break;
+            }
+
+            if (c == '\n') {
+                this.line++;
+            }
+
             current++;
         }
 
-        int size = current - this.index;
-
-        this.advance(size);
+        this.index = current;
     }
 
     private void scanNumber() {
         int current = this.index;
 
-        while (!this.atEnd(current) && Character.isDigit(this.source.charAt(current))) {
+        while (!this.atEnd(current) && classOf(this.source.charAt(current)) == DIGIT) {
             current++;
         }
 
-        if (!this.atEnd(current) && this.source.charAt(current) == '.') {
+        if (this.peek(current) == '.') {
             current++;
         }
 
-        while (!this.atEnd(current) && Character.isDigit(this.source.charAt(current))) {
+        while (!this.atEnd(current) && classOf(this.source.charAt(current)) == DIGIT) {
             current++;
         }
 
@@ -133,30 +211,13 @@ public class Lexer {
     }
 
     private void scanIdentifierOrKeyword() {
-        int current = this.index;
+        int current = this.index + 1;
 
-        while (!this.atEnd(current) && Character.isAlphabetic(this.source.charAt(current))) {
+        while (!this.atEnd(current) && isIdentifierPart(this.source.charAt(current))) {
             current++;
         }
 
-        while (!this.atEnd(current)
-                && (Character.isLetterOrDigit(this.source.charAt(current)) || this.source.charAt(current) == '_')) {
-            current++;
-        }
-
-        TokenKind kind = switch (this.source.substring(this.index, current)) {
-            case "if" -> TokenKind.IF;
-            case "else" -> TokenKind.ELSE;
-            case "while" -> TokenKind.WHILE;
-            case "for" -> TokenKind.FOR;
-            case "break" -> TokenKind.BREAK;
-            case "continue" -> TokenKind.CONTINUE;
-            case "return" -> TokenKind.RETURN;
-            case "def" -> TokenKind.FUNCTION;
-            case "print" -> TokenKind.PRINT;
-            case "true", "false" -> TokenKind.BOOLEAN_LITERAL;
-            default -> TokenKind.IDENTIFIER;
-        };
+        TokenKind kind = KEYWORDS.match(this.source, this.index, current);
 
         int size = current - this.index;
 
@@ -165,14 +226,19 @@ public class Lexer {
 
     private void scanStringLiteral() {
         int current = this.index;
+        int lines = 0;
 
         current++;
 
         while (!this.atEnd(current) && this.source.charAt(current) != '"') {
+            if (this.source.charAt(current) == '\n') {
+                lines++;
+            }
+
             current++;
         }
 
-        if (this.atEnd(current) || this.source.charAt(current) != '"') {
+        if (this.atEnd(current)) {
             throw KaoriError.SyntaxError("missing closing quotation marks for string literal", this.line);
         }
 
@@ -181,19 +247,22 @@ public class Lexer {
         int size = current - this.index;
 
         this.createToken(TokenKind.STRING_LITERAL, size);
+        this.line += lines;
     }
 
     private void scanSymbol() {
-        TokenKind kind = switch (this.source.charAt(this.index)) {
-            case '+' -> this.lookAhead("++", this.index) ? TokenKind.INCREMENT : TokenKind.PLUS;
-            case '-' -> this.lookAhead("--", this.index) ? TokenKind.DECREMENT
-                    : this.lookAhead("->", this.index) ? TokenKind.THIN_ARROW : TokenKind.MINUS;
-            case '&' -> this.lookAhead("&&", this.index) ? TokenKind.AND : TokenKind.INVALID;
-            case '|' -> this.lookAhead("||", this.index) ? TokenKind.OR : TokenKind.INVALID;
-            case '=' -> this.lookAhead("==", this.index) ? TokenKind.EQUAL : TokenKind.ASSIGN;
-            case '!' -> this.lookAhead("!=", this.index) ? TokenKind.NOT_EQUAL : TokenKind.NOT;
-            case '>' -> this.lookAhead(">=", this.index) ? TokenKind.GREATER_EQUAL : TokenKind.GREATER;
-            case '<' -> this.lookAhead("<=", this.index) ? TokenKind.LESS_EQUAL : TokenKind.LESS;
+        char c = this.source.charAt(this.index);
+        char next = this.peek(this.index + 1);
+
+        TokenKind kind = switch (c) {
+            case '+' -> next == '+' ? TokenKind.INCREMENT : TokenKind.PLUS;
+            case '-' -> next == '-' ? TokenKind.DECREMENT : next == '>' ? TokenKind.THIN_ARROW : TokenKind.MINUS;
+            case '&' -> next == '&' ? TokenKind.AND : TokenKind.INVALID;
+            case '|' -> next == '|' ? TokenKind.OR : TokenKind.INVALID;
+            case '=' -> next == '=' ? TokenKind.EQUAL : TokenKind.ASSIGN;
+            case '!' -> next == '=' ? TokenKind.NOT_EQUAL : TokenKind.NOT;
+            case '>' -> next == '=' ? TokenKind.GREATER_EQUAL : TokenKind.GREATER;
+            case '<' -> next == '=' ? TokenKind.LESS_EQUAL : TokenKind.LESS;
             case '*' -> TokenKind.MULTIPLY;
             case '/' -> TokenKind.DIVIDE;
             case '%' -> TokenKind.MODULO;
@@ -208,7 +277,7 @@ public class Lexer {
         };
 
         if (kind == TokenKind.INVALID) {
-            throw KaoriError.SyntaxError("invalid token " + this.source.charAt(this.index), this.line);
+            throw KaoriError.SyntaxError("invalid token " + c, this.line);
         }
 
         int size = switch (kind) {
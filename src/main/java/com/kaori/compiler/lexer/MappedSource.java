@@ -0,0 +1,122 @@
+package com.kaori.compiler.lexer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ * A UTF-8 file read through a memory mapping. Bytes are decoded a chunk at
+ * a time into a window of characters that starts at the oldest character
+ * not released yet, so the heap only ever holds the part of the program the
+ * lexer and parser are still looking at, however large the file is
+ */
+public class MappedSource implements Source {
+    private static final int CHUNK = 64 * 1024;
+
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    private char[] chars;
+    /* index of the program character held in chars[0] */
+    private int start;
+    private int size;
+    private int released;
+    private boolean decoded;
+
+    private MappedSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        this.chars = new char[2 * CHUNK];
+        this.start = 0;
+        this.size = 0;
+        this.released = 0;
+        this.decoded = false;
+    }
+
+    public static MappedSource open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public boolean has(int index) {
+        while (index >= this.start + this.size && !this.decoded) {
+            this.decode();
+        }
+
+        return index < this.start + this.size;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < this.start || !this.has(index)) {
+            throw new IndexOutOfBoundsException("character " + index + " is not in the source window");
+        }
+
+        return this.chars[index - this.start];
+    }
+
+    @Override
+    public String text(int start, int end) {
+        if (start < this.start || end > start && !this.has(end - 1)) {
+            throw new IndexOutOfBoundsException("characters " + start + " to " + end + " are not in the source window");
+        }
+
+        return new String(this.chars, start - this.start, end - start);
+    }
+
+    @Override
+    public void release(int position) {
+        this.released = Math.max(this.released, position);
+    }
+
+    /* Makes room for a chunk, dropping released characters before growing the window */
+    private void decode() {
+        if (this.chars.length - this.size < CHUNK) {
+            int drop = Math.min(this.released - this.start, this.size);
+
+            System.arraycopy(this.chars, drop, this.chars, 0, this.size - drop);
+            this.start += drop;
+            this.size -= drop;
+
+            if (this.chars.length - this.size < CHUNK) {
+                this.chars = Arrays.copyOf(this.chars, this.chars.length * 2);
+            }
+        }
+
+        int end = Math.min(this.bytes.capacity(), this.bytes.position() + CHUNK);
+        boolean last = end == this.bytes.capacity();
+        CharBuffer out = CharBuffer.wrap(this.chars, this.size, this.chars.length - this.size);
+
+        this.bytes.limit(end);
+
+        try {
+            CoderResult result = this.decoder.decode(this.bytes, out, last);
+
+            if (last && !result.isError()) {
+                result = this.decoder.flush(out);
+                this.decoded = true;
+            }
+
+            if (result.isError()) {
+                result.throwException();
+            }
+        } catch (CharacterCodingException error) {
+            throw new UncheckedIOException(error);
+        }
+
+        this.size = out.position();
+    }
+}
@@ -0,0 +1,19 @@
+package com.kaori.compiler.lexer;
+
+/*
+ * Characters the Lexer reads, addressed by their index from the start of
+ * the program. A source may not know its length until it has been read to
+ * the end, and may drop characters once the caller releases them
+ */
+public interface Source {
+    /* Whether there is a character at index */
+    boolean has(int index);
+
+    char charAt(int index);
+
+    /* Characters from start up to end, they must not be released yet */
+    String text(int start, int end);
+
+    /* Nothing before position will be read again */
+    void release(int position);
+}
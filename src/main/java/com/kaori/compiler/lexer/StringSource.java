@@ -0,0 +1,30 @@
+package com.kaori.compiler.lexer;
+
+/* A program already held in memory, releasing characters does nothing */
+public class StringSource implements Source {
+    private final String source;
+
+    public StringSource(String source) {
+        this.source = source;
+    }
+
+    @Override
+    public boolean has(int index) {
+        return index < this.source.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return this.source.charAt(index);
+    }
+
+    @Override
+    public String text(int start, int end) {
+        return this.source.substring(start, end);
+    }
+
+    @Override
+    public void release(int position) {
+
+    }
+}
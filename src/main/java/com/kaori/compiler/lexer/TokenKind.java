@@ -48,6 +48,7 @@ public enum TokenKind {
     RETURN("return"),
     PRINT("print"),
     FUNCTION("def"),
+    IMPORT("import"),
 
     // Literals and identifiers
     IDENTIFIER("identifier"),
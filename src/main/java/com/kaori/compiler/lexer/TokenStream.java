@@ -4,60 +4,155 @@ import java.util.List;
 
 import com.kaori.error.KaoriError;
 
+/*
+ * Tokens the Parser walks through. They are pulled from the lexer as the
+ * parser gets to them and kept in a small ring that only holds the current
+ * token and the ones looked ahead at, so once a token is consumed the source
+ * characters before the current one are released. Lexemes are cut out of
+ * the source only when the parser asks for them
+ *
+ * The ring is a set of parallel arrays, one per token field, so lexing a
+ * program allocates no object per token
+ */
 public class TokenStream {
-    private final List<Token> tokens;
-    private String source;
-    private int index;
+    private static final TokenKind[] KINDS = TokenKind.values();
+
+    private final Lexer lexer;
+    private final Source source;
+    private byte[] kinds;
+    private int[] lines;
+    private int[] positions;
+    private int[] sizes;
+    /* slot of the current token in the arrays, and how many tokens follow from it */
+    private int start;
+    private int count;
+    private boolean exhausted;
     private int line;
 
+    public TokenStream(Lexer lexer) {
+        this(lexer, lexer.source(), 4);
+    }
+
+    /* Tokens scanned up front, the arrays hold all of them and the lexer is never asked for more */
     public TokenStream(List<Token> tokens, String source) {
-        this.tokens = tokens;
+        this(null, new StringSource(source), Math.max(tokens.size(), 1));
+
+        for (Token token : tokens) {
+            this.add(token.kind(), token.line(), token.position(), token.size());
+        }
+
+        this.exhausted = true;
+    }
+
+    private TokenStream(Lexer lexer, Source source, int capacity) {
+        this.lexer = lexer;
         this.source = source;
-        this.index = 0;
+        this.kinds = new byte[capacity];
+        this.lines = new int[capacity];
+        this.positions = new int[capacity];
+        this.sizes = new int[capacity];
+        this.start = 0;
+        this.count = 0;
+        this.exhausted = false;
         this.line = 1;
     }
 
-    public TokenKind getCurrent() {
-        if (this.atEnd()) {
-            return TokenKind.EOF;
+    private void add(TokenKind kind, int line, int position, int size) {
+        if (this.count == this.kinds.length) {
+            this.grow();
         }
 
-        Token token = this.tokens.get(this.index);
+        int slot = this.slot(this.count);
 
-        return token.kind();
+        this.kinds[slot] = (byte) kind.ordinal();
+        this.lines[slot] = line;
+        this.positions[slot] = position;
+        this.sizes[slot] = size;
+        this.count++;
     }
 
-    public int getLine() {
-        Token token = this.tokens.get(this.index);
+    /* Unrolls the ring into arrays twice as long, the current token moves to slot 0 */
+    private void grow() {
+        this.kinds = this.unroll(this.kinds, new byte[this.kinds.length * 2]);
+        this.lines = this.unroll(this.lines, new int[this.lines.length * 2]);
+        this.positions = this.unroll(this.positions, new int[this.positions.length * 2]);
+        this.sizes = this.unroll(this.sizes, new int[this.sizes.length * 2]);
+        this.start = 0;
+    }
+
+    private byte[] unroll(byte[] from, byte[] to) {
+        System.arraycopy(from, this.start, to, 0, from.length - this.start);
+        System.arraycopy(from, 0, to, from.length - this.start, this.start);
+
+        return to;
+    }
+
+    private int[] unroll(int[] from, int[] to) {
+        System.arraycopy(from, this.start, to, 0, from.length - this.start);
+        System.arraycopy(from, 0, to, from.length - this.start, this.start);
+
+        return to;
+    }
+
+    private int slot(int offset) {
+        return (this.start + offset) % this.kinds.length;
+    }
 
-        return token.line();
+    /* Whether there is a token offset places after the current one, lexing up to it if needed */
+    private boolean fill(int offset) {
+        while (this.count <= offset && !this.exhausted) {
+            TokenKind kind = this.lexer.next();
+
+            if (kind == null) {
+                this.exhausted = true;
+                break;
+            }
+
+            this.add(kind, this.lexer.line(), this.lexer.position(), this.lexer.size());
+        }
+
+        return offset < this.count;
     }
 
-    private int getPosition() {
-        Token token = this.tokens.get(this.index);
+    private TokenKind kind(int offset) {
+        return KINDS[this.kinds[this.slot(offset)]];
+    }
+
+    public TokenKind getCurrent() {
+        if (this.atEnd()) {
+            return TokenKind.EOF;
+        }
 
-        return token.position();
+        return this.kind(0);
     }
 
-    private int getSize() {
-        Token token = this.tokens.get(this.index);
+    public int getLine() {
+        if (this.atEnd()) {
+            return this.line;
+        }
 
-        return token.size();
+        return this.lines[this.slot(0)];
     }
 
     public String getLexeme() {
-        return this.source.substring(this.getPosition(), this.getPosition() + this.getSize());
+        int position = this.positions[this.slot(0)];
+
+        return this.source.text(position, position + this.sizes[this.slot(0)]);
     }
 
     public boolean atEnd() {
-        return this.index >= this.tokens.size();
+        return !this.fill(0);
     }
 
     private void advance() {
-        this.index++;
+        if (this.count > 0) {
+            this.start = this.slot(1);
+            this.count--;
+        }
 
         if (!this.atEnd()) {
-            this.line = this.getLine();
+            this.line = this.lines[this.slot(0)];
+            this.source.release(this.positions[this.slot(0)]);
         }
     }
 
@@ -82,16 +177,9 @@ public class TokenStream {
 
     public boolean lookAhead(TokenKind... expected) {
         for (int i = 0; i < expected.length; i++) {
-            int j = this.index + i;
-
-            if (j >= this.tokens.size()) {
+            if (!this.fill(i) || this.kind(i) != expected[i]) {
                 return false;
             }
-
-            Token token = this.tokens.get(j);
-
-            if (token.kind() != expected[i])
-                return false;
         }
 
         return true;
@@ -0,0 +1,27 @@
+package com.kaori.compiler.module;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.ImportAST;
+import com.kaori.error.KaoriError;
+
+/*
+ * One parsed file of a program. Name is its path from the directory of the
+ * main file and dependencies holds the file each import points to, in the
+ * order of the imports
+ */
+public record Module(
+        Path path,
+        String name,
+        boolean main,
+        List<ImportAST> imports,
+        List<Path> dependencies,
+        List<DeclarationAST> declarations) {
+
+    /* Errors of the main file read as they did before imports existed, the others name their file */
+    public KaoriError locate(KaoriError error) {
+        return this.main ? error : error.in(this.name);
+    }
+}
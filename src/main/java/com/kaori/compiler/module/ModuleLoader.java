@@ -0,0 +1,168 @@
+package com.kaori.compiler.module;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.kaori.compiler.lexer.Lexer;
+import com.kaori.compiler.lexer.MappedSource;
+import com.kaori.compiler.lexer.TokenStream;
+import com.kaori.compiler.syntax.ImportAST;
+import com.kaori.compiler.syntax.Parser;
+import com.kaori.error.KaoriError;
+
+/*
+ * Finds the files of a program by following imports from the main file.
+ * Every file is lexed and parsed as its own task on the pool, and the files
+ * it imports are submitted as soon as its import lines are read, so they
+ * are parsed while the rest of the importing file still is
+ */
+public class ModuleLoader {
+    private final ForkJoinPool pool;
+    private final Map<Path, ForkJoinTask<Module>> tasks;
+    private Path root;
+
+    public ModuleLoader(ForkJoinPool pool) {
+        this.pool = pool;
+        this.tasks = new ConcurrentHashMap<>();
+        this.root = null;
+    }
+
+    /* Parses the main file at path and every file it imports, imports form no cycle */
+    public Program load(Path path) throws IOException {
+        this.root = path.toAbsolutePath().normalize();
+        this.submit(this.root);
+
+        Map<Path, Module> modules = new HashMap<>();
+        Deque<Path> pending = new ArrayDeque<>(List.of(this.root));
+
+        while (!pending.isEmpty()) {
+            Path file = pending.pop();
+
+            if (!modules.containsKey(file)) {
+                Module module = Program.join(this.tasks.get(file));
+
+                modules.put(file, module);
+                pending.addAll(module.dependencies());
+            }
+        }
+
+        Map<Path, Module> ordered = new LinkedHashMap<>();
+
+        this.order(modules.get(this.root), modules, new HashSet<>(), ordered);
+
+        return new Program(new ArrayList<>(ordered.values()));
+    }
+
+    /* The files of a program found by reading only their import lines, enough to key the cache */
+    public List<Path> sources(Path path) throws IOException {
+        this.root = path.toAbsolutePath().normalize();
+
+        Set<Path> sources = new LinkedHashSet<>(List.of(this.root));
+        Deque<Path> pending = new ArrayDeque<>(sources);
+
+        while (!pending.isEmpty()) {
+            Path file = pending.pop();
+
+            try {
+                for (Path dependency : this.dependencies(file, this.parser(file).imports())) {
+                    if (sources.add(dependency)) {
+                        pending.add(dependency);
+                    }
+                }
+            } catch (KaoriError error) {
+                throw this.locate(file, error);
+            }
+        }
+
+        return new ArrayList<>(sources);
+    }
+
+    private void submit(Path file) {
+        this.tasks.computeIfAbsent(file, key -> this.pool.submit(() -> this.parse(key)));
+    }
+
+    private Module parse(Path file) throws IOException {
+        Parser parser = this.parser(file);
+
+        try {
+            List<ImportAST> imports = parser.imports();
+            List<Path> dependencies = this.dependencies(file, imports);
+
+            for (Path dependency : dependencies) {
+                this.submit(dependency);
+            }
+
+            return new Module(file, this.name(file), file.equals(this.root), imports, dependencies,
+                    parser.declarations());
+        } catch (KaoriError error) {
+            throw this.locate(file, error);
+        }
+    }
+
+    private List<Path> dependencies(Path file, List<ImportAST> imports) {
+        List<Path> dependencies = new ArrayList<>();
+
+        for (ImportAST imported : imports) {
+            Path dependency = file.resolveSibling(imported.path()).normalize();
+
+            if (!Files.isRegularFile(dependency)) {
+                throw KaoriError.ImportError("can't find " + imported.path(), imported.line());
+            }
+
+            dependencies.add(dependency);
+        }
+
+        return dependencies;
+    }
+
+    /* Depth first from the main file, so every file comes after the files it imports */
+    private void order(Module module, Map<Path, Module> modules, Set<Path> visiting, Map<Path, Module> ordered) {
+        visiting.add(module.path());
+
+        for (int i = 0; i < module.imports().size(); i++) {
+            Path dependency = module.dependencies().get(i);
+
+            if (visiting.contains(dependency)) {
+                ImportAST imported = module.imports().get(i);
+
+                throw module.locate(KaoriError.ImportError("import cycle through " + imported.path(),
+                        imported.line()));
+            }
+
+            if (!ordered.containsKey(dependency)) {
+                this.order(modules.get(dependency), modules, visiting, ordered);
+            }
+        }
+
+        visiting.remove(module.path());
+        ordered.put(module.path(), module);
+    }
+
+    private KaoriError locate(Path file, KaoriError error) {
+        return file.equals(this.root) ? error : error.in(this.name(file));
+    }
+
+    private String name(Path file) {
+        return this.root.getParent().relativize(file).toString();
+    }
+
+    private Parser parser(Path file) throws IOException {
+        Lexer lexer = new Lexer(MappedSource.open(file));
+
+        return new Parser(new TokenStream(lexer));
+    }
+}
@@ -0,0 +1,145 @@
+package com.kaori.compiler.module;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+
+import com.kaori.compiler.semantic.Global;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.TypeAST;
+import com.kaori.error.KaoriError;
+
+/*
+ * The files of a program, every file after the files it imports. Engines
+ * run them as one declaration list whose functions are hoisted together, so
+ * the top level slots hold the functions of every file first and then the
+ * variables of each file in file order. That layout is known once the files
+ * are parsed, which lets each file be resolved and type checked on its own
+ */
+public class Program {
+    private final List<Module> modules;
+
+    public Program(List<Module> modules) {
+        this.modules = modules;
+    }
+
+    public List<Module> modules() {
+        return this.modules;
+    }
+
+    /* All files as one list, to be run after every file was checked */
+    public List<DeclarationAST> declarations() {
+        List<DeclarationAST> declarations = new ArrayList<>();
+
+        for (Module module : this.modules) {
+            declarations.addAll(module.declarations());
+        }
+
+        return declarations;
+    }
+
+    /* The slots declared before the file's own variables, naming those of the file and its imports */
+    public List<Global> globals(Module module) {
+        Map<Path, Integer> imports = new HashMap<>();
+
+        for (int i = 0; i < module.imports().size(); i++) {
+            imports.putIfAbsent(module.dependencies().get(i), module.imports().get(i).line());
+        }
+
+        List<Global> globals = new ArrayList<>();
+
+        for (Module owner : this.modules) {
+            for (DeclarationAST declaration : owner.declarations()) {
+                if (declaration instanceof DeclarationAST.Function function) {
+                    globals.add(this.global(module, owner, imports, function.name().name(), function.type(),
+                            function.line()));
+                }
+            }
+        }
+
+        for (Module owner : this.modules.subList(0, this.modules.indexOf(module))) {
+            for (DeclarationAST declaration : owner.declarations()) {
+                if (declaration instanceof DeclarationAST.Variable variable) {
+                    globals.add(this.global(module, owner, imports, variable.left().name(), variable.type(),
+                            variable.line()));
+                }
+            }
+        }
+
+        return globals;
+    }
+
+    private Global global(Module module, Module owner, Map<Path, Integer> imports, String name, TypeAST type,
+            int line) {
+        if (owner == module) {
+            return new Global(name, type, true, line);
+        }
+
+        Integer imported = imports.get(owner.path());
+
+        return imported == null ? new Global(name, type, false, line) : new Global(name, type, true, imported);
+    }
+
+    /*
+     * Runs a pass over every file at once. The globals are all taken before
+     * any pass starts, and a failure is reported for the first failing file
+     * in program order, so errors don't depend on scheduling
+     */
+    public void check(ForkJoinPool pool, BiConsumer<List<DeclarationAST>, List<Global>> pass) throws IOException {
+        List<List<Global>> globals = new ArrayList<>();
+
+        for (Module module : this.modules) {
+            globals.add(this.globals(module));
+        }
+
+        List<ForkJoinTask<Object>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < this.modules.size(); i++) {
+            Module module = this.modules.get(i);
+            List<Global> moduleGlobals = globals.get(i);
+
+            tasks.add(pool.submit(() -> {
+                try {
+                    pass.accept(module.declarations(), moduleGlobals);
+                } catch (KaoriError error) {
+                    throw module.locate(error);
+                }
+
+                return null;
+            }));
+        }
+
+        for (ForkJoinTask<Object> task : tasks) {
+            join(task);
+        }
+    }
+
+    /* Waits for a task and rethrows what it threw */
+    static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while compiling", error);
+        } catch (ExecutionException error) {
+            Throwable cause = error.getCause();
+
+            if (cause instanceof IOException io) {
+                throw io;
+            } else if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            } else if (cause instanceof Error fatal) {
+                throw fatal;
+            }
+
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.kaori.compiler.optimizer;
+
+import java.util.List;
+
+import com.kaori.compiler.Visitor;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.ExpressionAST;
+import com.kaori.compiler.syntax.StatementAST;
+
+/*
+ * Folds operators over literal operands and prunes branches whose condition
+ * folds to a constant. Runs after the TypeChecker, so every operand is known
+ * to have the right type. Divisions by a literal zero are left alone so they
+ * still fail at runtime like they do in the Interpreter
+ */
+public class ConstantFolder extends Visitor<ExpressionAST> {
+    /* replacement for the statement being visited, null removes it */
+    private DeclarationAST folded;
+
+    public ConstantFolder(List<DeclarationAST> declarations) {
+        super(declarations);
+        this.folded = null;
+    }
+
+    @Override
+    protected void visitDeclarations(List<DeclarationAST> declarations) {
+        int index = 0;
+
+        while (index < declarations.size()) {
+            DeclarationAST declaration = this.fold(declarations.get(index));
+
+            if (declaration == null
+                    || declaration instanceof StatementAST.Block block && block.declarations().isEmpty()) {
+                declarations.remove(index);
+            } else {
+                declarations.set(index, declaration);
+                index++;
+            }
+        }
+    }
+
+    private DeclarationAST fold(DeclarationAST declaration) {
+        this.line = declaration.line();
+        this.folded = declaration;
+        this.visit(declaration);
+
+        return this.folded;
+    }
+
+    private ExpressionAST.Literal literal(ExpressionAST expression) {
+        if (expression instanceof ExpressionAST.Literal literal && literal.value() != null) {
+            return literal;
+        }
+
+        return null;
+    }
+
+    /* Expressions */
+    @Override
+    public ExpressionAST visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
+        ExpressionAST left = this.visit(expression.left());
+        ExpressionAST right = this.visit(expression.right());
+        ExpressionAST.Literal a = this.literal(left);
+        ExpressionAST.Literal b = this.literal(right);
+
+        if (a != null && b != null) {
+            Object value = this.evaluate(expression.operator(), a.value(), b.value());
+
+            if (value != null) {
+                return new ExpressionAST.Literal(expression.type(), value);
+            }
+        }
+
+        if (left == expression.left() && right == expression.right()) {
+            return expression;
+        }
+
+        ExpressionAST.BinaryExpression binary = new ExpressionAST.BinaryExpression(left, right,
+                expression.operator());
+        binary.setType(expression.type());
+
+        return binary;
+    }
+
+    /* Returns null when the operation has to be left for the runtime */
+    private Object evaluate(ExpressionAST.BinaryOperator operator, Object left, Object right) {
+        return switch (operator) {
+            case PLUS -> (Double) left + (Double) right;
+            case MINUS -> (Double) left - (Double) right;
+            case MULTIPLY -> (Double) left * (Double) right;
+            case DIVIDE -> (Double) right == 0 ? null : (Double) left / (Double) right;
+            case MODULO -> (Double) right == 0 ? null : (Double) left % (Double) right;
+            case GREATER -> (Double) left > (Double) right;
+            case GREATER_EQUAL -> (Double) left >= (Double) right;
+            case LESS -> (Double) left < (Double) right;
+            case LESS_EQUAL -> (Double) left <= (Double) right;
+            case AND -> (Boolean) left && (Boolean) right;
+            case OR -> (Boolean) left || (Boolean) right;
+            case EQUAL -> left.equals(right);
+            case NOT_EQUAL -> !left.equals(right);
+        };
+    }
+
+    @Override
+    public ExpressionAST visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
+        ExpressionAST left = this.visit(expression.left());
+        ExpressionAST.Literal literal = this.literal(left);
+
+        if (literal != null) {
+            Object value = switch (expression.operator()) {
+                case NEGATE -> -(Double) literal.value();
+                case NOT -> !(Boolean) literal.value();
+            };
+
+            return new ExpressionAST.Literal(expression.type(), value);
+        }
+
+        if (left == expression.left()) {
+            return expression;
+        }
+
+        ExpressionAST.UnaryExpression unary = new ExpressionAST.UnaryExpression(left, expression.operator());
+        unary.setType(expression.type());
+
+        return unary;
+    }
+
+    @Override
+    public ExpressionAST visitAssign(ExpressionAST.Assign expression) {
+        ExpressionAST right = this.visit(expression.right());
+
+        if (right == expression.right()) {
+            return expression;
+        }
+
+        ExpressionAST.Assign assign = new ExpressionAST.Assign(expression.left(), right);
+        assign.setType(expression.type());
+
+        return assign;
+    }
+
+    @Override
+    public ExpressionAST visitLiteral(ExpressionAST.Literal expression) {
+        return expression;
+    }
+
+    @Override
+    public ExpressionAST visitIdentifier(ExpressionAST.Identifier expression) {
+        return expression;
+    }
+
+    @Override
+    public ExpressionAST visitFunctionCall(ExpressionAST.FunctionCall expression) {
+        List<ExpressionAST> arguments = expression.arguments();
+
+        for (int i = 0; i < arguments.size(); i++) {
+            arguments.set(i, this.visit(arguments.get(i)));
+        }
+
+        return expression;
+    }
+
+    /* Statements */
+    @Override
+    public void visitPrintStatement(StatementAST.Print statement) {
+        ExpressionAST expression = this.visit(statement.expression());
+
+        this.folded = new StatementAST.Print(statement.line(), expression);
+    }
+
+    @Override
+    public void visitBlockStatement(StatementAST.Block statement) {
+        this.visitDeclarations(statement.declarations());
+
+        this.folded = statement;
+    }
+
+    @Override
+    public void visitExpressionStatement(StatementAST.Expr statement) {
+        ExpressionAST expression = this.visit(statement.expression());
+
+        this.folded = expression instanceof ExpressionAST.Literal ? null
+                : new StatementAST.Expr(statement.line(), expression);
+    }
+
+    @Override
+    public void visitIfStatement(StatementAST.If statement) {
+        ExpressionAST condition = this.visit(statement.condition());
+        ExpressionAST.Literal literal = this.literal(condition);
+
+        if (literal != null) {
+            StatementAST branch = (Boolean) literal.value() ? statement.thenBranch() : statement.elseBranch();
+
+            this.folded = this.fold(branch);
+            return;
+        }
+
+        this.visitBlockStatement(statement.thenBranch());
+        StatementAST elseBranch = (StatementAST) this.fold(statement.elseBranch());
+
+        this.folded = new StatementAST.If(statement.line(), condition, statement.thenBranch(), elseBranch);
+    }
+
+    @Override
+    public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
+        ExpressionAST condition = this.visit(statement.condition());
+        ExpressionAST.Literal literal = this.literal(condition);
+
+        if (literal != null && !(Boolean) literal.value()) {
+            this.folded = null;
+            return;
+        }
+
+        this.visitBlockStatement(statement.block());
+
+        this.folded = new StatementAST.WhileLoop(statement.line(), condition, statement.block());
+    }
+
+    /* Declarations */
+    @Override
+    public void visitVariableDeclaration(DeclarationAST.Variable declaration) {
+        declaration.setRight(this.visit(declaration.right()));
+
+        this.folded = declaration;
+    }
+
+    @Override
+    public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
+
+    }
+
+    @Override
+    public void visitFunctionDefinition(DeclarationAST.Function declaration) {
+        for (DeclarationAST.Variable parameter : declaration.parameters()) {
+            parameter.setRight(this.visit(parameter.right()));
+        }
+
+        this.visitDeclarations(declaration.block().declarations());
+
+        this.folded = declaration;
+    }
+}
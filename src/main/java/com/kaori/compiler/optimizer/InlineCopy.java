@@ -0,0 +1,186 @@
+package com.kaori.compiler.optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.kaori.compiler.Visitor;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.ExpressionAST;
+import com.kaori.compiler.syntax.StatementAST;
+
+/*
+ * Copies the body of a function into a block that can stand in for one call
+ * to it. The parameters become variables of the block, initialized with the
+ * arguments or the defaults, and every offset is moved into the caller's
+ * frame: the callee's locals start at base and its globals keep their slot,
+ * read as locals when the caller is top level code
+ */
+class InlineCopy extends Visitor<ExpressionAST> {
+    private final DeclarationAST.Function function;
+    private final int base;
+    private final boolean topLevel;
+    private DeclarationAST copied;
+
+    InlineCopy(DeclarationAST.Function function, int base, boolean topLevel) {
+        super(List.of());
+        this.function = function;
+        this.base = base;
+        this.topLevel = topLevel;
+        this.copied = null;
+    }
+
+    /* Arguments without a parameter are dropped, calls never evaluate them */
+    StatementAST.Block block(int line, List<ExpressionAST> arguments) {
+        List<DeclarationAST> declarations = new ArrayList<>();
+        List<DeclarationAST.Variable> parameters = this.function.parameters();
+
+        for (int i = 0; i < parameters.size(); i++) {
+            DeclarationAST.Variable parameter = parameters.get(i);
+            ExpressionAST right = i < arguments.size() ? arguments.get(i) : this.visit(parameter.right());
+
+            declarations.add(new DeclarationAST.Variable(parameter.line(), this.identifier(parameter.left()), right,
+                    parameter.type()));
+        }
+
+        declarations.addAll(this.copy(this.function.block().declarations()));
+
+        return new StatementAST.Block(line, declarations);
+    }
+
+    private List<DeclarationAST> copy(List<DeclarationAST> declarations) {
+        List<DeclarationAST> copies = new ArrayList<>();
+
+        for (DeclarationAST declaration : declarations) {
+            copies.add(this.copy(declaration));
+        }
+
+        return copies;
+    }
+
+    private DeclarationAST copy(DeclarationAST declaration) {
+        this.line = declaration.line();
+        this.visit(declaration);
+
+        return this.copied;
+    }
+
+    private ExpressionAST.Identifier identifier(ExpressionAST.Identifier identifier) {
+        ExpressionAST.Identifier copy = new ExpressionAST.Identifier(identifier.name());
+
+        if (identifier.offset() != -1) {
+            if (identifier.local()) {
+                copy.setReference(this.base + identifier.offset(), true);
+            } else {
+                copy.setReference(identifier.offset(), this.topLevel);
+            }
+        }
+
+        copy.setType(identifier.type());
+
+        return copy;
+    }
+
+    /* Expressions */
+    @Override
+    public ExpressionAST visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
+        ExpressionAST.BinaryExpression copy = new ExpressionAST.BinaryExpression(this.visit(expression.left()),
+                this.visit(expression.right()), expression.operator());
+        copy.setType(expression.type());
+
+        return copy;
+    }
+
+    @Override
+    public ExpressionAST visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
+        ExpressionAST.UnaryExpression copy = new ExpressionAST.UnaryExpression(this.visit(expression.left()),
+                expression.operator());
+        copy.setType(expression.type());
+
+        return copy;
+    }
+
+    @Override
+    public ExpressionAST visitAssign(ExpressionAST.Assign expression) {
+        ExpressionAST right = this.visit(expression.right());
+        ExpressionAST.Assign copy = new ExpressionAST.Assign(this.identifier(expression.left()), right);
+        copy.setType(expression.type());
+
+        return copy;
+    }
+
+    @Override
+    public ExpressionAST visitLiteral(ExpressionAST.Literal expression) {
+        return expression;
+    }
+
+    @Override
+    public ExpressionAST visitIdentifier(ExpressionAST.Identifier expression) {
+        return this.identifier(expression);
+    }
+
+    @Override
+    public ExpressionAST visitFunctionCall(ExpressionAST.FunctionCall expression) {
+        ExpressionAST callee = this.visit(expression.callee());
+        List<ExpressionAST> arguments = new ArrayList<>();
+
+        for (ExpressionAST argument : expression.arguments()) {
+            arguments.add(this.visit(argument));
+        }
+
+        ExpressionAST.FunctionCall copy = new ExpressionAST.FunctionCall(callee, arguments);
+        copy.setType(expression.type());
+
+        return copy;
+    }
+
+    /* Statements */
+    @Override
+    public void visitPrintStatement(StatementAST.Print statement) {
+        this.copied = new StatementAST.Print(statement.line(), this.visit(statement.expression()));
+    }
+
+    @Override
+    public void visitBlockStatement(StatementAST.Block statement) {
+        this.copied = new StatementAST.Block(statement.line(), this.copy(statement.declarations()));
+    }
+
+    @Override
+    public void visitExpressionStatement(StatementAST.Expr statement) {
+        this.copied = new StatementAST.Expr(statement.line(), this.visit(statement.expression()));
+    }
+
+    @Override
+    public void visitIfStatement(StatementAST.If statement) {
+        ExpressionAST condition = this.visit(statement.condition());
+        StatementAST.Block thenBranch = (StatementAST.Block) this.copy(statement.thenBranch());
+        StatementAST elseBranch = statement.elseBranch() == null ? null
+                : (StatementAST) this.copy(statement.elseBranch());
+
+        this.copied = new StatementAST.If(statement.line(), condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
+        ExpressionAST condition = this.visit(statement.condition());
+        StatementAST.Block block = (StatementAST.Block) this.copy(statement.block());
+
+        this.copied = new StatementAST.WhileLoop(statement.line(), condition, block);
+    }
+
+    /* Declarations */
+    @Override
+    public void visitVariableDeclaration(DeclarationAST.Variable declaration) {
+        this.copied = new DeclarationAST.Variable(declaration.line(), this.identifier(declaration.left()),
+                this.visit(declaration.right()), declaration.type());
+    }
+
+    @Override
+    public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
+        throw new IllegalStateException("Functions can't be declared inside another function");
+    }
+
+    @Override
+    public void visitFunctionDefinition(DeclarationAST.Function declaration) {
+        throw new IllegalStateException("Functions can't be declared inside another function");
+    }
+}
@@ -0,0 +1,331 @@
+package com.kaori.compiler.optimizer;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.kaori.compiler.Visitor;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.ExpressionAST;
+import com.kaori.compiler.syntax.StatementAST;
+
+/*
+ * Replaces calls to small functions by a copy of their body. Only calls
+ * made as statements are inlined, functions never return a value so that
+ * covers every call worth it. A first pass measures every function and
+ * records which functions it calls, then a second one rewrites the call
+ * sites of the functions that are under the budget, not recursive and never
+ * assigned to. Slots are counted the same way the Resolver hands them out,
+ * so the copy can move the callee's locals right above the caller's
+ */
+public class Inliner extends Visitor<Object> {
+    private final int budget;
+    private final Map<DeclarationAST.Function, Callee> callees;
+    /* function declared in each top level slot, null for variables */
+    private final List<DeclarationAST.Function> slots;
+    private DeclarationAST.Function enclosing;
+    private Callee callee;
+    private boolean survey;
+    private int declared;
+    private int nodes;
+    /* replacement for the statement being visited, null keeps it */
+    private DeclarationAST inlined;
+
+    public Inliner(List<DeclarationAST> declarations, int budget) {
+        super(declarations);
+        this.budget = budget;
+        this.callees = new IdentityHashMap<>();
+        this.slots = new ArrayList<>();
+        this.enclosing = null;
+        this.callee = null;
+        this.survey = false;
+        this.declared = 0;
+        this.nodes = 0;
+        this.inlined = null;
+    }
+
+    @Override
+    public void run() {
+        this.survey = true;
+        this.visitDeclarations(this.declarations);
+
+        for (Map.Entry<DeclarationAST.Function, Callee> entry : this.callees.entrySet()) {
+            Callee callee = entry.getValue();
+
+            callee.inlinable = callee.size <= this.budget && !callee.assigned
+                    && !this.reaches(callee, entry.getKey(), new ArrayList<>());
+        }
+
+        this.survey = false;
+        this.declared = 0;
+        this.slots.clear();
+        this.visitDeclarations(this.declarations);
+    }
+
+    private boolean reaches(Callee from, DeclarationAST.Function target, List<Callee> visited) {
+        for (DeclarationAST.Function function : from.calls) {
+            if (function == target) {
+                return true;
+            }
+
+            Callee next = this.callees.get(function);
+
+            if (next != null && !visited.contains(next)) {
+                visited.add(next);
+
+                if (this.reaches(next, target, visited)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void declare(DeclarationAST.Function function) {
+        if (this.enclosing == null) {
+            while (this.slots.size() <= this.declared) {
+                this.slots.add(null);
+            }
+
+            this.slots.set(this.declared, function);
+        }
+
+        this.declared++;
+    }
+
+    /* The function an identifier refers to, functions only live in the top level frame */
+    private DeclarationAST.Function function(ExpressionAST.Identifier identifier) {
+        if (this.enclosing != null && identifier.local()) {
+            return null;
+        }
+
+        int offset = identifier.offset();
+
+        return offset >= 0 && offset < this.slots.size() ? this.slots.get(offset) : null;
+    }
+
+    @Override
+    protected void visitDeclarations(List<DeclarationAST> declarations) {
+        for (DeclarationAST declaration : declarations) {
+            if (declaration instanceof DeclarationAST.Function function) {
+                this.line = declaration.line();
+                this.visitFunctionDeclaration(function);
+            }
+        }
+
+        for (int i = 0; i < declarations.size(); i++) {
+            DeclarationAST declaration = declarations.get(i);
+
+            this.line = declaration.line();
+            this.inlined = null;
+            this.visit(declaration);
+
+            if (this.inlined != null) {
+                declarations.set(i, this.inlined);
+                this.inlined = null;
+            }
+        }
+    }
+
+    /* Top level call sites must see every global the callee reads, or its locals would take their slots */
+    private StatementAST.Block inline(int line, ExpressionAST.FunctionCall call) {
+        if (this.survey || !(call.callee() instanceof ExpressionAST.Identifier identifier)) {
+            return null;
+        }
+
+        DeclarationAST.Function function = this.function(identifier);
+        Callee callee = function == null ? null : this.callees.get(function);
+
+        if (callee == null || !callee.inlinable || this.enclosing == null && callee.globals > this.declared) {
+            return null;
+        }
+
+        return new InlineCopy(function, this.declared, this.enclosing == null).block(line, call.arguments());
+    }
+
+    /* Expressions */
+    @Override
+    public Object visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
+        this.nodes++;
+        this.visit(expression.left());
+        this.visit(expression.right());
+
+        return null;
+    }
+
+    @Override
+    public Object visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
+        this.nodes++;
+        this.visit(expression.left());
+
+        return null;
+    }
+
+    @Override
+    public Object visitAssign(ExpressionAST.Assign expression) {
+        this.nodes++;
+        this.visit(expression.right());
+
+        DeclarationAST.Function function = this.function(expression.left());
+
+        if (this.survey && function != null) {
+            this.callees.get(function).assigned = true;
+        }
+
+        this.visit(expression.left());
+
+        return null;
+    }
+
+    @Override
+    public Object visitLiteral(ExpressionAST.Literal expression) {
+        this.nodes++;
+
+        return null;
+    }
+
+    @Override
+    public Object visitIdentifier(ExpressionAST.Identifier expression) {
+        this.nodes++;
+
+        if (this.callee != null && !expression.local()) {
+            this.callee.globals = Math.max(this.callee.globals, expression.offset() + 1);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Object visitFunctionCall(ExpressionAST.FunctionCall expression) {
+        this.nodes++;
+
+        if (this.callee != null && expression.callee() instanceof ExpressionAST.Identifier identifier) {
+            DeclarationAST.Function function = this.function(identifier);
+
+            if (function != null) {
+                this.callee.calls.add(function);
+            }
+        }
+
+        this.visit(expression.callee());
+
+        for (ExpressionAST argument : expression.arguments()) {
+            this.visit(argument);
+        }
+
+        return null;
+    }
+
+    /* Statements */
+    @Override
+    public void visitPrintStatement(StatementAST.Print statement) {
+        this.nodes++;
+        this.visit(statement.expression());
+    }
+
+    @Override
+    public void visitBlockStatement(StatementAST.Block statement) {
+        int declared = this.declared;
+
+        this.nodes++;
+        this.visitDeclarations(statement.declarations());
+
+        this.declared = declared;
+    }
+
+    /* The copy is visited too, so calls inside the inlined body get inlined in turn */
+    @Override
+    public void visitExpressionStatement(StatementAST.Expr statement) {
+        StatementAST.Block block = statement.expression() instanceof ExpressionAST.FunctionCall call
+                ? this.inline(statement.line(), call)
+                : null;
+
+        if (block != null) {
+            this.visitBlockStatement(block);
+            this.inlined = block;
+            return;
+        }
+
+        this.nodes++;
+        this.visit(statement.expression());
+    }
+
+    @Override
+    public void visitIfStatement(StatementAST.If statement) {
+        this.nodes++;
+        this.visit(statement.condition());
+        this.visit(statement.thenBranch());
+
+        if (statement.elseBranch() != null) {
+            this.visit(statement.elseBranch());
+        }
+    }
+
+    @Override
+    public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
+        this.nodes++;
+        this.visit(statement.condition());
+        this.visit(statement.block());
+    }
+
+    /* Declarations */
+    @Override
+    public void visitVariableDeclaration(DeclarationAST.Variable declaration) {
+        this.nodes++;
+        this.visit(declaration.right());
+        this.declare(null);
+    }
+
+    @Override
+    public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
+        if (this.survey) {
+            this.callees.put(declaration, new Callee());
+        }
+
+        this.declare(declaration);
+    }
+
+    /* The body gets its own frame, numbered from the first parameter */
+    @Override
+    public void visitFunctionDefinition(DeclarationAST.Function declaration) {
+        int declared = this.declared;
+        int nodes = this.nodes;
+
+        this.enclosing = declaration;
+        this.callee = this.survey ? this.callees.get(declaration) : null;
+        this.declared = 0;
+
+        for (DeclarationAST.Variable parameter : declaration.parameters()) {
+            this.visit(parameter);
+        }
+
+        this.visitDeclarations(declaration.block().declarations());
+
+        if (this.survey) {
+            this.callee.size = this.nodes - nodes;
+        }
+
+        this.enclosing = null;
+        this.callee = null;
+        this.declared = declared;
+    }
+
+    private static class Callee {
+        int size;
+        /* one past the highest global slot the body reads or writes */
+        int globals;
+        boolean assigned;
+        boolean inlinable;
+        final List<DeclarationAST.Function> calls;
+
+        Callee() {
+            this.size = 0;
+            this.globals = 0;
+            this.assigned = false;
+            this.inlinable = false;
+            this.calls = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.kaori.compiler.register;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Packed register code. The top level frame has registers slots: locals at
+ * the offsets assigned by the Resolver, then temporaries, then one slot per
+ * constant. Function bodies sit in the code behind a jump over them, each
+ * with a frame laid out the same way
+ */
+public record RegisterBytecode(int[] code, Object[] constants, int registers, RegisterFunction[] functions) {
+    @Override
+    public String toString() {
+        List<String> bytecode = new ArrayList<>();
+
+        int index = 0;
+
+        while (index < this.code.length) {
+            RegisterOpcode opcode = RegisterOpcode.of(this.code[index]);
+
+            StringBuilder instruction = new StringBuilder();
+            instruction.append(String.format("%04d %s", index, opcode));
+
+            for (int i = 1; i <= opcode.operands; i++) {
+                instruction.append(" ").append(this.code[index + i]);
+            }
+
+            bytecode.add(instruction.toString());
+
+            index += opcode.size();
+        }
+
+        return String.join("\n", bytecode);
+    }
+}
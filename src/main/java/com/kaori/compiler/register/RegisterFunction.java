@@ -0,0 +1,14 @@
+package com.kaori.compiler.register;
+
+/*
+ * Function table entry. index is the entry's position in the table, entry
+ * the code offset of the parameter prologue, registers the slots the frame
+ * needs for locals and temporaries, and constants the pool that follows
+ * them in the frame
+ */
+public record RegisterFunction(String name, int index, int arity, int entry, int registers, Object[] constants) {
+    @Override
+    public String toString() {
+        return String.format("<function %s>", this.name);
+    }
+}
@@ -0,0 +1,484 @@
+package com.kaori.compiler.register;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.kaori.compiler.Visitor;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.ExpressionAST;
+import com.kaori.compiler.syntax.StatementAST;
+import com.kaori.compiler.syntax.TypeAST;
+
+/*
+ * Generates three-address code for the RegisterVM from the resolved and type
+ * checked AST. Variables live in the slot the Resolver assigned them, so
+ * reading one costs no instruction, and intermediate results go to
+ * temporaries allocated right above the variables declared so far. Inside a
+ * function, variables of the top level frame are copied in and out with
+ * GET_GLOBAL and SET_GLOBAL instead
+ */
+public class RegisterGenerator extends Visitor<Integer> {
+    private int[] code;
+    private int size;
+    private List<Object> constants;
+    private Map<Object, Integer> constantIndexes;
+    private List<Integer> constantOperands;
+    private final List<RegisterFunction> functions;
+    private final Map<DeclarationAST.Function, Integer> functionIndexes;
+    private int declared;
+    private int temporaries;
+    private int registers;
+    private int lastDestination;
+
+    public RegisterGenerator(List<DeclarationAST> declarations) {
+        super(declarations);
+        this.code = new int[64];
+        this.size = 0;
+        this.constants = new ArrayList<>();
+        this.constantIndexes = new HashMap<>();
+        this.constantOperands = new ArrayList<>();
+        this.functions = new ArrayList<>();
+        this.functionIndexes = new IdentityHashMap<>();
+        this.declared = 0;
+        this.temporaries = 0;
+        this.registers = 0;
+        this.lastDestination = -1;
+    }
+
+    public RegisterBytecode bytecode() {
+        this.visitDeclarations(this.declarations);
+        this.placeConstants();
+
+        return new RegisterBytecode(Arrays.copyOf(this.code, this.size), this.constants.toArray(),
+                this.registers + this.constants.size(), this.functions.toArray(new RegisterFunction[0]));
+    }
+
+    /* Points the constant operands of the current frame at the slots past its registers */
+    private void placeConstants() {
+        for (int position : this.constantOperands) {
+            this.code[position] = this.registers - 1 - this.code[position];
+        }
+    }
+
+    private void write(int value) {
+        if (this.size == this.code.length) {
+            this.code = Arrays.copyOf(this.code, this.code.length * 2);
+        }
+
+        this.code[this.size] = value;
+        this.size++;
+    }
+
+    /* Constant k is encoded as -1 - k until the frame size is known */
+    private void writeOperand(int register) {
+        if (register < 0) {
+            this.constantOperands.add(this.size);
+        }
+
+        this.write(register);
+    }
+
+    private int emit(RegisterOpcode opcode, int... operands) {
+        int position = this.size;
+
+        this.write(opcode.ordinal());
+
+        for (int operand : operands) {
+            this.writeOperand(operand);
+        }
+
+        this.lastDestination = -1;
+
+        return position;
+    }
+
+    /* Emits an instruction whose first operand is the register it writes */
+    private int emitResult(RegisterOpcode opcode, int destination, int... operands) {
+        int position = this.size;
+
+        this.write(opcode.ordinal());
+        this.write(destination);
+
+        for (int operand : operands) {
+            this.writeOperand(operand);
+        }
+
+        this.lastDestination = position + 1;
+
+        return destination;
+    }
+
+    private void patch(int position, int target) {
+        RegisterOpcode opcode = RegisterOpcode.of(this.code[position]);
+
+        this.code[position + opcode.operands] = target;
+    }
+
+    private int constant(Object value) {
+        Integer index = this.constantIndexes.get(value);
+
+        if (index == null) {
+            index = this.constants.size();
+            this.constants.add(value);
+            this.constantIndexes.put(value, index);
+        }
+
+        return -1 - index;
+    }
+
+    private int temporary() {
+        int register = this.declared + this.temporaries;
+
+        this.temporaries++;
+        this.registers = Math.max(this.registers, register + 1);
+
+        return register;
+    }
+
+    private boolean temporary(int register) {
+        return register >= this.declared;
+    }
+
+    /* Stores the value of register into destination, retargeting the instruction that produced it if possible */
+    private void move(int destination, int register, TypeAST type) {
+        if (register == destination) {
+            return;
+        }
+
+        if (register >= 0 && this.temporary(register) && this.lastDestination != -1
+                && this.code[this.lastDestination] == register) {
+            this.code[this.lastDestination] = destination;
+            this.lastDestination = -1;
+            return;
+        }
+
+        this.emit(this.reference(type) ? RegisterOpcode.MOVE_REF : RegisterOpcode.MOVE, destination, register);
+    }
+
+    private boolean reference(TypeAST type) {
+        return !type.equals(TypeAST.Primitive.NUMBER) && !type.equals(TypeAST.Primitive.BOOLEAN);
+    }
+
+    /* Copies a variable read before code that may assign it, so the read keeps the value it had */
+    private int snapshot(int register, TypeAST type) {
+        if (register < 0 || this.temporary(register)) {
+            return register;
+        }
+
+        int copy = this.temporary();
+
+        this.emit(this.reference(type) ? RegisterOpcode.MOVE_REF : RegisterOpcode.MOVE, copy, register);
+
+        return copy;
+    }
+
+    /* Whether evaluating expression can change a variable, a call may assign any global */
+    private boolean assigns(ExpressionAST expression) {
+        if (expression instanceof ExpressionAST.Assign || expression instanceof ExpressionAST.FunctionCall) {
+            return true;
+        }
+
+        if (expression instanceof ExpressionAST.BinaryExpression binary) {
+            return this.assigns(binary.left()) || this.assigns(binary.right());
+        }
+
+        if (expression instanceof ExpressionAST.UnaryExpression unary) {
+            return this.assigns(unary.left());
+        }
+
+        return false;
+    }
+
+    /* Temporaries never outlive the statement that allocated them */
+    @Override
+    protected void visit(DeclarationAST declaration) {
+        this.temporaries = 0;
+        this.lastDestination = -1;
+
+        super.visit(declaration);
+    }
+
+    /* Expressions */
+    @Override
+    public Integer visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
+        if (expression.operator() == ExpressionAST.BinaryOperator.AND
+                || expression.operator() == ExpressionAST.BinaryOperator.OR) {
+            return this.logical(expression);
+        }
+
+        int left = this.visit(expression.left());
+
+        if (this.assigns(expression.right())) {
+            left = this.snapshot(left, expression.left().type());
+        }
+
+        int right = this.visit(expression.right());
+
+        TypeAST operand = expression.left().type();
+
+        RegisterOpcode opcode = switch (expression.operator()) {
+            case PLUS -> RegisterOpcode.ADD_F64;
+            case MINUS -> RegisterOpcode.SUB_F64;
+            case MULTIPLY -> RegisterOpcode.MUL_F64;
+            case DIVIDE -> RegisterOpcode.DIV_F64;
+            case MODULO -> RegisterOpcode.MOD_F64;
+            case GREATER -> RegisterOpcode.GT_F64;
+            case GREATER_EQUAL -> RegisterOpcode.GE_F64;
+            case LESS -> RegisterOpcode.LT_F64;
+            case LESS_EQUAL -> RegisterOpcode.LE_F64;
+            case AND, OR -> throw new IllegalStateException("Unhandled logical operator: " + expression.operator());
+            case EQUAL -> operand.equals(TypeAST.Primitive.NUMBER) ? RegisterOpcode.EQ_F64
+                    : operand.equals(TypeAST.Primitive.BOOLEAN) ? RegisterOpcode.EQ_BOOL : RegisterOpcode.EQ_STR;
+            case NOT_EQUAL -> operand.equals(TypeAST.Primitive.NUMBER) ? RegisterOpcode.NE_F64
+                    : operand.equals(TypeAST.Primitive.BOOLEAN) ? RegisterOpcode.NE_BOOL : RegisterOpcode.NE_STR;
+        };
+
+        return this.emitResult(opcode, this.temporary(), left, right);
+    }
+
+    /* && and || copy the left operand into the result and only overwrite it when it doesn't decide */
+    private int logical(ExpressionAST.BinaryExpression expression) {
+        int result = this.temporary();
+
+        this.move(result, this.visit(expression.left()), TypeAST.Primitive.BOOLEAN);
+
+        RegisterOpcode opcode = expression.operator() == ExpressionAST.BinaryOperator.AND
+                ? RegisterOpcode.JUMP_IF_FALSE
+                : RegisterOpcode.JUMP_IF_TRUE;
+        int jumpEnd = this.emit(opcode, result, 0);
+
+        this.move(result, this.visit(expression.right()), TypeAST.Primitive.BOOLEAN);
+        this.patch(jumpEnd, this.size);
+
+        return result;
+    }
+
+    @Override
+    public Integer visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
+        int left = this.visit(expression.left());
+
+        RegisterOpcode opcode = switch (expression.operator()) {
+            case NEGATE -> RegisterOpcode.NEG_F64;
+            case NOT -> RegisterOpcode.NOT_BOOL;
+        };
+
+        return this.emitResult(opcode, this.temporary(), left);
+    }
+
+    @Override
+    public Integer visitAssign(ExpressionAST.Assign expression) {
+        int right = this.visit(expression.right());
+        ExpressionAST.Identifier identifier = expression.left();
+
+        if (!identifier.local()) {
+            this.emit(RegisterOpcode.SET_GLOBAL, identifier.offset(), right);
+
+            return right;
+        }
+
+        this.move(identifier.offset(), right, expression.type());
+
+        return identifier.offset();
+    }
+
+    @Override
+    public Integer visitLiteral(ExpressionAST.Literal expression) {
+        return this.constant(expression.value());
+    }
+
+    @Override
+    public Integer visitIdentifier(ExpressionAST.Identifier expression) {
+        if (!expression.local()) {
+            return this.emitResult(RegisterOpcode.GET_GLOBAL, this.temporary(), expression.offset());
+        }
+
+        return expression.offset();
+    }
+
+    /*
+     * Arguments are moved to consecutive temporaries, the callee copies them
+     * into its own frame. Arguments past the last parameter are never
+     * evaluated, like in the Interpreter
+     */
+    @Override
+    public Integer visitFunctionCall(ExpressionAST.FunctionCall expression) {
+        TypeAST.Function type = (TypeAST.Function) expression.callee().type();
+        int arguments = Math.min(type.parameters().size(), expression.arguments().size());
+        int callee = this.visit(expression.callee());
+
+        if (expression.arguments().stream().limit(arguments).anyMatch(this::assigns)) {
+            callee = this.snapshot(callee, type);
+        }
+
+        int first = this.declared + this.temporaries;
+
+        for (int i = 0; i < arguments; i++) {
+            this.temporary();
+        }
+
+        for (int i = 0; i < arguments; i++) {
+            ExpressionAST argument = expression.arguments().get(i);
+
+            this.move(first + i, this.visit(argument), argument.type());
+        }
+
+        if (expression.tail()) {
+            this.emit(RegisterOpcode.TAIL_CALL, callee, first, arguments);
+
+            return callee;
+        }
+
+        int destination = this.temporary();
+
+        this.emit(RegisterOpcode.CALL, callee, first, arguments, destination);
+
+        return destination;
+    }
+
+    /* Statements */
+    @Override
+    public void visitPrintStatement(StatementAST.Print statement) {
+        int register = this.visit(statement.expression());
+        TypeAST type = statement.expression().type();
+
+        if (type.equals(TypeAST.Primitive.NUMBER)) {
+            this.emit(RegisterOpcode.PRINT_F64, register);
+        } else if (type.equals(TypeAST.Primitive.BOOLEAN)) {
+            this.emit(RegisterOpcode.PRINT_BOOL, register);
+        } else {
+            this.emit(RegisterOpcode.PRINT_REF, register);
+        }
+    }
+
+    @Override
+    public void visitBlockStatement(StatementAST.Block statement) {
+        int declared = this.declared;
+
+        this.visitDeclarations(statement.declarations());
+
+        this.declared = declared;
+    }
+
+    @Override
+    public void visitExpressionStatement(StatementAST.Expr statement) {
+        this.visit(statement.expression());
+    }
+
+    @Override
+    public void visitIfStatement(StatementAST.If statement) {
+        int condition = this.visit(statement.condition());
+
+        int jumpElse = this.emit(RegisterOpcode.JUMP_IF_FALSE, condition, 0);
+
+        this.visit(statement.thenBranch());
+
+        int jumpEnd = this.emit(RegisterOpcode.JUMP, 0);
+
+        this.patch(jumpElse, this.size);
+        this.visit(statement.elseBranch());
+
+        this.patch(jumpEnd, this.size);
+    }
+
+    @Override
+    public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
+        int jumpCondition = this.size;
+
+        int condition = this.visit(statement.condition());
+
+        int jumpEnd = this.emit(RegisterOpcode.JUMP_IF_FALSE, condition, 0);
+
+        this.visit(statement.block());
+
+        this.emit(RegisterOpcode.JUMP, jumpCondition);
+
+        this.patch(jumpEnd, this.size);
+    }
+
+    /* Declarations */
+    @Override
+    public void visitVariableDeclaration(DeclarationAST.Variable declaration) {
+        int right = this.visit(declaration.right());
+        int destination = this.declared;
+
+        this.move(destination, right, declaration.type());
+
+        this.declared++;
+        this.registers = Math.max(this.registers, this.declared);
+    }
+
+    /* Functions are declared first in their scope, their table entry is filled in once the body is emitted */
+    @Override
+    public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
+        int index = this.functions.size();
+
+        this.functions.add(null);
+        this.functionIndexes.put(declaration, index);
+
+        this.emit(RegisterOpcode.FUNCTION, this.declared, index);
+
+        this.declared++;
+        this.registers = Math.max(this.registers, this.declared);
+    }
+
+    /*
+     * The body is emitted in place behind a jump over it, with a frame and a
+     * constant pool of its own. Arguments already fill the first slots of the
+     * frame when it starts, so the prologue only evaluates the defaults of
+     * the parameters that were left out
+     */
+    @Override
+    public void visitFunctionDefinition(DeclarationAST.Function declaration) {
+        int index = this.functionIndexes.get(declaration);
+        Frame frame = new Frame(this.emit(RegisterOpcode.JUMP, 0), this.constants, this.constantIndexes,
+                this.constantOperands, this.declared, this.temporaries, this.registers);
+        int entry = this.size;
+
+        this.constants = new ArrayList<>();
+        this.constantIndexes = new HashMap<>();
+        this.constantOperands = new ArrayList<>();
+        this.declared = 0;
+        this.registers = 0;
+
+        List<DeclarationAST.Variable> parameters = declaration.parameters();
+
+        for (int i = 0; i < parameters.size(); i++) {
+            DeclarationAST.Variable parameter = parameters.get(i);
+            int jumpDeclared = this.emit(RegisterOpcode.JUMP_IF_DECLARED, i, 0);
+
+            this.temporaries = 0;
+            this.move(this.declared, this.visit(parameter.right()), parameter.type());
+            this.patch(jumpDeclared, this.size);
+
+            this.declared++;
+            this.registers = Math.max(this.registers, this.declared);
+        }
+
+        this.visitDeclarations(declaration.block().declarations());
+
+        this.emit(RegisterOpcode.RETURN);
+        this.placeConstants();
+
+        this.functions.set(index, new RegisterFunction(declaration.name().name(), index, parameters.size(), entry,
+                this.registers, this.constants.toArray()));
+
+        this.constants = frame.constants();
+        this.constantIndexes = frame.constantIndexes();
+        this.constantOperands = frame.constantOperands();
+        this.declared = frame.declared();
+        this.temporaries = frame.temporaries();
+        this.registers = frame.registers();
+        this.lastDestination = -1;
+
+        this.patch(frame.jumpEnd(), this.size);
+    }
+
+    /* State of the enclosing frame saved while a function body is emitted */
+    private record Frame(int jumpEnd, List<Object> constants, Map<Object, Integer> constantIndexes,
+            List<Integer> constantOperands, int declared, int temporaries, int registers) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.kaori.compiler.register;
+
+/*
+ * Three-address opcodes for the register engine. Operands are frame slots,
+ * the destination always comes first and jump targets last. Slots past the
+ * locals and temporaries hold the constant pool
+ *
+ * FUNCTION d f loads entry f of the function table into d. GET_GLOBAL d g
+ * and SET_GLOBAL g s copy between a slot of the frame and slot g of the top
+ * level frame, both lanes at once. CALL f first n d runs the function in f
+ * with the n arguments in first, first + 1 and so on, which become the first
+ * slots of its frame, and RETURN writes the default result to d. TAIL_CALL
+ * f first n does the same in place of the current frame, returning to its
+ * caller. JUMP_IF_DECLARED i t skips the default of parameter i when an
+ * argument was passed for it
+ */
+public enum RegisterOpcode {
+    MOVE(2),
+    MOVE_REF(2),
+
+    ADD_F64(3),
+    SUB_F64(3),
+    MUL_F64(3),
+    DIV_F64(3),
+    MOD_F64(3),
+    NEG_F64(2),
+
+    EQ_F64(3),
+    NE_F64(3),
+    GT_F64(3),
+    GE_F64(3),
+    LT_F64(3),
+    LE_F64(3),
+
+    NOT_BOOL(2),
+    EQ_BOOL(3),
+    NE_BOOL(3),
+
+    EQ_STR(3),
+    NE_STR(3),
+
+    JUMP(1),
+    JUMP_IF_FALSE(2),
+    JUMP_IF_TRUE(2),
+
+    PRINT_F64(1),
+    PRINT_BOOL(1),
+    PRINT_REF(1),
+
+    FUNCTION(2),
+    GET_GLOBAL(2),
+    SET_GLOBAL(2),
+    CALL(4),
+    TAIL_CALL(3),
+    RETURN(0),
+    JUMP_IF_DECLARED(2);
+
+    private static final RegisterOpcode[] OPCODES = RegisterOpcode.values();
+
+    public final int operands;
+
+    private RegisterOpcode(int operands) {
+        this.operands = operands;
+    }
+
+    public int size() {
+        return 1 + this.operands;
+    }
+
+    public static RegisterOpcode of(int code) {
+        return OPCODES[code];
+    }
+}
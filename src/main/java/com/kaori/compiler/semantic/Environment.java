@@ -1,26 +1,32 @@
 package com.kaori.compiler.semantic;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
+/* Values by slot, for passes that run after the Resolver and only follow resolved offsets */
 public class Environment<T> {
-    private final Stack<T> declarations;
+    private final List<T> declarations;
     private int index;
     private Stack<Integer> scopes;
     private int framePointer;
 
     public Environment() {
-        this.declarations = new Stack<>();
+        this.declarations = new ArrayList<>();
         this.index = 0;
         this.scopes = new Stack<>();
         this.framePointer = 0;
 
         this.scopes.push(0);
-        this.declarations.setSize(1_000);
-
     }
 
     public void declare(T value) {
-        this.declarations.set(this.index, value);
+        if (this.index == this.declarations.size()) {
+            this.declarations.add(value);
+        } else {
+            this.declarations.set(this.index, value);
+        }
+
         this.index++;
     }
 
@@ -40,52 +46,6 @@ public class Environment<T> {
         return this.declarations.get(offset);
     }
 
-    public Resolution searchInner(String identifier) {
-        int top = this.index - 1;
-
-        for (int i = top; i >= this.scopes.peek(); i--) {
-            T declaration = this.declarations.get(i);
-
-            if (declaration.equals(identifier)) {
-                boolean local = i >= this.framePointer;
-                int offset = i;
-
-                if (local) {
-                    offset = offset - this.framePointer;
-                }
-
-                Resolution resolution = new Resolution(offset, local);
-
-                return resolution;
-            }
-        }
-
-        return null;
-    }
-
-    public Resolution search(String identifier) {
-        int top = this.index - 1;
-
-        for (int i = top; i >= 0; i--) {
-            T declaration = this.declarations.get(i);
-
-            if (declaration.equals(identifier)) {
-                boolean local = i >= this.framePointer;
-                int offset = i;
-
-                if (local) {
-                    offset = offset - this.framePointer;
-                }
-
-                Resolution resolution = new Resolution(offset, local);
-
-                return resolution;
-            }
-        }
-
-        return null;
-    }
-
     public void enterScope() {
         this.scopes.add(this.index);
     }
@@ -105,8 +65,4 @@ public class Environment<T> {
 
         this.exitScope();
     }
-
-    public boolean insideFunction() {
-        return this.framePointer > 0;
-    }
 }
@@ -0,0 +1,11 @@
+package com.kaori.compiler.semantic;
+
+import com.kaori.compiler.syntax.TypeAST;
+
+/*
+ * A top level slot of a program split into files, known before any file is
+ * checked. Only slots of the file itself and of the files it imports are
+ * visible, line is where the file declares or imports the name
+ */
+public record Global(String name, TypeAST type, boolean visible, int line) {
+}
@@ -6,15 +6,80 @@ import com.kaori.compiler.Visitor;
 import com.kaori.compiler.syntax.DeclarationAST;
 import com.kaori.compiler.syntax.ExpressionAST;
 import com.kaori.compiler.syntax.StatementAST;
+import com.kaori.compiler.syntax.Symbols;
+import com.kaori.compiler.syntax.TypeAST;
 import com.kaori.error.KaoriError;
 
 public class Resolver extends Visitor<Object> {
-    private final Environment<String> environment;
+    private final SymbolTable symbols;
+    private final List<Global> globals;
 
     public Resolver(List<DeclarationAST> declarations) {
         super(declarations);
-        this.environment = new Environment<String>();
+        this.symbols = new SymbolTable();
+        this.globals = null;
+    }
+
+    /* Resolves one file of a program, the top level slots of every file are declared up front */
+    public Resolver(List<DeclarationAST> declarations, List<Global> globals) {
+        super(declarations);
+        this.symbols = new SymbolTable();
+        this.globals = globals;
+    }
+
+    @Override
+    public void run() {
+        if (this.globals != null) {
+            this.runModule();
+        } else {
+            super.run();
+        }
+    }
+
+    /* The file's own functions are among the globals, so the top level skips declaring them */
+    private void runModule() {
+        for (Global global : this.globals) {
+            if (global.visible()) {
+                declare(this.symbols, Symbols.intern(global.name()), null, global.line());
+            } else {
+                this.symbols.reserve();
+            }
+        }
+
+        for (DeclarationAST declaration : this.declarations) {
+            this.line = declaration.line();
+            this.visit(declaration);
+        }
+    }
+
+    /* The rules are shared with the SemanticAnalyzer, which keeps types in the same table */
+    static Resolution resolve(SymbolTable symbols, int symbol, int line) {
+        Resolution resolution = symbols.search(symbol);
+
+        if (resolution == null) {
+            throw KaoriError.ResolveError(Symbols.name(symbol) + " is not declared", line);
+        }
+
+        return resolution;
+    }
+
+    static void declare(SymbolTable symbols, int symbol, TypeAST type, int line) {
+        Resolution resolution = symbols.searchInner(symbol);
+
+        if (resolution == null) {
+            symbols.declare(symbol, type);
+        } else {
+            throw KaoriError.ResolveError(Symbols.name(symbol) + " is already declared", line);
+        }
+    }
 
+    static void declareFunction(SymbolTable symbols, int symbol, TypeAST type, int line) {
+        if (symbols.insideFunction()) {
+            throw KaoriError.ResolveError(Symbols.name(symbol) + " can't be declared inside another function",
+                    line);
+        }
+
+        declare(symbols, symbol, type, line);
     }
 
     /* Expressions */
@@ -48,11 +113,7 @@ public class Resolver extends Visitor<Object> {
 
     @Override
     public Object visitIdentifier(ExpressionAST.Identifier expression) {
-        Resolution resolution = this.environment.search(expression.name());
-
-        if (resolution == null) {
-            throw KaoriError.ResolveError(expression.name() + " is not declared", this.line);
-        }
+        Resolution resolution = resolve(this.symbols, expression.symbol(), this.line);
 
         expression.setReference(resolution.offset(), resolution.local());
 
@@ -78,9 +139,9 @@ public class Resolver extends Visitor<Object> {
 
     @Override
     public void visitBlockStatement(StatementAST.Block statement) {
-        this.environment.enterScope();
+        this.symbols.enterScope();
         this.visitDeclarations(statement.declarations());
-        this.environment.exitScope();
+        this.symbols.exitScope();
     }
 
     @Override
@@ -107,38 +168,17 @@ public class Resolver extends Visitor<Object> {
         ExpressionAST.Identifier identifier = declaration.left();
 
         this.visit(declaration.right());
-
-        Resolution resolution = this.environment.searchInner(identifier.name());
-
-        if (resolution == null) {
-            this.environment.declare(identifier.name());
-        } else {
-            throw KaoriError.ResolveError(identifier.name() + " is already declared", this.line);
-        }
-
+        declare(this.symbols, identifier.symbol(), null, this.line);
     }
 
     @Override
     public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
-        ExpressionAST.Identifier identifier = declaration.name();
-
-        if (this.environment.insideFunction()) {
-            throw KaoriError.ResolveError(identifier.name() + " can't be declared inside another function", this.line);
-        }
-
-        Resolution resolution = this.environment.searchInner(identifier.name());
-
-        if (resolution == null) {
-            this.environment.declare(identifier.name());
-        } else {
-            throw KaoriError.ResolveError(identifier.name() + " is already declared", this.line);
-        }
-
+        declareFunction(this.symbols, declaration.name().symbol(), null, this.line);
     }
 
     @Override
     public void visitFunctionDefinition(DeclarationAST.Function declaration) {
-        this.environment.enterFunction();
+        this.symbols.enterFunction();
 
         for (DeclarationAST.Variable parameter : declaration.parameters()) {
             this.visit(parameter);
@@ -148,7 +188,6 @@ public class Resolver extends Visitor<Object> {
 
         this.visitDeclarations(declarations);
 
-        this.environment.exitFunction();
+        this.symbols.exitFunction();
     }
-
 }
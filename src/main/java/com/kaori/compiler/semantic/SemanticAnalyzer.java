@@ -0,0 +1,196 @@
+package com.kaori.compiler.semantic;
+
+import java.util.List;
+
+import com.kaori.compiler.Visitor;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.ExpressionAST;
+import com.kaori.compiler.syntax.StatementAST;
+import com.kaori.compiler.syntax.Symbols;
+import com.kaori.compiler.syntax.TypeAST;
+
+/*
+ * The Resolver and the TypeChecker in one walk. Each slot of the symbol
+ * table carries its declared type, so an identifier gets its offset and
+ * its type from the same lookup and there is no second table mirroring the
+ * scopes. The rules are the ones of both passes, only the first error can
+ * differ, since a type error is no longer held back until every name is
+ * resolved
+ */
+public class SemanticAnalyzer extends Visitor<TypeAST> {
+    private final SymbolTable symbols;
+    private final List<Global> globals;
+
+    public SemanticAnalyzer(List<DeclarationAST> declarations) {
+        super(declarations);
+        this.symbols = new SymbolTable();
+        this.globals = null;
+    }
+
+    /* Analyzes one file of a program, the top level slots of every file are declared up front */
+    public SemanticAnalyzer(List<DeclarationAST> declarations, List<Global> globals) {
+        super(declarations);
+        this.symbols = new SymbolTable();
+        this.globals = globals;
+    }
+
+    @Override
+    public void run() {
+        if (this.globals == null) {
+            super.run();
+        } else {
+            this.runModule();
+        }
+    }
+
+    /* The file's own functions are among the globals, so the top level skips declaring them */
+    private void runModule() {
+        for (Global global : this.globals) {
+            if (global.visible()) {
+                Resolver.declare(this.symbols, Symbols.intern(global.name()), global.type(), global.line());
+            } else {
+                this.symbols.reserve();
+            }
+        }
+
+        for (DeclarationAST declaration : this.declarations) {
+            this.line = declaration.line();
+            this.visit(declaration);
+        }
+    }
+
+    /* Expressions */
+    @Override
+    public TypeAST visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
+        TypeAST left = this.visit(expression.left());
+        TypeAST right = this.visit(expression.right());
+        TypeAST type = TypeChecker.binary(expression.operator(), left, right, this.line);
+
+        expression.setType(type);
+
+        return type;
+    }
+
+    @Override
+    public TypeAST visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
+        TypeAST left = this.visit(expression.left());
+        TypeAST type = TypeChecker.unary(expression.operator(), left, this.line);
+
+        expression.setType(type);
+
+        return type;
+    }
+
+    @Override
+    public TypeAST visitAssign(ExpressionAST.Assign expression) {
+        TypeAST left = this.visit(expression.left());
+        TypeAST right = this.visit(expression.right());
+
+        TypeChecker.assignment(left, right, this.line);
+
+        expression.setType(right);
+
+        return right;
+    }
+
+    @Override
+    public TypeAST visitLiteral(ExpressionAST.Literal expression) {
+        return expression.type();
+    }
+
+    @Override
+    public TypeAST visitIdentifier(ExpressionAST.Identifier expression) {
+        Resolution resolution = Resolver.resolve(this.symbols, expression.symbol(), this.line);
+        TypeAST type = this.symbols.type(resolution);
+
+        expression.setReference(resolution.offset(), resolution.local());
+        expression.setType(type);
+
+        return type;
+    }
+
+    /* Extra arguments are resolved like the Resolver does, only those with a parameter are checked */
+    @Override
+    public TypeAST visitFunctionCall(ExpressionAST.FunctionCall expression) {
+        TypeAST.Function func = TypeChecker.callee(this.visit(expression.callee()), this.line);
+        List<ExpressionAST> arguments = expression.arguments();
+
+        for (int i = 0; i < arguments.size(); i++) {
+            TypeAST argument = this.visit(arguments.get(i));
+
+            if (i < func.parameters().size()) {
+                TypeChecker.argument(argument, func.parameters().get(i), this.line);
+            }
+        }
+
+        expression.setType(func.returnType());
+
+        return func.returnType();
+    }
+
+    /* Statements */
+    @Override
+    public void visitPrintStatement(StatementAST.Print statement) {
+        this.visit(statement.expression());
+    }
+
+    @Override
+    public void visitBlockStatement(StatementAST.Block statement) {
+        this.symbols.enterScope();
+        this.visitDeclarations(statement.declarations());
+        this.symbols.exitScope();
+    }
+
+    @Override
+    public void visitExpressionStatement(StatementAST.Expr statement) {
+        this.visit(statement.expression());
+    }
+
+    @Override
+    public void visitIfStatement(StatementAST.If statement) {
+        TypeAST condition = this.visit(statement.condition());
+
+        TypeChecker.condition(condition, this.line);
+
+        this.visit(statement.thenBranch());
+        this.visit(statement.elseBranch());
+    }
+
+    @Override
+    public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
+        TypeAST condition = this.visit(statement.condition());
+
+        TypeChecker.condition(condition, this.line);
+
+        this.visit(statement.block());
+    }
+
+    /* Declarations */
+    @Override
+    public void visitVariableDeclaration(DeclarationAST.Variable declaration) {
+        TypeAST left = declaration.type();
+        TypeAST right = this.visit(declaration.right());
+
+        TypeChecker.variable(left, right, this.line);
+
+        Resolver.declare(this.symbols, declaration.left().symbol(), left, this.line);
+    }
+
+    @Override
+    public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
+        Resolver.declareFunction(this.symbols, declaration.name().symbol(), declaration.type(), this.line);
+    }
+
+    @Override
+    public void visitFunctionDefinition(DeclarationAST.Function declaration) {
+        this.symbols.enterFunction();
+
+        for (DeclarationAST.Variable parameter : declaration.parameters()) {
+            this.visit(parameter);
+        }
+
+        this.visitDeclarations(declaration.block().declarations());
+
+        this.symbols.exitFunction();
+    }
+}
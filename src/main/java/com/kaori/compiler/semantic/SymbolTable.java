@@ -0,0 +1,147 @@
+package com.kaori.compiler.semantic;
+
+import java.util.Arrays;
+
+import com.kaori.compiler.syntax.TypeAST;
+
+/*
+ * Scoped table of the names in reach while resolving. Every slot records
+ * its symbol and the slot that declared the same symbol before it, and each
+ * symbol points at its innermost slot, so a lookup is one array read
+ * whatever the number of declarations. Leaving a scope walks back only the
+ * slots it declared and restores what they shadowed. A slot can also carry
+ * its type, for passes that check types while they resolve
+ */
+public class SymbolTable {
+    private static final int NONE = -1;
+
+    /* symbol declared in each slot, NONE for reserved slots */
+    private int[] symbols;
+    /* type declared in each slot, null when the caller doesn't track types */
+    private TypeAST[] types;
+    /* slot of the same symbol the declaration in each slot hides, NONE for none */
+    private int[] shadowed;
+    /* innermost slot of each symbol, NONE when it is not in reach */
+    private int[] innermost;
+    private int index;
+    private int[] scopes;
+    private int depth;
+    private int framePointer;
+
+    public SymbolTable() {
+        this.symbols = new int[64];
+        this.types = new TypeAST[64];
+        this.shadowed = new int[64];
+        this.innermost = new int[64];
+        this.index = 0;
+        this.scopes = new int[16];
+        this.depth = 1;
+        this.framePointer = 0;
+
+        Arrays.fill(this.innermost, NONE);
+    }
+
+    public void declare(int symbol, TypeAST type) {
+        this.grow();
+
+        if (symbol >= this.innermost.length) {
+            int length = this.innermost.length;
+
+            this.innermost = Arrays.copyOf(this.innermost, Math.max(length * 2, symbol + 1));
+            Arrays.fill(this.innermost, length, this.innermost.length, NONE);
+        }
+
+        this.symbols[this.index] = symbol;
+        this.types[this.index] = type;
+        this.shadowed[this.index] = this.innermost[symbol];
+        this.innermost[symbol] = this.index;
+        this.index++;
+    }
+
+    /* Takes a slot that no name resolves to */
+    public void reserve() {
+        this.grow();
+
+        this.symbols[this.index] = NONE;
+        this.types[this.index] = null;
+        this.shadowed[this.index] = NONE;
+        this.index++;
+    }
+
+    private void grow() {
+        if (this.index == this.symbols.length) {
+            this.symbols = Arrays.copyOf(this.symbols, this.index * 2);
+            this.types = Arrays.copyOf(this.types, this.index * 2);
+            this.shadowed = Arrays.copyOf(this.shadowed, this.index * 2);
+        }
+    }
+
+    /* The declaration of symbol in the current scope, null when it is only declared outside it */
+    public Resolution searchInner(int symbol) {
+        int slot = this.slot(symbol);
+
+        return slot >= this.scopes[this.depth - 1] ? this.resolution(slot) : null;
+    }
+
+    public Resolution search(int symbol) {
+        int slot = this.slot(symbol);
+
+        return slot == NONE ? null : this.resolution(slot);
+    }
+
+    /* Type of the slot a search returned */
+    public TypeAST type(Resolution resolution) {
+        return this.types[resolution.local() ? this.framePointer + resolution.offset() : resolution.offset()];
+    }
+
+    private int slot(int symbol) {
+        return symbol < this.innermost.length ? this.innermost[symbol] : NONE;
+    }
+
+    private Resolution resolution(int slot) {
+        boolean local = slot >= this.framePointer;
+
+        return new Resolution(local ? slot - this.framePointer : slot, local);
+    }
+
+    public void enterScope() {
+        if (this.depth == this.scopes.length) {
+            this.scopes = Arrays.copyOf(this.scopes, this.depth * 2);
+        }
+
+        this.scopes[this.depth] = this.index;
+        this.depth++;
+    }
+
+    public void exitScope() {
+        this.depth--;
+
+        int start = this.scopes[this.depth];
+
+        while (this.index > start) {
+            this.index--;
+
+            int symbol = this.symbols[this.index];
+
+            if (symbol != NONE) {
+                this.innermost[symbol] = this.shadowed[this.index];
+            }
+        }
+    }
+
+    public void enterFunction() {
+        this.framePointer = this.index;
+
+        this.enterScope();
+    }
+
+    public void exitFunction() {
+        this.framePointer = 0;
+
+        this.exitScope();
+    }
+
+    public boolean insideFunction() {
+        return this.framePointer > 0;
+    }
+}
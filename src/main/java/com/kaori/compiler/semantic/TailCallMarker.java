@@ -0,0 +1,128 @@
+package com.kaori.compiler.semantic;
+
+import java.util.List;
+
+import com.kaori.compiler.Visitor;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.ExpressionAST;
+import com.kaori.compiler.syntax.StatementAST;
+
+/*
+ * Marks the calls that are the last thing a function runs, so the engines
+ * can reuse the caller's frame for them. Functions have no return statement,
+ * so only a call made as the last statement of the body, or of a block or if
+ * branch that is itself last, is in tail position. Loop bodies never are and
+ * top level code has no frame to reuse
+ */
+public class TailCallMarker extends Visitor<Object> {
+    private boolean tail;
+
+    public TailCallMarker(List<DeclarationAST> declarations) {
+        super(declarations);
+        this.tail = false;
+    }
+
+    @Override
+    protected void visitDeclarations(List<DeclarationAST> declarations) {
+        boolean tail = this.tail;
+
+        for (int i = 0; i < declarations.size(); i++) {
+            DeclarationAST declaration = declarations.get(i);
+
+            this.line = declaration.line();
+            this.tail = tail && i == declarations.size() - 1;
+            this.visit(declaration);
+        }
+
+        this.tail = tail;
+    }
+
+    /* Expressions */
+    @Override
+    public Object visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
+        return null;
+    }
+
+    @Override
+    public Object visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
+        return null;
+    }
+
+    @Override
+    public Object visitAssign(ExpressionAST.Assign expression) {
+        return null;
+    }
+
+    @Override
+    public Object visitLiteral(ExpressionAST.Literal expression) {
+        return null;
+    }
+
+    @Override
+    public Object visitIdentifier(ExpressionAST.Identifier expression) {
+        return null;
+    }
+
+    @Override
+    public Object visitFunctionCall(ExpressionAST.FunctionCall expression) {
+        expression.setTail(this.tail);
+
+        return null;
+    }
+
+    /* Statements */
+    @Override
+    public void visitPrintStatement(StatementAST.Print statement) {
+
+    }
+
+    @Override
+    public void visitBlockStatement(StatementAST.Block statement) {
+        this.visitDeclarations(statement.declarations());
+    }
+
+    @Override
+    public void visitExpressionStatement(StatementAST.Expr statement) {
+        if (statement.expression() instanceof ExpressionAST.FunctionCall call) {
+            this.visitFunctionCall(call);
+        }
+    }
+
+    @Override
+    public void visitIfStatement(StatementAST.If statement) {
+        this.visit(statement.thenBranch());
+
+        if (statement.elseBranch() != null) {
+            this.visit(statement.elseBranch());
+        }
+    }
+
+    @Override
+    public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
+        boolean tail = this.tail;
+
+        this.tail = false;
+        this.visit(statement.block());
+        this.tail = tail;
+    }
+
+    /* Declarations */
+    @Override
+    public void visitVariableDeclaration(DeclarationAST.Variable declaration) {
+
+    }
+
+    @Override
+    public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
+
+    }
+
+    @Override
+    public void visitFunctionDefinition(DeclarationAST.Function declaration) {
+        boolean tail = this.tail;
+
+        this.tail = true;
+        this.visitDeclarations(declaration.block().declarations());
+        this.tail = tail;
+    }
+}
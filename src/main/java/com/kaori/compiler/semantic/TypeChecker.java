@@ -11,19 +11,44 @@ import com.kaori.error.KaoriError;
 
 public class TypeChecker extends Visitor<TypeAST> {
     private final Environment<TypeAST> environment;
+    private final List<Global> globals;
 
     public TypeChecker(List<DeclarationAST> declarations) {
         super(declarations);
         this.environment = new Environment<>();
+        this.globals = null;
+    }
 
+    /* Checks one file of a program against the declared types of every top level slot */
+    public TypeChecker(List<DeclarationAST> declarations, List<Global> globals) {
+        super(declarations);
+        this.environment = new Environment<>();
+        this.globals = globals;
     }
 
     @Override
-    public TypeAST visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
-        TypeAST left = this.visit(expression.left());
-        TypeAST right = this.visit(expression.right());
-        ExpressionAST.BinaryOperator operator = expression.operator();
+    public void run() {
+        if (this.globals != null) {
+            this.runModule();
+        } else {
+            super.run();
+        }
+    }
 
+    /* The file's own functions are among the globals, so the top level skips declaring them */
+    private void runModule() {
+        for (Global global : this.globals) {
+            this.environment.declare(global.type());
+        }
+
+        for (DeclarationAST declaration : this.declarations) {
+            this.line = declaration.line();
+            this.visit(declaration);
+        }
+    }
+
+    /* The rules are shared with the SemanticAnalyzer */
+    static TypeAST binary(ExpressionAST.BinaryOperator operator, TypeAST left, TypeAST right, int line) {
         TypeAST type = switch (operator) {
             case PLUS, MINUS, MULTIPLY, DIVIDE, MODULO ->
                 left.equals(TypeAST.Primitive.NUMBER) &&
@@ -52,17 +77,13 @@ public class TypeChecker extends Visitor<TypeAST> {
         if (type.equals(TypeAST.Primitive.VOID)) {
             throw KaoriError.TypeError(
                     String.format("invalid %s operation between %s and %s", operator, left, right),
-                    this.line);
+                    line);
         }
 
         return type;
     }
 
-    @Override
-    public TypeAST visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
-        TypeAST left = this.visit(expression.left());
-        ExpressionAST.UnaryOperator operator = expression.operator();
-
+    static TypeAST unary(ExpressionAST.UnaryOperator operator, TypeAST left, int line) {
         TypeAST type = switch (operator) {
             case NEGATE -> left.equals(TypeAST.Primitive.NUMBER) ? TypeAST.Primitive.NUMBER : TypeAST.Primitive.VOID;
             case NOT -> left.equals(TypeAST.Primitive.BOOLEAN) ? TypeAST.Primitive.BOOLEAN : TypeAST.Primitive.VOID;
@@ -71,12 +92,72 @@ public class TypeChecker extends Visitor<TypeAST> {
 
         if (type.equals(TypeAST.Primitive.VOID)) {
             throw KaoriError.TypeError(String.format("invalid %s operation for %s", operator, left),
-                    this.line);
+                    line);
         }
 
         return type;
     }
 
+    static void assignment(TypeAST left, TypeAST right, int line) {
+        if (!left.equals(right)) {
+            throw KaoriError.TypeError(
+                    String.format("invalid variable assignment with type %s for type %s", right, left),
+                    line);
+        }
+    }
+
+    static TypeAST.Function callee(TypeAST type, int line) {
+        if (!(type instanceof TypeAST.Function func)) {
+            throw KaoriError.TypeError(String.format("invalid %s type is not a function", type),
+                    line);
+        }
+
+        return func;
+    }
+
+    static void argument(TypeAST argument, TypeAST parameter, int line) {
+        if (!argument.equals(parameter)) {
+            throw KaoriError.TypeError(
+                    String.format("invalid argument of type %s for parameter of type %s", argument, parameter),
+                    line);
+        }
+    }
+
+    static void condition(TypeAST condition, int line) {
+        if (!condition.equals(TypeAST.Primitive.BOOLEAN)) {
+            throw KaoriError.TypeError(String.format("invalid type for condition: %s", condition), line);
+        }
+    }
+
+    static void variable(TypeAST left, TypeAST right, int line) {
+        if (!left.equals(right)) {
+            throw KaoriError.TypeError(
+                    String.format("invalid variable declaration with type %s for type %s", left, right),
+                    line);
+        }
+    }
+
+    @Override
+    public TypeAST visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
+        TypeAST left = this.visit(expression.left());
+        TypeAST right = this.visit(expression.right());
+        TypeAST type = binary(expression.operator(), left, right, this.line);
+
+        expression.setType(type);
+
+        return type;
+    }
+
+    @Override
+    public TypeAST visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
+        TypeAST left = this.visit(expression.left());
+        TypeAST type = unary(expression.operator(), left, this.line);
+
+        expression.setType(type);
+
+        return type;
+    }
+
     @Override
     public TypeAST visitAssign(ExpressionAST.Assign expression) {
         ExpressionAST.Identifier identifier = expression.left();
@@ -84,14 +165,11 @@ public class TypeChecker extends Visitor<TypeAST> {
         TypeAST left = this.visit(identifier);
         TypeAST right = this.visit(expression.right());
 
-        if (!left.equals(right)) {
-            throw KaoriError.TypeError(
-                    String.format("invalid variable assignment with type %s for type %s", right, left),
-                    this.line);
-        }
-
+        assignment(left, right, this.line);
         this.environment.define(right, identifier.offset(), identifier.local());
 
+        expression.setType(right);
+
         return right;
     }
 
@@ -102,17 +180,16 @@ public class TypeChecker extends Visitor<TypeAST> {
 
     @Override
     public TypeAST visitIdentifier(ExpressionAST.Identifier expression) {
-        return this.environment.get(expression.offset(), expression.local());
+        TypeAST type = this.environment.get(expression.offset(), expression.local());
+
+        expression.setType(type);
+
+        return type;
     }
 
     @Override
     public TypeAST visitFunctionCall(ExpressionAST.FunctionCall expression) {
-        TypeAST type = this.visit(expression.callee());
-
-        if (!(type instanceof TypeAST.Function func)) {
-            throw KaoriError.TypeError(String.format("invalid %s type is not a function", type),
-                    this.line);
-        }
+        TypeAST.Function func = callee(this.visit(expression.callee()), this.line);
 
         int smallest = Math.min(func.parameters().size(), expression.arguments().size());
 
@@ -120,13 +197,11 @@ public class TypeChecker extends Visitor<TypeAST> {
             TypeAST argument = this.visit(expression.arguments().get(i));
             TypeAST parameter = func.parameters().get(i);
 
-            if (!argument.equals(parameter)) {
-                throw KaoriError.TypeError(
-                        String.format("invalid argument of type %s for parameter of type %s", argument, parameter),
-                        this.line);
-            }
+            argument(argument, parameter, this.line);
         }
 
+        expression.setType(func.returnType());
+
         return func.returnType();
     }
 
@@ -152,9 +227,7 @@ public class TypeChecker extends Visitor<TypeAST> {
     public void visitIfStatement(StatementAST.If statement) {
         TypeAST condition = this.visit(statement.condition());
 
-        if (!condition.equals(TypeAST.Primitive.BOOLEAN)) {
-            throw KaoriError.TypeError(String.format("invalid type for condition: %s", condition), this.line);
-        }
+        condition(condition, this.line);
 
         this.visit(statement.thenBranch());
         this.visit(statement.elseBranch());
@@ -164,9 +237,7 @@ public class TypeChecker extends Visitor<TypeAST> {
     public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
         TypeAST condition = this.visit(statement.condition());
 
-        if (!condition.equals(TypeAST.Primitive.BOOLEAN)) {
-            throw KaoriError.TypeError(String.format("invalid type for condition: %s", condition), this.line);
-        }
+        condition(condition, this.line);
 
         this.visit(statement.block());
     }
@@ -177,11 +248,7 @@ public class TypeChecker extends Visitor<TypeAST> {
         TypeAST left = declaration.type();
         TypeAST right = this.visit(declaration.right());
 
-        if (!left.equals(right)) {
-            throw KaoriError.TypeError(
-                    String.format("invalid variable declaration with type %s for type %s", left, right),
-                    this.line);
-        }
+        variable(left, right, this.line);
 
         this.environment.declare(left);
     }
@@ -205,5 +272,4 @@ public class TypeChecker extends Visitor<TypeAST> {
 
         this.environment.exitFunction();
     }
-
 }
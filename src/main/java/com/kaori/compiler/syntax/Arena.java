@@ -0,0 +1,292 @@
+package com.kaori.compiler.syntax;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A program's syntax tree packed into one int array. A node is the index of
+ * its header followed by the operands of its kind, children are written
+ * before their parent and referred to by index, and lists are stored inline
+ * after their length. Names are kept as their Symbols, literal values and
+ * types are interned into small tables, so an expression costs two or three ints instead of an
+ * object graph. The header holds the kind in its low 4 bits, a detail in the
+ * next 4 and the type id plus one above them:
+ *
+ *   BINARY      left, right                       detail: operator
+ *   UNARY       operand                           detail: operator
+ *   ASSIGN      identifier, value
+ *   LITERAL     constant
+ *   IDENTIFIER  name, offset                      detail: local
+ *   CALL        callee, count, arguments...       detail: tail
+ *   PRINT       line, expression
+ *   EXPRESSION  line, expression
+ *   BLOCK       line, count, declarations...
+ *   IF          line, condition, then, else
+ *   WHILE       line, condition, block
+ *   VARIABLE    line, name, value
+ *   FUNCTION    line, name, block, count, parameters...
+ *
+ * The top level is not a node, its declarations are kept in their own list
+ * as they are appended and are addressed through ROOT. Passes don't walk the
+ * ints themselves, they run over the tree nodes of declarations()
+ */
+public class Arena {
+    public static final int ROOT = -1;
+
+    public static enum Kind {
+        BINARY,
+        UNARY,
+        ASSIGN,
+        LITERAL,
+        IDENTIFIER,
+        CALL,
+        PRINT,
+        EXPRESSION,
+        BLOCK,
+        IF,
+        WHILE,
+        VARIABLE,
+        FUNCTION
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final ExpressionAST.BinaryOperator[] BINARY_OPERATORS = ExpressionAST.BinaryOperator.values();
+    private static final ExpressionAST.UnaryOperator[] UNARY_OPERATORS = ExpressionAST.UnaryOperator.values();
+
+    private static final int KIND_MASK = 0xF;
+    private static final int DETAIL_SHIFT = 4;
+    private static final int DETAIL_MASK = 0xF;
+    private static final int TYPE_SHIFT = 8;
+    private static final int MAX_TYPES = (1 << (Integer.SIZE - TYPE_SHIFT)) - 1;
+
+    private int[] nodes;
+    private int size;
+    private int[] top;
+    private int topCount;
+
+    private final List<Object> constants;
+    private final Map<Object, Integer> constantIndexes;
+    private final List<TypeAST> typeTable;
+    private final Map<TypeAST, Integer> typeIndexes;
+
+    public Arena() {
+        this.nodes = new int[1024];
+        this.size = 0;
+        this.top = new int[64];
+        this.topCount = 0;
+        this.constants = new ArrayList<>();
+        this.constantIndexes = new HashMap<>();
+        this.typeTable = new ArrayList<>();
+        this.typeIndexes = new HashMap<>();
+    }
+
+    /* Appends a node and returns its index, type is null until the TypeChecker sets it */
+    public int add(Kind kind, int detail, TypeAST type, int... operands) {
+        if (this.size + 1 + operands.length > this.nodes.length) {
+            this.nodes = Arrays.copyOf(this.nodes, Math.max(this.nodes.length * 2, this.size + 1 + operands.length));
+        }
+
+        int node = this.size;
+
+        this.nodes[node] = kind.ordinal() | detail << DETAIL_SHIFT;
+        System.arraycopy(operands, 0, this.nodes, node + 1, operands.length);
+        this.size += 1 + operands.length;
+
+        if (type != null) {
+            this.setType(node, type);
+        }
+
+        return node;
+    }
+
+    /* Adds a declaration at the end of the top level */
+    public void append(int node) {
+        if (this.topCount == this.top.length) {
+            this.top = Arrays.copyOf(this.top, this.top.length * 2);
+        }
+
+        this.top[this.topCount] = node;
+        this.topCount++;
+    }
+
+    /* The top level as tree nodes built on demand, whose annotations are written back here */
+    public List<DeclarationAST> declarations() {
+        return new ArenaView(this).declarations(ROOT);
+    }
+
+    /* Ints used by the nodes */
+    public int size() {
+        return this.size;
+    }
+
+    public int constant(Object value) {
+        return this.intern(this.constants, this.constantIndexes, value);
+    }
+
+    private <T> int intern(List<T> values, Map<T, Integer> indexes, T value) {
+        Integer index = indexes.get(value);
+
+        if (index == null) {
+            index = values.size();
+            values.add(value);
+            indexes.put(value, index);
+        }
+
+        return index;
+    }
+
+    private int detail(int node) {
+        return this.nodes[node] >>> DETAIL_SHIFT & DETAIL_MASK;
+    }
+
+    private void setDetail(int node, int detail) {
+        this.nodes[node] = this.nodes[node] & ~(DETAIL_MASK << DETAIL_SHIFT) | detail << DETAIL_SHIFT;
+    }
+
+    /* Every node */
+    public Kind kind(int node) {
+        return KINDS[this.nodes[node] & KIND_MASK];
+    }
+
+    /* Declared type of variables and functions, resolved type of expressions, null before type checking */
+    public TypeAST type(int node) {
+        int type = this.nodes[node] >>> TYPE_SHIFT;
+
+        return type == 0 ? null : this.typeTable.get(type - 1);
+    }
+
+    public void setType(int node, TypeAST type) {
+        int index = this.intern(this.typeTable, this.typeIndexes, type);
+
+        if (index >= MAX_TYPES) {
+            throw new IllegalStateException("Too many distinct types for an arena");
+        }
+
+        this.nodes[node] = this.nodes[node] & ((1 << TYPE_SHIFT) - 1) | (index + 1) << TYPE_SHIFT;
+    }
+
+    /* Statements and declarations */
+    public int line(int node) {
+        return this.nodes[node + 1];
+    }
+
+    /* Binary and unary expressions */
+    public int left(int node) {
+        return this.nodes[node + 1];
+    }
+
+    public int right(int node) {
+        return this.nodes[node + 2];
+    }
+
+    public ExpressionAST.BinaryOperator binaryOperator(int node) {
+        return BINARY_OPERATORS[this.detail(node)];
+    }
+
+    public ExpressionAST.UnaryOperator unaryOperator(int node) {
+        return UNARY_OPERATORS[this.detail(node)];
+    }
+
+    /* Assignments */
+    public int identifier(int node) {
+        return this.nodes[node + 1];
+    }
+
+    /* Value of an assignment or variable */
+    public int value(int node) {
+        return this.kind(node) == Kind.ASSIGN ? this.nodes[node + 2] : this.nodes[node + 3];
+    }
+
+    /* Literals */
+    public Object literal(int node) {
+        return this.constants.get(this.nodes[node + 1]);
+    }
+
+    /* Symbol of the name of an identifier, variable or function */
+    public int symbol(int node) {
+        return this.kind(node) == Kind.IDENTIFIER ? this.nodes[node + 1] : this.nodes[node + 2];
+    }
+
+    public String name(int node) {
+        return Symbols.name(this.symbol(node));
+    }
+
+    /* Identifiers */
+    public int offset(int node) {
+        return this.nodes[node + 2];
+    }
+
+    public boolean local(int node) {
+        return this.detail(node) != 0;
+    }
+
+    public void setReference(int node, int offset, boolean local) {
+        this.nodes[node + 2] = offset;
+        this.setDetail(node, local ? 1 : 0);
+    }
+
+    /* Calls */
+    public int callee(int node) {
+        return this.nodes[node + 1];
+    }
+
+    public int argumentCount(int node) {
+        return this.nodes[node + 2];
+    }
+
+    public int argument(int node, int index) {
+        return this.nodes[node + 3 + index];
+    }
+
+    public boolean tail(int node) {
+        return this.detail(node) != 0;
+    }
+
+    public void setTail(int node, boolean tail) {
+        this.setDetail(node, tail ? 1 : 0);
+    }
+
+    /* Print and expression statements */
+    public int expression(int node) {
+        return this.nodes[node + 2];
+    }
+
+    /* Blocks, or the top level for ROOT */
+    public int declarationCount(int block) {
+        return block == ROOT ? this.topCount : this.nodes[block + 2];
+    }
+
+    public int declaration(int block, int index) {
+        return block == ROOT ? this.top[index] : this.nodes[block + 3 + index];
+    }
+
+    /* If and while statements */
+    public int condition(int node) {
+        return this.nodes[node + 2];
+    }
+
+    public int thenBranch(int node) {
+        return this.nodes[node + 3];
+    }
+
+    public int elseBranch(int node) {
+        return this.nodes[node + 4];
+    }
+
+    /* Body of a while loop or function */
+    public int block(int node) {
+        return this.nodes[node + 3];
+    }
+
+    /* Functions */
+    public int parameterCount(int node) {
+        return this.nodes[node + 4];
+    }
+
+    public int parameter(int node, int index) {
+        return this.nodes[node + 5 + index];
+    }
+}
@@ -0,0 +1,176 @@
+package com.kaori.compiler.syntax;
+
+import java.util.List;
+
+import com.kaori.compiler.Visitor;
+
+/*
+ * Flattens parsed declarations into an Arena. Top level declarations are
+ * added one at a time as the Parser returns them, so only the tree of the
+ * declaration being copied is ever alive next to the arena
+ */
+public class ArenaBuilder extends Visitor<Integer> {
+    private final Arena arena;
+    /* node built for the last declaration or statement visited */
+    private int node;
+
+    public ArenaBuilder() {
+        super(List.of());
+        this.arena = new Arena();
+        this.node = Arena.ROOT;
+    }
+
+    public Arena arena() {
+        return this.arena;
+    }
+
+    public void add(DeclarationAST declaration) {
+        this.line = declaration.line();
+        this.visit(declaration);
+        this.arena.append(this.node);
+    }
+
+    /* Keeps the source order, hoisting functions is left to whoever walks the arena */
+    @Override
+    protected void visitDeclarations(List<DeclarationAST> declarations) {
+        throw new IllegalStateException("Declaration lists are built by block");
+    }
+
+    /* Builds every declaration into operands, after the first skip ones */
+    private int[] list(List<? extends DeclarationAST> declarations, int skip) {
+        int[] operands = new int[skip + declarations.size()];
+
+        for (int i = 0; i < declarations.size(); i++) {
+            DeclarationAST declaration = declarations.get(i);
+
+            this.line = declaration.line();
+            this.visit(declaration);
+            operands[skip + i] = this.node;
+        }
+
+        return operands;
+    }
+
+    private int block(StatementAST.Block block) {
+        int[] operands = this.list(block.declarations(), 2);
+
+        operands[0] = block.line();
+        operands[1] = block.declarations().size();
+
+        return this.arena.add(Arena.Kind.BLOCK, 0, null, operands);
+    }
+
+    /* Expressions */
+    @Override
+    public Integer visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
+        int left = this.visit(expression.left());
+        int right = this.visit(expression.right());
+
+        return this.arena.add(Arena.Kind.BINARY, expression.operator().ordinal(), expression.type(), left, right);
+    }
+
+    @Override
+    public Integer visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
+        int left = this.visit(expression.left());
+
+        return this.arena.add(Arena.Kind.UNARY, expression.operator().ordinal(), expression.type(), left);
+    }
+
+    @Override
+    public Integer visitAssign(ExpressionAST.Assign expression) {
+        int left = this.visit(expression.left());
+        int right = this.visit(expression.right());
+
+        return this.arena.add(Arena.Kind.ASSIGN, 0, expression.type(), left, right);
+    }
+
+    @Override
+    public Integer visitLiteral(ExpressionAST.Literal expression) {
+        return this.arena.add(Arena.Kind.LITERAL, 0, expression.type(), this.arena.constant(expression.value()));
+    }
+
+    @Override
+    public Integer visitIdentifier(ExpressionAST.Identifier expression) {
+        return this.arena.add(Arena.Kind.IDENTIFIER, expression.local() ? 1 : 0, expression.type(),
+                expression.symbol(), expression.offset());
+    }
+
+    @Override
+    public Integer visitFunctionCall(ExpressionAST.FunctionCall expression) {
+        List<ExpressionAST> arguments = expression.arguments();
+        int[] operands = new int[2 + arguments.size()];
+
+        operands[0] = this.visit(expression.callee());
+        operands[1] = arguments.size();
+
+        for (int i = 0; i < arguments.size(); i++) {
+            operands[2 + i] = this.visit(arguments.get(i));
+        }
+
+        return this.arena.add(Arena.Kind.CALL, expression.tail() ? 1 : 0, expression.type(), operands);
+    }
+
+    /* Statements */
+    @Override
+    public void visitPrintStatement(StatementAST.Print statement) {
+        int expression = this.visit(statement.expression());
+
+        this.node = this.arena.add(Arena.Kind.PRINT, 0, null, statement.line(), expression);
+    }
+
+    @Override
+    public void visitBlockStatement(StatementAST.Block statement) {
+        this.node = this.block(statement);
+    }
+
+    @Override
+    public void visitExpressionStatement(StatementAST.Expr statement) {
+        int expression = this.visit(statement.expression());
+
+        this.node = this.arena.add(Arena.Kind.EXPRESSION, 0, null, statement.line(), expression);
+    }
+
+    @Override
+    public void visitIfStatement(StatementAST.If statement) {
+        int condition = this.visit(statement.condition());
+        int thenBranch = this.block(statement.thenBranch());
+
+        this.visit(statement.elseBranch());
+
+        this.node = this.arena.add(Arena.Kind.IF, 0, null, statement.line(), condition, thenBranch, this.node);
+    }
+
+    @Override
+    public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
+        int condition = this.visit(statement.condition());
+        int block = this.block(statement.block());
+
+        this.node = this.arena.add(Arena.Kind.WHILE, 0, null, statement.line(), condition, block);
+    }
+
+    /* Declarations */
+    @Override
+    public void visitVariableDeclaration(DeclarationAST.Variable declaration) {
+        int right = this.visit(declaration.right());
+
+        this.node = this.arena.add(Arena.Kind.VARIABLE, 0, declaration.type(), declaration.line(),
+                declaration.left().symbol(), right);
+    }
+
+    @Override
+    public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
+
+    }
+
+    @Override
+    public void visitFunctionDefinition(DeclarationAST.Function declaration) {
+        int[] operands = this.list(declaration.parameters(), 4);
+
+        operands[0] = declaration.line();
+        operands[1] = declaration.name().symbol();
+        operands[2] = this.block(declaration.block());
+        operands[3] = declaration.parameters().size();
+
+        this.node = this.arena.add(Arena.Kind.FUNCTION, 0, declaration.type(), operands);
+    }
+}
@@ -0,0 +1,265 @@
+package com.kaori.compiler.syntax;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Presents the nodes of an Arena as tree nodes, so every pass written
+ * against Visitor runs over an arena as it is. A declaration is built when
+ * a pass reaches it and dropped once the pass moves on, the lists of a
+ * block are read lazily, and the nodes a pass annotates keep their offset,
+ * type and tail flag in the arena, where the next pass finds them. A list
+ * hands out the same function every time, since passes may key a scope's
+ * functions by declaration between hoisting and defining them
+ */
+final class ArenaView {
+    private final Arena arena;
+
+    ArenaView(Arena arena) {
+        this.arena = arena;
+    }
+
+    List<DeclarationAST> declarations(int block) {
+        return new Declarations(block);
+    }
+
+    private DeclarationAST declaration(int node) {
+        int line = this.arena.line(node);
+
+        return switch (this.arena.kind(node)) {
+            case VARIABLE -> this.variable(node);
+            case FUNCTION -> this.function(node);
+            case BLOCK -> this.block(node);
+            case PRINT -> new StatementAST.Print(line, this.expression(this.arena.expression(node)));
+            case EXPRESSION -> new StatementAST.Expr(line, this.expression(this.arena.expression(node)));
+            case IF -> new StatementAST.If(line, this.expression(this.arena.condition(node)),
+                    this.block(this.arena.thenBranch(node)),
+                    (StatementAST) this.declaration(this.arena.elseBranch(node)));
+            case WHILE -> new StatementAST.WhileLoop(line, this.expression(this.arena.condition(node)),
+                    this.block(this.arena.block(node)));
+            default -> throw new IllegalStateException("Unhandled statement kind: " + this.arena.kind(node));
+        };
+    }
+
+    private DeclarationAST.Variable variable(int node) {
+        ExpressionAST.Identifier name = new ExpressionAST.Identifier(this.arena.name(node));
+
+        return new DeclarationAST.Variable(this.arena.line(node), name, this.expression(this.arena.value(node)),
+                this.arena.type(node));
+    }
+
+    private DeclarationAST.Function function(int node) {
+        List<DeclarationAST.Variable> parameters = new ArrayList<>();
+
+        for (int i = 0; i < this.arena.parameterCount(node); i++) {
+            parameters.add(this.variable(this.arena.parameter(node, i)));
+        }
+
+        ExpressionAST.Identifier name = new ExpressionAST.Identifier(this.arena.name(node));
+
+        return new DeclarationAST.Function(this.arena.line(node), name, parameters,
+                (TypeAST.Function) this.arena.type(node), this.block(this.arena.block(node)));
+    }
+
+    private StatementAST.Block block(int node) {
+        return new StatementAST.Block(this.arena.line(node), new Declarations(node));
+    }
+
+    private ExpressionAST expression(int node) {
+        return switch (this.arena.kind(node)) {
+            case BINARY -> new Binary(this.arena, node, this.expression(this.arena.left(node)),
+                    this.expression(this.arena.right(node)));
+            case UNARY -> new Unary(this.arena, node, this.expression(this.arena.left(node)));
+            case ASSIGN -> new Assign(this.arena, node, new Identifier(this.arena, this.arena.identifier(node)),
+                    this.expression(this.arena.value(node)));
+            case LITERAL -> new ExpressionAST.Literal(this.arena.type(node), this.arena.literal(node));
+            case IDENTIFIER -> new Identifier(this.arena, node);
+            case CALL -> new Call(this.arena, node, this.expression(this.arena.callee(node)), this.arguments(node));
+            default -> throw new IllegalStateException("Unhandled expression kind: " + this.arena.kind(node));
+        };
+    }
+
+    private List<ExpressionAST> arguments(int call) {
+        List<ExpressionAST> arguments = new ArrayList<>();
+
+        for (int i = 0; i < this.arena.argumentCount(call); i++) {
+            arguments.add(this.expression(this.arena.argument(call, i)));
+        }
+
+        return arguments;
+    }
+
+    /* Declarations of a block or of the top level, built on each read except for functions */
+    private final class Declarations extends AbstractList<DeclarationAST> implements DeclarationList {
+        private final int block;
+        private DeclarationAST[] functions;
+
+        Declarations(int block) {
+            this.block = block;
+            this.functions = null;
+        }
+
+        @Override
+        public DeclarationAST get(int index) {
+            int node = ArenaView.this.arena.declaration(this.block, index);
+
+            if (ArenaView.this.arena.kind(node) != Arena.Kind.FUNCTION) {
+                return ArenaView.this.declaration(node);
+            }
+
+            if (this.functions == null) {
+                this.functions = new DeclarationAST[this.size()];
+            }
+
+            if (this.functions[index] == null) {
+                this.functions[index] = ArenaView.this.function(node);
+            }
+
+            return this.functions[index];
+        }
+
+        @Override
+        public int size() {
+            return ArenaView.this.arena.declarationCount(this.block);
+        }
+
+        @Override
+        public boolean function(int index) {
+            int node = ArenaView.this.arena.declaration(this.block, index);
+
+            return ArenaView.this.arena.kind(node) == Arena.Kind.FUNCTION;
+        }
+    }
+
+    /* Expressions a pass annotates, reading and writing the annotations in the node of the arena */
+    private static final class Binary extends ExpressionAST.BinaryExpression {
+        private final Arena arena;
+        private final int node;
+
+        Binary(Arena arena, int node, ExpressionAST left, ExpressionAST right) {
+            super(left, right, arena.binaryOperator(node));
+            this.arena = arena;
+            this.node = node;
+        }
+
+        @Override
+        public TypeAST type() {
+            return this.arena.type(this.node);
+        }
+
+        @Override
+        public void setType(TypeAST type) {
+            this.arena.setType(this.node, type);
+        }
+    }
+
+    private static final class Unary extends ExpressionAST.UnaryExpression {
+        private final Arena arena;
+        private final int node;
+
+        Unary(Arena arena, int node, ExpressionAST left) {
+            super(left, arena.unaryOperator(node));
+            this.arena = arena;
+            this.node = node;
+        }
+
+        @Override
+        public TypeAST type() {
+            return this.arena.type(this.node);
+        }
+
+        @Override
+        public void setType(TypeAST type) {
+            this.arena.setType(this.node, type);
+        }
+    }
+
+    private static final class Assign extends ExpressionAST.Assign {
+        private final Arena arena;
+        private final int node;
+
+        Assign(Arena arena, int node, ExpressionAST.Identifier left, ExpressionAST right) {
+            super(left, right);
+            this.arena = arena;
+            this.node = node;
+        }
+
+        @Override
+        public TypeAST type() {
+            return this.arena.type(this.node);
+        }
+
+        @Override
+        public void setType(TypeAST type) {
+            this.arena.setType(this.node, type);
+        }
+    }
+
+    private static final class Identifier extends ExpressionAST.Identifier {
+        private final Arena arena;
+        private final int node;
+
+        Identifier(Arena arena, int node) {
+            super(arena.name(node));
+            this.arena = arena;
+            this.node = node;
+        }
+
+        @Override
+        public int offset() {
+            return this.arena.offset(this.node);
+        }
+
+        @Override
+        public boolean local() {
+            return this.arena.local(this.node);
+        }
+
+        @Override
+        public void setReference(int offset, boolean local) {
+            this.arena.setReference(this.node, offset, local);
+        }
+
+        @Override
+        public TypeAST type() {
+            return this.arena.type(this.node);
+        }
+
+        @Override
+        public void setType(TypeAST type) {
+            this.arena.setType(this.node, type);
+        }
+    }
+
+    private static final class Call extends ExpressionAST.FunctionCall {
+        private final Arena arena;
+        private final int node;
+
+        Call(Arena arena, int node, ExpressionAST callee, List<ExpressionAST> arguments) {
+            super(callee, arguments);
+            this.arena = arena;
+            this.node = node;
+        }
+
+        @Override
+        public boolean tail() {
+            return this.arena.tail(this.node);
+        }
+
+        @Override
+        public void setTail(boolean tail) {
+            this.arena.setTail(this.node, tail);
+        }
+
+        @Override
+        public TypeAST type() {
+            return this.arena.type(this.node);
+        }
+
+        @Override
+        public void setType(TypeAST type) {
+            this.arena.setType(this.node, type);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.kaori.compiler.syntax;
+
+import java.util.List;
+
+/*
+ * Declarations that can tell which of them are functions without building
+ * the others, like the lists of an Arena, whose get builds a declaration on
+ * every call
+ */
+public interface DeclarationList extends List<DeclarationAST> {
+    boolean function(int index);
+}
@@ -3,6 +3,9 @@ package com.kaori.compiler.syntax;
 import java.util.List;
 
 public interface ExpressionAST {
+    /* Type resolved by the TypeChecker, null before type checking */
+    TypeAST type();
+
     public static enum BinaryOperator {
         PLUS("+"),
         MINUS("-"),
@@ -44,36 +47,166 @@ public interface ExpressionAST {
         }
     }
 
-    record BinaryExpression(ExpressionAST left, ExpressionAST right, BinaryOperator operator) implements ExpressionAST {
+    public class BinaryExpression implements ExpressionAST {
+        private final ExpressionAST left;
+        private final ExpressionAST right;
+        private final BinaryOperator operator;
+        private TypeAST type;
+
+        public BinaryExpression(ExpressionAST left, ExpressionAST right, BinaryOperator operator) {
+            this.left = left;
+            this.right = right;
+            this.operator = operator;
+            this.type = null;
+        }
+
+        public ExpressionAST left() {
+            return this.left;
+        }
+
+        public ExpressionAST right() {
+            return this.right;
+        }
+
+        public BinaryOperator operator() {
+            return this.operator;
+        }
+
+        @Override
+        public TypeAST type() {
+            return this.type;
+        }
+
+        public void setType(TypeAST type) {
+            this.type = type;
+        }
     }
 
-    record UnaryExpression(ExpressionAST left, UnaryOperator operator) implements ExpressionAST {
+    public class UnaryExpression implements ExpressionAST {
+        private final ExpressionAST left;
+        private final UnaryOperator operator;
+        private TypeAST type;
+
+        public UnaryExpression(ExpressionAST left, UnaryOperator operator) {
+            this.left = left;
+            this.operator = operator;
+            this.type = null;
+        }
+
+        public ExpressionAST left() {
+            return this.left;
+        }
+
+        public UnaryOperator operator() {
+            return this.operator;
+        }
+
+        @Override
+        public TypeAST type() {
+            return this.type;
+        }
+
+        public void setType(TypeAST type) {
+            this.type = type;
+        }
     }
 
-    record Assign(ExpressionAST.Identifier left, ExpressionAST right) implements ExpressionAST {
+    public class Assign implements ExpressionAST {
+        private final ExpressionAST.Identifier left;
+        private final ExpressionAST right;
+        private TypeAST type;
+
+        public Assign(ExpressionAST.Identifier left, ExpressionAST right) {
+            this.left = left;
+            this.right = right;
+            this.type = null;
+        }
+
+        public ExpressionAST.Identifier left() {
+            return this.left;
+        }
+
+        public ExpressionAST right() {
+            return this.right;
+        }
+
+        @Override
+        public TypeAST type() {
+            return this.type;
+        }
+
+        public void setType(TypeAST type) {
+            this.type = type;
+        }
     }
 
     record Literal(TypeAST type, Object value) implements ExpressionAST {
     }
 
-    record FunctionCall(ExpressionAST callee, List<ExpressionAST> arguments) implements ExpressionAST {
+    public class FunctionCall implements ExpressionAST {
+        private final ExpressionAST callee;
+        private final List<ExpressionAST> arguments;
+        private TypeAST type;
+        private boolean tail;
+
+        public FunctionCall(ExpressionAST callee, List<ExpressionAST> arguments) {
+            this.callee = callee;
+            this.arguments = arguments;
+            this.type = null;
+            this.tail = false;
+        }
+
+        public ExpressionAST callee() {
+            return this.callee;
+        }
+
+        public List<ExpressionAST> arguments() {
+            return this.arguments;
+        }
+
+        /* Set by the TailCallMarker when nothing is left to run in the caller after this call */
+        public boolean tail() {
+            return this.tail;
+        }
+
+        public void setTail(boolean tail) {
+            this.tail = tail;
+        }
+
+        @Override
+        public TypeAST type() {
+            return this.type;
+        }
+
+        public void setType(TypeAST type) {
+            this.type = type;
+        }
     }
 
     public class Identifier implements ExpressionAST {
         private final String name;
+        private final int symbol;
         private int offset;
         private boolean local;
+        private TypeAST type;
 
         public Identifier(String name) {
             this.name = name;
+            this.symbol = Symbols.intern(name);
             this.offset = -1;
             this.local = false;
+            this.type = null;
         }
 
         public String name() {
             return this.name;
         }
 
+        /* The name interned in Symbols */
+        public int symbol() {
+            return this.symbol;
+        }
+
         public int offset() {
             return this.offset;
         }
@@ -82,10 +215,19 @@ public interface ExpressionAST {
             return this.local;
         }
 
+        @Override
+        public TypeAST type() {
+            return this.type;
+        }
+
         public void setReference(int offset, boolean local) {
             this.offset = offset;
             this.local = local;
         }
 
+        public void setType(TypeAST type) {
+            this.type = type;
+        }
+
     }
 }
@@ -0,0 +1,5 @@
+package com.kaori.compiler.syntax;
+
+/* An import line, path is relative to the directory of the importing file */
+public record ImportAST(int line, String path) {
+}
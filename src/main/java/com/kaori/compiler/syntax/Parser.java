@@ -17,15 +17,38 @@ public class Parser {
     public List<DeclarationAST> declarations() {
         List<DeclarationAST> declarations = new ArrayList<>();
 
-        while (!this.tokens.atEnd()) {
-            DeclarationAST declaration = this.declaration();
+        for (DeclarationAST declaration = this.next(); declaration != null; declaration = this.next()) {
             declarations.add(declaration);
-
         }
 
         return declarations;
     }
 
+    /* The imports at the top of the file, read before the first declaration */
+    public List<ImportAST> imports() {
+        List<ImportAST> imports = new ArrayList<>();
+
+        while (this.tokens.getCurrent() == TokenKind.IMPORT) {
+            int line = this.tokens.getLine();
+
+            this.tokens.consume(TokenKind.IMPORT);
+
+            String lexeme = this.tokens.getLexeme();
+
+            this.tokens.consume(TokenKind.STRING_LITERAL);
+            this.tokens.consume(TokenKind.SEMICOLON);
+
+            imports.add(new ImportAST(line, lexeme.substring(1, lexeme.length() - 1)));
+        }
+
+        return imports;
+    }
+
+    /* The next top level declaration, null at the end, for callers that don't keep the whole tree */
+    public DeclarationAST next() {
+        return this.tokens.atEnd() ? null : this.declaration();
+    }
+
     /*
      * ─────────────────────────────
      * Declarations
@@ -34,6 +57,8 @@ public class Parser {
     private DeclarationAST declaration() {
         DeclarationAST declaration = switch (this.tokens.getCurrent()) {
             case FUNCTION -> this.functionDeclaration();
+            case IMPORT -> throw KaoriError.SyntaxError("imports must come before any declaration",
+                    this.tokens.getLine());
             default -> this.tokens.lookAhead(TokenKind.IDENTIFIER, TokenKind.COLON) ? this.variableDeclaration()
                     : this.statement();
         };
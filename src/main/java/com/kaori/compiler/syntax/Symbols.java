@@ -0,0 +1,42 @@
+package com.kaori.compiler.syntax;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Identifier names interned to small ids. The Parser interns every name it
+ * reads, so later passes index their tables by id instead of hashing and
+ * comparing Strings. Ids are dense and shared by the whole process, files
+ * parsed on different threads agree on them
+ */
+public final class Symbols {
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final List<String> NAMES = new ArrayList<>();
+
+    private Symbols() {
+    }
+
+    public static int intern(String name) {
+        Integer id = IDS.get(name);
+
+        return id == null ? add(name) : id;
+    }
+
+    private static synchronized int add(String name) {
+        Integer id = IDS.get(name);
+
+        if (id == null) {
+            id = NAMES.size();
+            NAMES.add(name);
+            IDS.put(name, id);
+        }
+
+        return id;
+    }
+
+    public static synchronized String name(int id) {
+        return NAMES.get(id);
+    }
+}
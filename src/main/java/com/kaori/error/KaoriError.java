@@ -12,6 +12,17 @@ public class KaoriError extends RuntimeException {
         return super.getMessage();
     }
 
+    /* The same error for a program split into files, naming the file it comes from */
+    public KaoriError in(String file) {
+        return new KaoriError(String.format("%s in %s", super.getMessage(), file), this.line);
+    }
+
+    public static KaoriError ImportError(String errorMessage, int line) {
+        String formattedMessage = String.format("ImportError: %s at line %d", errorMessage, line);
+
+        return new KaoriError(formattedMessage, line);
+    }
+
     public static KaoriError SyntaxError(String errorMessage, int line) {
         String formattedMessage = String.format("SyntaxError: %s at line %d", errorMessage, line);
 
@@ -35,4 +46,23 @@ public class KaoriError extends RuntimeException {
 
         return new KaoriError(formattedMessage, line);
     }
+
+    /* A valid program using a feature the selected engine can't run */
+    public static KaoriError UnsupportedError(String errorMessage, int line) {
+        String formattedMessage = String.format("UnsupportedError: %s at line %d", errorMessage, line);
+
+        return new KaoriError(formattedMessage, line);
+    }
+
+    /* Raised by the call stack, which doesn't know the line of the call */
+    public static KaoriError StackOverflowError(int depth) {
+        String formattedMessage = String.format("StackOverflowError: more than %d calls in progress", depth);
+
+        return new KaoriError(formattedMessage, 0);
+    }
+
+    /* The host ran out of stack before the call stack reached its depth limit */
+    public static KaoriError StackOverflowError() {
+        return new KaoriError("StackOverflowError: too many calls in progress for the host stack", 0);
+    }
 }
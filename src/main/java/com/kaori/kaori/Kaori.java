@@ -1,68 +1,218 @@
 package com.kaori.kaori;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.kaori.compiler.bytecode.Bytecode;
+import com.kaori.compiler.bytecode.BytecodeCache;
 import com.kaori.compiler.bytecode.BytecodeGenerator;
+import com.kaori.compiler.bytecode.PeepholeOptimizer;
+import com.kaori.compiler.bytecode.Superinstructions;
 
+import com.kaori.compiler.jvm.JvmCompiler;
 import com.kaori.compiler.lexer.Lexer;
-import com.kaori.compiler.lexer.Token;
+import com.kaori.compiler.lexer.MappedSource;
 import com.kaori.compiler.lexer.TokenStream;
+import com.kaori.compiler.module.ModuleLoader;
+import com.kaori.compiler.module.Program;
+import com.kaori.compiler.optimizer.ConstantFolder;
+import com.kaori.compiler.optimizer.Inliner;
+import com.kaori.compiler.register.RegisterGenerator;
 import com.kaori.compiler.semantic.Resolver;
+import com.kaori.compiler.semantic.SemanticAnalyzer;
+import com.kaori.compiler.semantic.TailCallMarker;
 import com.kaori.compiler.semantic.TypeChecker;
+import com.kaori.compiler.syntax.ArenaBuilder;
 import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.ImportAST;
 import com.kaori.compiler.syntax.Parser;
 import com.kaori.error.KaoriError;
+import com.kaori.nodeinterpreter.NodeInterpreter;
 import com.kaori.runtime.KaoriVM;
+import com.kaori.runtime.RegisterVM;
 import com.kaori.slowinterpreter.Interpreter;
 
 public class Kaori {
+    private final Options options;
+    private final ForkJoinPool pool;
+
+    public Kaori(Options options) {
+        this.options = options;
+        this.pool = ForkJoinPool.commonPool();
+    }
+
     public void start() {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
         try {
+            Path path = this.options.path();
 
-            Path path = Path.of("src/main/java/com/kaori/kaori/main.kaori");
-            String source = Files.readString(path);
+            switch (this.options.engine()) {
+                case VM -> this.runVM(this.bytecode(path));
+                case REGISTER -> this.runRegisterVM(this.analyze(path));
+                case JVM -> this.runJVM(this.analyze(path));
+                case INTERPRETER -> this.runNodeInterpreter(this.analyze(path));
+                case SLOW_INTERPRETER -> this.runInterpreter(this.analyze(path));
+            }
+        } catch (KaoriError error) {
+            System.out.println(error);
+        } catch (IOException error) {
+            System.out.println(error);
+        } catch (UncheckedIOException error) {
+            System.out.println(error.getCause());
+        }
+    }
 
-            TokenStream tokens = this.tokens(source);
-            List<DeclarationAST> declarations = this.declarations(tokens);
+    /*
+     * Runs the front end over the program at path and the files it imports,
+     * the result is ready for any engine. Files are parsed, resolved, type
+     * checked and folded in parallel, inlining sees the whole program
+     */
+    private List<DeclarationAST> analyze(Path path) throws IOException {
+        Program program = new ModuleLoader(this.pool).load(path);
 
-            Resolver resolver = new Resolver(declarations);
-            resolver.run();
+        program.check(this.pool, (declarations, globals) -> {
+            if (this.options.fused()) {
+                SemanticAnalyzer analyzer = new SemanticAnalyzer(declarations, globals);
+                analyzer.run();
+            } else {
+                Resolver resolver = new Resolver(declarations, globals);
+                resolver.run();
 
-            TypeChecker typeChecker = new TypeChecker(declarations);
-            typeChecker.run();
+                TypeChecker typeChecker = new TypeChecker(declarations, globals);
+                typeChecker.run();
+            }
 
-            BytecodeGenerator generator = new BytecodeGenerator(declarations);
-            Bytecode bytecode = generator.bytecode();
+            ConstantFolder folder = new ConstantFolder(declarations);
+            folder.run();
+        });
 
-            KaoriVM vm = new KaoriVM(bytecode);
-            // System.out.println(bytecode);
-            Interpreter interpreter = new Interpreter(declarations);
-            // interpreter.run();
-            vm.run();
-        } catch (KaoriError error) {
-            System.out.println(error);
-        } catch (IOException error) {
-            System.out.println(error);
+        List<DeclarationAST> declarations = program.declarations();
+
+        if (this.options.inlineBudget() > 0) {
+            Inliner inliner = new Inliner(declarations, this.options.inlineBudget());
+            inliner.run();
+        }
+
+        TailCallMarker marker = new TailCallMarker(declarations);
+        marker.run();
+
+        return declarations;
+    }
+
+    /* The front end with every declaration flattened into an arena as soon as it is parsed, for a single file */
+    private Bytecode analyzeArena(Path path) throws IOException {
+        Parser parser = new Parser(this.tokens(path));
+        ArenaBuilder builder = new ArenaBuilder();
+        List<ImportAST> imports = parser.imports();
+
+        if (!imports.isEmpty()) {
+            throw KaoriError.ImportError("--arena compiles a single file", imports.get(0).line());
+        }
+
+        for (DeclarationAST declaration = parser.next(); declaration != null; declaration = parser.next()) {
+            builder.add(declaration);
+        }
+
+        List<DeclarationAST> declarations = builder.arena().declarations();
+
+        new Resolver(declarations).run();
+        new TypeChecker(declarations).run();
+        new TailCallMarker(declarations).run();
+
+        return this.optimize(new BytecodeGenerator(declarations).bytecode());
+    }
+
+    private Bytecode compile(Path path) throws IOException {
+        return this.options.arena() ? this.analyzeArena(path) : this.compile(this.analyze(path));
+    }
+
+    /* With the cache on, an unchanged program skips the front end and loads its bytecode instead */
+    private Bytecode bytecode(Path path) throws IOException {
+        if (!this.options.cache()) {
+            return this.compile(path);
         }
+
+        Path directory = this.options.cacheDirectory() == null ? path.resolveSibling(".kaori-cache")
+                : this.options.cacheDirectory();
+        BytecodeCache cache = new BytecodeCache(directory);
+        String key = cache.key(new ModuleLoader(this.pool).sources(path), this.options.bytecodeFlags());
+        Bytecode bytecode = cache.load(key);
+
+        if (bytecode == null) {
+            bytecode = this.compile(path);
+            cache.store(key, bytecode);
+        }
+
+        return bytecode;
+    }
+
+    private Bytecode compile(List<DeclarationAST> declarations) {
+        BytecodeGenerator generator = new BytecodeGenerator(declarations);
+
+        return this.optimize(generator.bytecode());
+    }
+
+    private Bytecode optimize(Bytecode bytecode) {
+        if (this.options.superinstructions()) {
+            bytecode = new Superinstructions().apply(bytecode);
+        }
+
+        if (this.options.peephole()) {
+            bytecode = new PeepholeOptimizer().apply(bytecode);
+        }
+
+        return bytecode;
+    }
+
+    private void runVM(Bytecode bytecode) {
+        KaoriVM vm = new KaoriVM(bytecode, this.options.traceSettings(), this.options.maxDepth());
+
+        switch (this.options.dispatch()) {
+            case SWITCH -> vm.run();
+            case THREADED -> vm.runThreaded();
+        }
+
+        if (this.options.traceStats()) {
+            System.err.println(vm.traceStats());
+        }
+    }
+
+    private void runRegisterVM(List<DeclarationAST> declarations) {
+        RegisterGenerator generator = new RegisterGenerator(declarations);
+        RegisterVM vm = new RegisterVM(generator.bytecode(), this.options.maxDepth());
+
+        vm.run();
+    }
+
+    /* Calls run on the Java stack, which runs out long before the other engines' call stacks do */
+    private void runJVM(List<DeclarationAST> declarations) {
+        Runnable program = new JvmCompiler().compile(declarations);
+
+        try {
+            program.run();
+        } catch (StackOverflowError error) {
+            throw KaoriError.StackOverflowError();
+        }
+    }
+
+    private void runNodeInterpreter(List<DeclarationAST> declarations) {
+        NodeInterpreter interpreter = new NodeInterpreter(declarations, this.options.maxDepth());
+
+        interpreter.run();
     }
 
-    private List<DeclarationAST> declarations(TokenStream tokens) {
-        Parser parser = new Parser(tokens);
+    private void runInterpreter(List<DeclarationAST> declarations) {
+        Interpreter interpreter = new Interpreter(declarations, this.options.maxDepth());
 
-        return parser.declarations();
+        interpreter.run();
     }
 
-    private TokenStream tokens(String source) {
-        Lexer lexer = new Lexer(source);
-        List<Token> tokens = lexer.scan();
+    /* Tokens are lexed while the parser consumes them, straight from the mapped file */
+    private TokenStream tokens(Path path) throws IOException {
+        Lexer lexer = new Lexer(MappedSource.open(path));
 
-        return new TokenStream(tokens, source);
+        return new TokenStream(lexer);
     }
 }
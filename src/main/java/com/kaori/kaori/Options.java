@@ -0,0 +1,181 @@
+package com.kaori.kaori;
+
+import java.nio.file.Path;
+
+import com.kaori.runtime.CallStack;
+import com.kaori.runtime.TraceSettings;
+
+public class Options {
+    public static enum Engine {
+        VM,
+        REGISTER,
+        JVM,
+        INTERPRETER,
+        SLOW_INTERPRETER
+    }
+
+    public static enum Dispatch {
+        SWITCH,
+        THREADED
+    }
+
+    public static final int DEFAULT_INLINE_BUDGET = 40;
+    public static final Path DEFAULT_PATH = Path.of("src/main/java/com/kaori/kaori/main.kaori");
+
+    private boolean superinstructions;
+    private boolean peephole;
+    private Engine engine;
+    private Dispatch dispatch;
+    private boolean traceJit;
+    private int traceThreshold;
+    private int traceMaxLength;
+    private boolean traceStats;
+    private boolean inline;
+    private int inlineBudget;
+    private boolean cache;
+    private Path cacheDirectory;
+    private boolean arena;
+    private boolean fused;
+    private int maxDepth;
+    private Path path;
+
+    public Options() {
+        this.superinstructions = false;
+        this.peephole = false;
+        this.engine = Engine.VM;
+        this.dispatch = Dispatch.SWITCH;
+        this.traceJit = false;
+        this.traceThreshold = TraceSettings.DEFAULT_THRESHOLD;
+        this.traceMaxLength = TraceSettings.DEFAULT_MAX_LENGTH;
+        this.traceStats = false;
+        this.inline = false;
+        this.inlineBudget = DEFAULT_INLINE_BUDGET;
+        this.cache = false;
+        this.cacheDirectory = null;
+        this.arena = false;
+        this.fused = false;
+        this.maxDepth = CallStack.DEFAULT_MAX_DEPTH;
+        this.path = DEFAULT_PATH;
+    }
+
+    public static Options parse(String[] args) {
+        Options options = new Options();
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            String value = option.length > 1 ? option[1] : "";
+
+            switch (option[0]) {
+                case "--superinstructions" -> options.superinstructions = true;
+                case "--peephole" -> options.peephole = true;
+                case "--engine" -> options.engine = Engine.valueOf(value.toUpperCase().replace('-', '_'));
+                case "--dispatch" -> options.dispatch = Dispatch.valueOf(value.toUpperCase());
+                case "--trace-jit" -> options.traceJit = true;
+                case "--trace-threshold" -> options.traceThreshold = Integer.parseInt(value);
+                case "--trace-max-length" -> options.traceMaxLength = Integer.parseInt(value);
+                case "--trace-stats" -> options.traceStats = true;
+                case "--inline" -> options.inline = true;
+                case "--inline-budget" -> options.inlineBudget = Integer.parseInt(value);
+                case "--cache" -> options.cache = true;
+                case "--cache-dir" -> {
+                    options.cache = true;
+                    options.cacheDirectory = Path.of(value);
+                }
+                case "--arena" -> options.arena = true;
+                case "--fused" -> options.fused = true;
+                case "--max-depth" -> options.maxDepth = Integer.parseInt(value);
+                default -> {
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("unknown option " + arg);
+                    }
+
+                    options.path = Path.of(arg);
+                }
+            }
+        }
+
+        if (options.traceJit && options.dispatch != Dispatch.SWITCH) {
+            throw new IllegalArgumentException("--trace-jit needs --dispatch=switch");
+        }
+
+        if (options.arena && (options.engine != Engine.VM || options.inline || options.fused)) {
+            throw new IllegalArgumentException("--arena needs --engine=vm, no --inline and no --fused");
+        }
+
+        return options;
+    }
+
+    /* Fuse common opcode sequences into superinstructions */
+    public boolean superinstructions() {
+        return this.superinstructions;
+    }
+
+    /* Run the peephole optimizer over the generated bytecode */
+    public boolean peephole() {
+        return this.peephole;
+    }
+
+    /* Execution engine selected with --engine=vm|register|jvm|interpreter|slow-interpreter */
+    public Engine engine() {
+        return this.engine;
+    }
+
+    /* How the stack VM dispatches instructions, selected with --dispatch=switch|threaded */
+    public Dispatch dispatch() {
+        return this.dispatch;
+    }
+
+    /* Record and compile hot loops in the stack VM, null when the trace tier is off */
+    public TraceSettings traceSettings() {
+        return this.traceJit ? new TraceSettings(this.traceThreshold, this.traceMaxLength) : null;
+    }
+
+    /* Print what the trace tier did to stderr once the program ends */
+    public boolean traceStats() {
+        return this.traceStats;
+    }
+
+    /* Largest function body, in AST nodes, copied into its call sites, 0 when inlining is off */
+    public int inlineBudget() {
+        return this.inline ? this.inlineBudget : 0;
+    }
+
+    /* Keep compiled bytecode on disk and reuse it while the source doesn't change */
+    public boolean cache() {
+        return this.cache;
+    }
+
+    /* Where cached bytecode goes, null for a .kaori-cache directory next to the source */
+    public Path cacheDirectory() {
+        return this.cacheDirectory;
+    }
+
+    /*
+     * Parse into an Arena and compile from it, for programs too large to hold
+     * as a tree. The arena skips constant folding and inlining
+     */
+    public boolean arena() {
+        return this.arena;
+    }
+
+    /* Resolve and type check in a single walk with the SemanticAnalyzer */
+    public boolean fused() {
+        return this.fused;
+    }
+
+    /* Calls that can be in progress at once before the program stops with a StackOverflowError */
+    public int maxDepth() {
+        return this.maxDepth;
+    }
+
+    /* Main file of the program, the files it imports are found from there */
+    public Path path() {
+        return this.path;
+    }
+
+    /* The options that change the generated bytecode, part of every cache key */
+    public String bytecodeFlags() {
+        return String.format("superinstructions=%b peephole=%b inline=%d arena=%b", this.superinstructions,
+                this.peephole, this.inlineBudget(), this.arena);
+    }
+}
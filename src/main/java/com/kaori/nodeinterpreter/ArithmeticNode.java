@@ -0,0 +1,116 @@
+package com.kaori.nodeinterpreter;
+
+import com.kaori.compiler.syntax.ExpressionAST;
+import com.kaori.error.KaoriError;
+
+/* +, -, *, / and % */
+public abstract class ArithmeticNode extends BinaryNode {
+    protected ArithmeticNode(ExpressionAST.BinaryOperator operator, int line, ExpressionNode left,
+            ExpressionNode right) {
+        super(operator, line, left, right);
+    }
+
+    protected ArithmeticNode(ArithmeticNode node) {
+        super(node);
+    }
+
+    protected double evaluate(double left, double right) {
+        return switch (this.operator) {
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            case MULTIPLY -> left * right;
+            case DIVIDE -> {
+                if (right == 0) {
+                    throw this.invalid(left, right);
+                }
+
+                yield left / right;
+            }
+            case MODULO -> {
+                if (right == 0) {
+                    throw this.invalid(left, right);
+                }
+
+                yield left % right;
+            }
+            default -> throw new IllegalStateException("Unhandled arithmetic operator: " + this.operator);
+        };
+    }
+
+    @Override
+    protected Object evaluate(Object left, Object right) {
+        return this.evaluate((double) (Double) left, (double) (Double) right);
+    }
+
+    private KaoriError invalid(double left, double right) {
+        return KaoriError.RuntimeError(
+                String.format("invalid %s operation between %s and %s", this.operator, left, right), this.line);
+    }
+
+    public static final class Uninitialized extends ArithmeticNode {
+        public Uninitialized(ExpressionAST.BinaryOperator operator, int line, ExpressionNode left,
+                ExpressionNode right) {
+            super(operator, line, left, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object left = this.left.execute(frame);
+            Object right = this.right.execute(frame);
+
+            if (left instanceof Double && right instanceof Double) {
+                return this.replace(new DoubleArithmetic(this)).evaluate(left, right);
+            }
+
+            return this.replace(new Generic(this)).evaluate(left, right);
+        }
+    }
+
+    public static final class DoubleArithmetic extends ArithmeticNode {
+        private DoubleArithmetic(ArithmeticNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            try {
+                return this.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                return error.result();
+            }
+        }
+
+        @Override
+        public double executeDouble(Frame frame) throws UnexpectedResultException {
+            double left;
+            double right;
+
+            try {
+                left = this.left.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                Object result = this.replace(new Generic(this)).evaluate(error.result(), this.right.execute(frame));
+
+                return expectDouble(result);
+            }
+
+            try {
+                right = this.right.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                return expectDouble(this.replace(new Generic(this)).evaluate(left, error.result()));
+            }
+
+            return this.evaluate(left, right);
+        }
+    }
+
+    public static final class Generic extends ArithmeticNode {
+        private Generic(ArithmeticNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.evaluate(this.left.execute(frame), this.right.execute(frame));
+        }
+    }
+}
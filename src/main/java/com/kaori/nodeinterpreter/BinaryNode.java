@@ -0,0 +1,34 @@
+package com.kaori.nodeinterpreter;
+
+import com.kaori.compiler.syntax.ExpressionAST;
+
+public abstract class BinaryNode extends ExpressionNode {
+    protected final ExpressionAST.BinaryOperator operator;
+    protected final int line;
+    protected ExpressionNode left;
+    protected ExpressionNode right;
+
+    protected BinaryNode(ExpressionAST.BinaryOperator operator, int line, ExpressionNode left,
+            ExpressionNode right) {
+        this.operator = operator;
+        this.line = line;
+        this.left = this.adopt(left);
+        this.right = this.adopt(right);
+    }
+
+    protected BinaryNode(BinaryNode node) {
+        this(node.operator, node.line, node.left, node.right);
+    }
+
+    @Override
+    protected void replaceChild(Node child, Node replacement) {
+        if (this.left == child) {
+            this.left = (ExpressionNode) replacement;
+        } else {
+            this.right = (ExpressionNode) replacement;
+        }
+    }
+
+    /* Evaluates the operator on boxed operands, which every specialization falls back to */
+    protected abstract Object evaluate(Object left, Object right);
+}
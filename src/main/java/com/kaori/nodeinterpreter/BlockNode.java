@@ -0,0 +1,20 @@
+package com.kaori.nodeinterpreter;
+
+public final class BlockNode extends StatementNode {
+    private final StatementNode[] statements;
+
+    public BlockNode(StatementNode[] statements) {
+        this.statements = statements;
+
+        for (StatementNode statement : statements) {
+            this.adopt(statement);
+        }
+    }
+
+    @Override
+    public void execute(Frame frame) {
+        for (StatementNode statement : this.statements) {
+            statement.execute(frame);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.kaori.nodeinterpreter;
+
+import com.kaori.error.KaoriError;
+
+/*
+ * Calls the function its callee evaluates to. Once it has seen a callee it
+ * caches it and only checks that the same function comes back, which is the
+ * case for nearly every call site since functions are never reassigned.
+ * Calls in tail position hand their callee to the running call instead of
+ * calling it, see FunctionNode. Like the call stack of the other engines,
+ * at most maxDepth calls can be in progress at once
+ */
+public abstract class CallNode extends ExpressionNode {
+    protected ExpressionNode callee;
+    protected final ExpressionNode[] arguments;
+    protected final boolean tail;
+    protected final int maxDepth;
+
+    protected CallNode(ExpressionNode callee, ExpressionNode[] arguments, boolean tail, int maxDepth) {
+        this.callee = this.adopt(callee);
+        this.arguments = arguments;
+        this.tail = tail;
+        this.maxDepth = maxDepth;
+
+        for (ExpressionNode argument : arguments) {
+            this.adopt(argument);
+        }
+    }
+
+    protected CallNode(CallNode node) {
+        this(node.callee, node.arguments, node.tail, node.maxDepth);
+    }
+
+    /* Each call nests a few execute methods on the Java stack, which can run out before maxDepth calls */
+    protected Object call(FunctionNode function, Frame frame) {
+        if (this.tail) {
+            return function.tailCall(frame, this.arguments);
+        }
+
+        if (frame.depth == this.maxDepth) {
+            throw KaoriError.StackOverflowError(this.maxDepth);
+        }
+
+        try {
+            return function.call(frame, this.arguments);
+        } catch (StackOverflowError error) {
+            throw KaoriError.StackOverflowError();
+        }
+    }
+
+    @Override
+    protected void replaceChild(Node child, Node replacement) {
+        if (this.callee == child) {
+            this.callee = (ExpressionNode) replacement;
+            return;
+        }
+
+        for (int i = 0; i < this.arguments.length; i++) {
+            if (this.arguments[i] == child) {
+                this.arguments[i] = (ExpressionNode) replacement;
+            }
+        }
+    }
+
+    public static final class Uninitialized extends CallNode {
+        public Uninitialized(ExpressionNode callee, ExpressionNode[] arguments, boolean tail, int maxDepth) {
+            super(callee, arguments, tail, maxDepth);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            FunctionNode function = (FunctionNode) this.callee.execute(frame);
+
+            this.replace(new Cached(this, function));
+
+            return this.call(function, frame);
+        }
+    }
+
+    public static final class Cached extends CallNode {
+        private final FunctionNode function;
+
+        private Cached(CallNode node, FunctionNode function) {
+            super(node);
+            this.function = function;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object target = this.callee.execute(frame);
+
+            if (target == this.function) {
+                return this.call(this.function, frame);
+            }
+
+            this.replace(new Generic(this));
+
+            return this.call((FunctionNode) target, frame);
+        }
+    }
+
+    public static final class Generic extends CallNode {
+        private Generic(CallNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.call((FunctionNode) this.callee.execute(frame), frame);
+        }
+    }
+}
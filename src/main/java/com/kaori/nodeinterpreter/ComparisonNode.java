@@ -0,0 +1,97 @@
+package com.kaori.nodeinterpreter;
+
+import com.kaori.compiler.syntax.ExpressionAST;
+
+/* >, >=, < and <= */
+public abstract class ComparisonNode extends BinaryNode {
+    protected ComparisonNode(ExpressionAST.BinaryOperator operator, int line, ExpressionNode left,
+            ExpressionNode right) {
+        super(operator, line, left, right);
+    }
+
+    protected ComparisonNode(ComparisonNode node) {
+        super(node);
+    }
+
+    protected boolean evaluate(double left, double right) {
+        return switch (this.operator) {
+            case GREATER -> left > right;
+            case GREATER_EQUAL -> left >= right;
+            case LESS -> left < right;
+            case LESS_EQUAL -> left <= right;
+            default -> throw new IllegalStateException("Unhandled comparison operator: " + this.operator);
+        };
+    }
+
+    @Override
+    protected Object evaluate(Object left, Object right) {
+        return this.evaluate((double) (Double) left, (double) (Double) right);
+    }
+
+    public static final class Uninitialized extends ComparisonNode {
+        public Uninitialized(ExpressionAST.BinaryOperator operator, int line, ExpressionNode left,
+                ExpressionNode right) {
+            super(operator, line, left, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object left = this.left.execute(frame);
+            Object right = this.right.execute(frame);
+
+            if (left instanceof Double && right instanceof Double) {
+                return this.replace(new DoubleComparison(this)).evaluate(left, right);
+            }
+
+            return this.replace(new Generic(this)).evaluate(left, right);
+        }
+    }
+
+    public static final class DoubleComparison extends ComparisonNode {
+        private DoubleComparison(ComparisonNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            try {
+                return this.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                return error.result();
+            }
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) throws UnexpectedResultException {
+            double left;
+            double right;
+
+            try {
+                left = this.left.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                Object result = this.replace(new Generic(this)).evaluate(error.result(), this.right.execute(frame));
+
+                return expectBoolean(result);
+            }
+
+            try {
+                right = this.right.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                return expectBoolean(this.replace(new Generic(this)).evaluate(left, error.result()));
+            }
+
+            return this.evaluate(left, right);
+        }
+    }
+
+    public static final class Generic extends ComparisonNode {
+        private Generic(ComparisonNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.evaluate(this.left.execute(frame), this.right.execute(frame));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.kaori.nodeinterpreter;
+
+public final class DeclareFunctionNode extends StatementNode {
+    private final int slot;
+    private final FunctionNode function;
+
+    public DeclareFunctionNode(int slot, FunctionNode function) {
+        this.slot = slot;
+        this.function = this.adopt(function);
+    }
+
+    @Override
+    public void execute(Frame frame) {
+        frame.set(this.slot, this.function);
+    }
+}
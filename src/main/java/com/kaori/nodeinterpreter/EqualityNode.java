@@ -0,0 +1,132 @@
+package com.kaori.nodeinterpreter;
+
+import com.kaori.compiler.syntax.ExpressionAST;
+
+/* == and !=, with Double.equals semantics so NaN == NaN and 0.0 != -0.0 */
+public abstract class EqualityNode extends BinaryNode {
+    protected EqualityNode(ExpressionAST.BinaryOperator operator, int line, ExpressionNode left,
+            ExpressionNode right) {
+        super(operator, line, left, right);
+    }
+
+    protected EqualityNode(EqualityNode node) {
+        super(node);
+    }
+
+    protected boolean result(boolean equal) {
+        return this.operator == ExpressionAST.BinaryOperator.EQUAL ? equal : !equal;
+    }
+
+    @Override
+    protected Object evaluate(Object left, Object right) {
+        return this.result(left.equals(right));
+    }
+
+    public static final class Uninitialized extends EqualityNode {
+        public Uninitialized(ExpressionAST.BinaryOperator operator, int line, ExpressionNode left,
+                ExpressionNode right) {
+            super(operator, line, left, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object left = this.left.execute(frame);
+            Object right = this.right.execute(frame);
+
+            if (left instanceof Double && right instanceof Double) {
+                return this.replace(new DoubleEquality(this)).evaluate(left, right);
+            }
+
+            if (left instanceof Boolean && right instanceof Boolean) {
+                return this.replace(new BooleanEquality(this)).evaluate(left, right);
+            }
+
+            return this.replace(new Generic(this)).evaluate(left, right);
+        }
+    }
+
+    public static final class DoubleEquality extends EqualityNode {
+        private DoubleEquality(EqualityNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            try {
+                return this.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                return error.result();
+            }
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) throws UnexpectedResultException {
+            double left;
+            double right;
+
+            try {
+                left = this.left.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                Object result = this.replace(new Generic(this)).evaluate(error.result(), this.right.execute(frame));
+
+                return expectBoolean(result);
+            }
+
+            try {
+                right = this.right.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                return expectBoolean(this.replace(new Generic(this)).evaluate(left, error.result()));
+            }
+
+            return this.result(Double.doubleToLongBits(left) == Double.doubleToLongBits(right));
+        }
+    }
+
+    public static final class BooleanEquality extends EqualityNode {
+        private BooleanEquality(EqualityNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            try {
+                return this.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                return error.result();
+            }
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) throws UnexpectedResultException {
+            boolean left;
+            boolean right;
+
+            try {
+                left = this.left.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                Object result = this.replace(new Generic(this)).evaluate(error.result(), this.right.execute(frame));
+
+                return expectBoolean(result);
+            }
+
+            try {
+                right = this.right.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                return expectBoolean(this.replace(new Generic(this)).evaluate(left, error.result()));
+            }
+
+            return this.result(left == right);
+        }
+    }
+
+    public static final class Generic extends EqualityNode {
+        private Generic(EqualityNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.evaluate(this.left.execute(frame), this.right.execute(frame));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.kaori.nodeinterpreter;
+
+public abstract class ExpressionNode extends Node {
+    public abstract Object execute(Frame frame);
+
+    public double executeDouble(Frame frame) throws UnexpectedResultException {
+        return expectDouble(this.execute(frame));
+    }
+
+    public boolean executeBoolean(Frame frame) throws UnexpectedResultException {
+        return expectBoolean(this.execute(frame));
+    }
+
+    /* Used when the result is discarded, so specialized nodes can skip boxing it */
+    public void executeVoid(Frame frame) {
+        this.execute(frame);
+    }
+
+    protected static double expectDouble(Object value) throws UnexpectedResultException {
+        if (value instanceof Double number) {
+            return number;
+        }
+
+        throw new UnexpectedResultException(value);
+    }
+
+    protected static boolean expectBoolean(Object value) throws UnexpectedResultException {
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+
+        throw new UnexpectedResultException(value);
+    }
+}
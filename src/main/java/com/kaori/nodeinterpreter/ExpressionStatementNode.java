@@ -0,0 +1,19 @@
+package com.kaori.nodeinterpreter;
+
+public final class ExpressionStatementNode extends StatementNode {
+    private ExpressionNode expression;
+
+    public ExpressionStatementNode(ExpressionNode expression) {
+        this.expression = this.adopt(expression);
+    }
+
+    @Override
+    protected void replaceChild(Node child, Node replacement) {
+        this.expression = (ExpressionNode) replacement;
+    }
+
+    @Override
+    public void execute(Frame frame) {
+        this.expression.executeVoid(frame);
+    }
+}
@@ -0,0 +1,65 @@
+package com.kaori.nodeinterpreter;
+
+/*
+ * Slots of one function call, or of the top level. Numbers and booleans are
+ * kept unboxed in values, everything else in references, and tags records
+ * which lane currently holds the slot
+ */
+public final class Frame {
+    static final byte EMPTY = 0;
+    static final byte DOUBLE = 1;
+    static final byte BOOLEAN = 2;
+    static final byte OBJECT = 3;
+
+    final Frame global;
+    /* calls in progress when this frame runs, 0 for the top level */
+    final int depth;
+    final double[] values;
+    final Object[] references;
+    final byte[] tags;
+    /* call left behind by a call in tail position, run once this frame's body is done */
+    FunctionNode tailFunction;
+    Frame tailFrame;
+
+    Frame(int size, Frame global, int depth) {
+        this.global = global == null ? this : global;
+        this.depth = depth;
+        this.values = new double[size];
+        this.references = new Object[size];
+        this.tags = new byte[size];
+        this.tailFunction = null;
+        this.tailFrame = null;
+    }
+
+    Object get(int slot) {
+        return switch (this.tags[slot]) {
+            case DOUBLE -> this.values[slot];
+            case BOOLEAN -> this.values[slot] != 0;
+            case OBJECT -> this.references[slot];
+            default -> null;
+        };
+    }
+
+    void set(int slot, Object value) {
+        if (value instanceof Double number) {
+            this.setDouble(slot, number);
+        } else if (value instanceof Boolean bool) {
+            this.setBoolean(slot, bool);
+        } else {
+            this.references[slot] = value;
+            this.tags[slot] = value == null ? EMPTY : OBJECT;
+        }
+    }
+
+    void setDouble(int slot, double value) {
+        this.values[slot] = value;
+        this.references[slot] = null;
+        this.tags[slot] = DOUBLE;
+    }
+
+    void setBoolean(int slot, boolean value) {
+        this.values[slot] = value ? 1 : 0;
+        this.references[slot] = null;
+        this.tags[slot] = BOOLEAN;
+    }
+}
@@ -0,0 +1,78 @@
+package com.kaori.nodeinterpreter;
+
+/*
+ * Root of a function body, and the value stored in the slot of its name.
+ * Parameters take the first slots of the callee frame, missing arguments
+ * are filled by evaluating the parameter default inside that frame
+ */
+public final class FunctionNode extends Node {
+    private final String name;
+    private final ExpressionNode[] defaults;
+    private final BlockNode body;
+    private final int frameSize;
+
+    public FunctionNode(String name, ExpressionNode[] defaults, BlockNode body, int frameSize) {
+        this.name = name;
+        this.defaults = defaults;
+        this.body = this.adopt(body);
+        this.frameSize = frameSize;
+
+        for (ExpressionNode expression : defaults) {
+            this.adopt(expression);
+        }
+    }
+
+    @Override
+    protected void replaceChild(Node child, Node replacement) {
+        for (int i = 0; i < this.defaults.length; i++) {
+            if (this.defaults[i] == child) {
+                this.defaults[i] = (ExpressionNode) replacement;
+            }
+        }
+    }
+
+    /* Runs the call and then every tail call it leaves behind, all on this Java frame */
+    public Object call(Frame caller, ExpressionNode[] arguments) {
+        FunctionNode function = this;
+        Frame frame = this.enter(caller, arguments, caller.depth + 1);
+
+        while (function != null) {
+            function.body.execute(frame);
+
+            function = frame.tailFunction;
+            frame = frame.tailFrame;
+        }
+
+        return null;
+    }
+
+    /*
+     * Only prepares the callee frame, the call running in caller picks it up
+     * once its body is done, so the callee takes the depth of the caller
+     */
+    public Object tailCall(Frame caller, ExpressionNode[] arguments) {
+        caller.tailFrame = this.enter(caller, arguments, caller.depth);
+        caller.tailFunction = this;
+
+        return null;
+    }
+
+    private Frame enter(Frame caller, ExpressionNode[] arguments, int depth) {
+        Frame frame = new Frame(this.frameSize, caller.global, depth);
+
+        for (int i = 0; i < this.defaults.length; i++) {
+            if (i < arguments.length) {
+                frame.set(i, arguments[i].execute(caller));
+            } else {
+                frame.set(i, this.defaults[i].execute(frame));
+            }
+        }
+
+        return frame;
+    }
+
+    @Override
+    public String toString() {
+        return "<function " + this.name + ">";
+    }
+}
@@ -0,0 +1,27 @@
+package com.kaori.nodeinterpreter;
+
+public final class IfNode extends StatementNode {
+    private ExpressionNode condition;
+    private final StatementNode thenBranch;
+    private final StatementNode elseBranch;
+
+    public IfNode(ExpressionNode condition, StatementNode thenBranch, StatementNode elseBranch) {
+        this.condition = this.adopt(condition);
+        this.thenBranch = this.adopt(thenBranch);
+        this.elseBranch = this.adopt(elseBranch);
+    }
+
+    @Override
+    protected void replaceChild(Node child, Node replacement) {
+        this.condition = (ExpressionNode) replacement;
+    }
+
+    @Override
+    public void execute(Frame frame) {
+        if (condition(this.condition, frame)) {
+            this.thenBranch.execute(frame);
+        } else if (this.elseBranch != null) {
+            this.elseBranch.execute(frame);
+        }
+    }
+}
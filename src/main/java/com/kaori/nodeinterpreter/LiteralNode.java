@@ -0,0 +1,67 @@
+package com.kaori.nodeinterpreter;
+
+/* Literals know their value up front, so they are built already specialized */
+public abstract class LiteralNode extends ExpressionNode {
+    public static ExpressionNode of(Object value) {
+        if (value instanceof Double number) {
+            return new DoubleLiteral(number);
+        }
+
+        if (value instanceof Boolean bool) {
+            return new BooleanLiteral(bool);
+        }
+
+        return new ObjectLiteral(value);
+    }
+
+    public static final class DoubleLiteral extends LiteralNode {
+        private final double value;
+        private final Double boxed;
+
+        private DoubleLiteral(double value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.boxed;
+        }
+
+        @Override
+        public double executeDouble(Frame frame) {
+            return this.value;
+        }
+    }
+
+    public static final class BooleanLiteral extends LiteralNode {
+        private final boolean value;
+
+        private BooleanLiteral(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) {
+            return this.value;
+        }
+    }
+
+    public static final class ObjectLiteral extends LiteralNode {
+        private final Object value;
+
+        private ObjectLiteral(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.value;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.kaori.nodeinterpreter;
+
+import com.kaori.compiler.syntax.ExpressionAST;
+
+/* && and ||, the right operand only runs when the left one doesn't decide the result */
+public abstract class LogicalNode extends BinaryNode {
+    protected LogicalNode(ExpressionAST.BinaryOperator operator, int line, ExpressionNode left,
+            ExpressionNode right) {
+        super(operator, line, left, right);
+    }
+
+    protected LogicalNode(LogicalNode node) {
+        super(node);
+    }
+
+    /* Whether left alone is the result, false for && and true for || */
+    protected boolean decides(boolean left) {
+        return switch (this.operator) {
+            case AND -> !left;
+            case OR -> left;
+            default -> throw new IllegalStateException("Unhandled logical operator: " + this.operator);
+        };
+    }
+
+    /* Finishes the evaluation once the left operand is known */
+    protected Object evaluate(Object left, Frame frame) {
+        return this.decides((Boolean) left) ? left : this.right.execute(frame);
+    }
+
+    @Override
+    protected Object evaluate(Object left, Object right) {
+        return this.decides((Boolean) left) ? left : right;
+    }
+
+    public static final class Uninitialized extends LogicalNode {
+        public Uninitialized(ExpressionAST.BinaryOperator operator, int line, ExpressionNode left,
+                ExpressionNode right) {
+            super(operator, line, left, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object left = this.left.execute(frame);
+
+            if (left instanceof Boolean) {
+                return this.replace(new BooleanLogical(this)).evaluate(left, frame);
+            }
+
+            return this.replace(new Generic(this)).evaluate(left, frame);
+        }
+    }
+
+    public static final class BooleanLogical extends LogicalNode {
+        private BooleanLogical(LogicalNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            try {
+                return this.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                return error.result();
+            }
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) throws UnexpectedResultException {
+            boolean left;
+
+            try {
+                left = this.left.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                return expectBoolean(this.replace(new Generic(this)).evaluate(error.result(), frame));
+            }
+
+            if (this.decides(left)) {
+                return left;
+            }
+
+            try {
+                return this.right.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                this.replace(new Generic(this));
+
+                return expectBoolean(error.result());
+            }
+        }
+    }
+
+    public static final class Generic extends LogicalNode {
+        private Generic(LogicalNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.evaluate(this.left.execute(frame), frame);
+        }
+    }
+}
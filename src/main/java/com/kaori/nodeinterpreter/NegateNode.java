@@ -0,0 +1,64 @@
+package com.kaori.nodeinterpreter;
+
+public abstract class NegateNode extends UnaryNode {
+    protected NegateNode(ExpressionNode operand) {
+        super(operand);
+    }
+
+    @Override
+    protected Object evaluate(Object operand) {
+        return -(Double) operand;
+    }
+
+    public static final class Uninitialized extends NegateNode {
+        public Uninitialized(ExpressionNode operand) {
+            super(operand);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object operand = this.operand.execute(frame);
+
+            if (operand instanceof Double) {
+                return this.replace(new DoubleNegate(this.operand)).evaluate(operand);
+            }
+
+            return this.replace(new Generic(this.operand)).evaluate(operand);
+        }
+    }
+
+    public static final class DoubleNegate extends NegateNode {
+        private DoubleNegate(ExpressionNode operand) {
+            super(operand);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            try {
+                return this.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                return error.result();
+            }
+        }
+
+        @Override
+        public double executeDouble(Frame frame) throws UnexpectedResultException {
+            try {
+                return -this.operand.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                return expectDouble(this.replace(new Generic(this.operand)).evaluate(error.result()));
+            }
+        }
+    }
+
+    public static final class Generic extends NegateNode {
+        private Generic(ExpressionNode operand) {
+            super(operand);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.evaluate(this.operand.execute(frame));
+        }
+    }
+}
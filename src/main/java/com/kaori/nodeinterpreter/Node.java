@@ -0,0 +1,29 @@
+package com.kaori.nodeinterpreter;
+
+/*
+ * Base of the executable tree. A node that learns what kind of values flow
+ * through it replaces itself in its parent with a version specialized for
+ * them, so later executions skip the checks and the boxing
+ */
+public abstract class Node {
+    private Node parent;
+
+    protected final <T extends Node> T adopt(T child) {
+        if (child != null) {
+            ((Node) child).parent = this;
+        }
+
+        return child;
+    }
+
+    protected final <T extends Node> T replace(T replacement) {
+        this.parent.replaceChild(this, replacement);
+
+        return this.parent.adopt(replacement);
+    }
+
+    /* Nodes with children that can rewrite themselves swap them here */
+    protected void replaceChild(Node child, Node replacement) {
+        throw new IllegalStateException("Unhandled child replacement in " + this.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,218 @@
+package com.kaori.nodeinterpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.kaori.compiler.Visitor;
+import com.kaori.compiler.syntax.DeclarationAST;
+import com.kaori.compiler.syntax.ExpressionAST;
+import com.kaori.compiler.syntax.StatementAST;
+import com.kaori.runtime.CallStack;
+
+/*
+ * Builds a tree of self-specializing nodes from the resolved AST and runs
+ * it. Every node starts uninitialized and rewrites itself to a double,
+ * boolean or generic version the first time it executes, so unlike the
+ * slow interpreter there is no instanceof dispatch or casting per visit
+ */
+public class NodeInterpreter extends Visitor<ExpressionNode> {
+    private StatementNode statement;
+    private int declared;
+    private int frameSize;
+    private final int maxDepth;
+
+    public NodeInterpreter(List<DeclarationAST> declarations) {
+        this(declarations, CallStack.DEFAULT_MAX_DEPTH);
+    }
+
+    /* maxDepth is the number of calls that can be in progress at once */
+    public NodeInterpreter(List<DeclarationAST> declarations, int maxDepth) {
+        super(declarations);
+        this.statement = null;
+        this.declared = 0;
+        this.frameSize = 0;
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public void run() {
+        BlockNode root = this.block(this.declarations);
+        Frame frame = new Frame(this.frameSize, null, 0);
+
+        root.execute(frame);
+    }
+
+    /* Function declarations come first, same as Visitor.visitDeclarations */
+    private BlockNode block(List<DeclarationAST> declarations) {
+        List<StatementNode> statements = new ArrayList<>();
+
+        for (DeclarationAST declaration : declarations) {
+            if (declaration instanceof DeclarationAST.Function function) {
+                this.line = declaration.line();
+                this.visitFunctionDeclaration(function);
+                statements.add(this.statement);
+            }
+        }
+
+        for (DeclarationAST declaration : declarations) {
+            if (!(declaration instanceof DeclarationAST.Function)) {
+                this.line = declaration.line();
+                this.visit(declaration);
+                statements.add(this.statement);
+            }
+        }
+
+        return new BlockNode(statements.toArray(new StatementNode[0]));
+    }
+
+    private int declare() {
+        int slot = this.declared;
+
+        this.declared++;
+        this.frameSize = Math.max(this.frameSize, this.declared);
+
+        return slot;
+    }
+
+    private StatementNode statement(StatementAST statement) {
+        this.visit(statement);
+
+        return this.statement;
+    }
+
+    /* Expressions */
+    @Override
+    public ExpressionNode visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
+        ExpressionNode left = this.visit(expression.left());
+        ExpressionNode right = this.visit(expression.right());
+        ExpressionAST.BinaryOperator operator = expression.operator();
+
+        return switch (operator) {
+            case PLUS, MINUS, MULTIPLY, DIVIDE, MODULO ->
+                new ArithmeticNode.Uninitialized(operator, this.line, left, right);
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL ->
+                new ComparisonNode.Uninitialized(operator, this.line, left, right);
+            case AND, OR -> new LogicalNode.Uninitialized(operator, this.line, left, right);
+            case EQUAL, NOT_EQUAL -> new EqualityNode.Uninitialized(operator, this.line, left, right);
+        };
+    }
+
+    @Override
+    public ExpressionNode visitUnaryExpression(ExpressionAST.UnaryExpression expression) {
+        ExpressionNode operand = this.visit(expression.left());
+
+        return switch (expression.operator()) {
+            case NEGATE -> new NegateNode.Uninitialized(operand);
+            case NOT -> new NotNode.Uninitialized(operand);
+        };
+    }
+
+    @Override
+    public ExpressionNode visitAssign(ExpressionAST.Assign expression) {
+        ExpressionNode value = this.visit(expression.right());
+        ExpressionAST.Identifier identifier = expression.left();
+
+        return new WriteNode.Uninitialized(identifier.offset(), !identifier.local(), value);
+    }
+
+    @Override
+    public ExpressionNode visitLiteral(ExpressionAST.Literal expression) {
+        return LiteralNode.of(expression.value());
+    }
+
+    @Override
+    public ExpressionNode visitIdentifier(ExpressionAST.Identifier expression) {
+        return new ReadNode.Uninitialized(expression.name(), expression.offset(), !expression.local(), this.line);
+    }
+
+    @Override
+    public ExpressionNode visitFunctionCall(ExpressionAST.FunctionCall expression) {
+        ExpressionNode callee = this.visit(expression.callee());
+        List<ExpressionAST> arguments = expression.arguments();
+        ExpressionNode[] nodes = new ExpressionNode[arguments.size()];
+
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = this.visit(arguments.get(i));
+        }
+
+        return new CallNode.Uninitialized(callee, nodes, expression.tail(), this.maxDepth);
+    }
+
+    /* Statements */
+    @Override
+    public void visitPrintStatement(StatementAST.Print statement) {
+        this.statement = new PrintNode(this.visit(statement.expression()));
+    }
+
+    @Override
+    public void visitBlockStatement(StatementAST.Block statement) {
+        int declared = this.declared;
+
+        this.statement = this.block(statement.declarations());
+
+        this.declared = declared;
+    }
+
+    @Override
+    public void visitExpressionStatement(StatementAST.Expr statement) {
+        this.statement = new ExpressionStatementNode(this.visit(statement.expression()));
+    }
+
+    @Override
+    public void visitIfStatement(StatementAST.If statement) {
+        ExpressionNode condition = this.visit(statement.condition());
+        StatementNode thenBranch = this.statement(statement.thenBranch());
+        StatementNode elseBranch = statement.elseBranch() == null ? null : this.statement(statement.elseBranch());
+
+        this.statement = new IfNode(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public void visitWhileLoopStatement(StatementAST.WhileLoop statement) {
+        ExpressionNode condition = this.visit(statement.condition());
+        StatementNode body = this.statement(statement.block());
+
+        this.statement = new WhileNode(condition, body);
+    }
+
+    /* Declarations */
+    @Override
+    public void visitVariableDeclaration(DeclarationAST.Variable declaration) {
+        ExpressionNode value = this.visit(declaration.right());
+        int slot = this.declare();
+
+        this.statement = new ExpressionStatementNode(new WriteNode.Uninitialized(slot, false, value));
+    }
+
+    /* The body gets its own frame, numbered from the first parameter */
+    @Override
+    public void visitFunctionDeclaration(DeclarationAST.Function declaration) {
+        int slot = this.declare();
+        int declared = this.declared;
+        int frameSize = this.frameSize;
+
+        this.declared = 0;
+        this.frameSize = 0;
+
+        List<DeclarationAST.Variable> parameters = declaration.parameters();
+        ExpressionNode[] defaults = new ExpressionNode[parameters.size()];
+
+        for (int i = 0; i < defaults.length; i++) {
+            defaults[i] = this.visit(parameters.get(i).right());
+            this.declare();
+        }
+
+        BlockNode body = this.block(declaration.block().declarations());
+        FunctionNode function = new FunctionNode(declaration.name().name(), defaults, body, this.frameSize);
+
+        this.declared = declared;
+        this.frameSize = frameSize;
+
+        this.statement = new DeclareFunctionNode(slot, function);
+    }
+
+    @Override
+    public void visitFunctionDefinition(DeclarationAST.Function declaration) {
+
+    }
+}
@@ -0,0 +1,64 @@
+package com.kaori.nodeinterpreter;
+
+public abstract class NotNode extends UnaryNode {
+    protected NotNode(ExpressionNode operand) {
+        super(operand);
+    }
+
+    @Override
+    protected Object evaluate(Object operand) {
+        return !(Boolean) operand;
+    }
+
+    public static final class Uninitialized extends NotNode {
+        public Uninitialized(ExpressionNode operand) {
+            super(operand);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object operand = this.operand.execute(frame);
+
+            if (operand instanceof Boolean) {
+                return this.replace(new BooleanNot(this.operand)).evaluate(operand);
+            }
+
+            return this.replace(new Generic(this.operand)).evaluate(operand);
+        }
+    }
+
+    public static final class BooleanNot extends NotNode {
+        private BooleanNot(ExpressionNode operand) {
+            super(operand);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            try {
+                return this.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                return error.result();
+            }
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) throws UnexpectedResultException {
+            try {
+                return !this.operand.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                return expectBoolean(this.replace(new Generic(this.operand)).evaluate(error.result()));
+            }
+        }
+    }
+
+    public static final class Generic extends NotNode {
+        private Generic(ExpressionNode operand) {
+            super(operand);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return this.evaluate(this.operand.execute(frame));
+        }
+    }
+}
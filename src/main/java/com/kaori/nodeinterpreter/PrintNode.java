@@ -0,0 +1,19 @@
+package com.kaori.nodeinterpreter;
+
+public final class PrintNode extends StatementNode {
+    private ExpressionNode expression;
+
+    public PrintNode(ExpressionNode expression) {
+        this.expression = this.adopt(expression);
+    }
+
+    @Override
+    protected void replaceChild(Node child, Node replacement) {
+        this.expression = (ExpressionNode) replacement;
+    }
+
+    @Override
+    public void execute(Frame frame) {
+        System.out.println(this.expression.execute(frame));
+    }
+}
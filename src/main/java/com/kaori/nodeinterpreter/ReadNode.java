@@ -0,0 +1,124 @@
+package com.kaori.nodeinterpreter;
+
+import com.kaori.error.KaoriError;
+
+/*
+ * Reads a variable slot. Starts uninitialized and specializes on the lane the
+ * slot holds the first time it runs, falling back to the generic read if a
+ * later execution finds something else there
+ */
+public abstract class ReadNode extends ExpressionNode {
+    protected final String name;
+    protected final int slot;
+    protected final boolean global;
+    protected final int line;
+
+    protected ReadNode(String name, int slot, boolean global, int line) {
+        this.name = name;
+        this.slot = slot;
+        this.global = global;
+        this.line = line;
+    }
+
+    protected ReadNode(ReadNode node) {
+        this(node.name, node.slot, node.global, node.line);
+    }
+
+    protected Frame frame(Frame frame) {
+        return this.global ? frame.global : frame;
+    }
+
+    protected Object generic(Frame frame) {
+        return this.replace(new Generic(this)).execute(frame);
+    }
+
+    public static final class Uninitialized extends ReadNode {
+        public Uninitialized(String name, int slot, boolean global, int line) {
+            super(name, slot, global, line);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            ReadNode specialized = switch (this.frame(frame).tags[this.slot]) {
+                case Frame.DOUBLE -> new DoubleRead(this);
+                case Frame.BOOLEAN -> new BooleanRead(this);
+                default -> new Generic(this);
+            };
+
+            return this.replace(specialized).execute(frame);
+        }
+    }
+
+    public static final class DoubleRead extends ReadNode {
+        private DoubleRead(ReadNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Frame target = this.frame(frame);
+
+            if (target.tags[this.slot] == Frame.DOUBLE) {
+                return target.values[this.slot];
+            }
+
+            return this.generic(frame);
+        }
+
+        @Override
+        public double executeDouble(Frame frame) throws UnexpectedResultException {
+            Frame target = this.frame(frame);
+
+            if (target.tags[this.slot] == Frame.DOUBLE) {
+                return target.values[this.slot];
+            }
+
+            return expectDouble(this.generic(frame));
+        }
+    }
+
+    public static final class BooleanRead extends ReadNode {
+        private BooleanRead(ReadNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Frame target = this.frame(frame);
+
+            if (target.tags[this.slot] == Frame.BOOLEAN) {
+                return target.values[this.slot] != 0;
+            }
+
+            return this.generic(frame);
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) throws UnexpectedResultException {
+            Frame target = this.frame(frame);
+
+            if (target.tags[this.slot] == Frame.BOOLEAN) {
+                return target.values[this.slot] != 0;
+            }
+
+            return expectBoolean(this.generic(frame));
+        }
+    }
+
+    public static final class Generic extends ReadNode {
+        private Generic(ReadNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object value = this.frame(frame).get(this.slot);
+
+            if (value == null) {
+                throw KaoriError.RuntimeError(this.name + " is not defined", this.line);
+            }
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.kaori.nodeinterpreter;
+
+public abstract class StatementNode extends Node {
+    public abstract void execute(Frame frame);
+
+    protected static boolean condition(ExpressionNode condition, Frame frame) {
+        try {
+            return condition.executeBoolean(frame);
+        } catch (UnexpectedResultException error) {
+            return (Boolean) error.result();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.kaori.nodeinterpreter;
+
+public abstract class UnaryNode extends ExpressionNode {
+    protected ExpressionNode operand;
+
+    protected UnaryNode(ExpressionNode operand) {
+        this.operand = this.adopt(operand);
+    }
+
+    @Override
+    protected void replaceChild(Node child, Node replacement) {
+        this.operand = (ExpressionNode) replacement;
+    }
+
+    protected abstract Object evaluate(Object operand);
+}
@@ -0,0 +1,21 @@
+package com.kaori.nodeinterpreter;
+
+/*
+ * Thrown by a specialized execute method when the value it produced does not
+ * fit its return type, the caller then rewrites itself to a more generic
+ * version and carries on with the boxed result
+ */
+public class UnexpectedResultException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final Object result;
+
+    public UnexpectedResultException(Object result) {
+        super(null, null, false, false);
+        this.result = result;
+    }
+
+    public Object result() {
+        return this.result;
+    }
+}
@@ -0,0 +1,23 @@
+package com.kaori.nodeinterpreter;
+
+public final class WhileNode extends StatementNode {
+    private ExpressionNode condition;
+    private final StatementNode body;
+
+    public WhileNode(ExpressionNode condition, StatementNode body) {
+        this.condition = this.adopt(condition);
+        this.body = this.adopt(body);
+    }
+
+    @Override
+    protected void replaceChild(Node child, Node replacement) {
+        this.condition = (ExpressionNode) replacement;
+    }
+
+    @Override
+    public void execute(Frame frame) {
+        while (condition(this.condition, frame)) {
+            this.body.execute(frame);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.kaori.nodeinterpreter;
+
+/*
+ * Stores the value of an expression into a variable slot and evaluates to it,
+ * used for both declarations and assignments. Specializes on the kind of the
+ * first value stored so numbers and booleans never get boxed
+ */
+public abstract class WriteNode extends ExpressionNode {
+    protected final int slot;
+    protected final boolean global;
+    protected ExpressionNode value;
+
+    protected WriteNode(int slot, boolean global, ExpressionNode value) {
+        this.slot = slot;
+        this.global = global;
+        this.value = this.adopt(value);
+    }
+
+    protected WriteNode(WriteNode node) {
+        this(node.slot, node.global, node.value);
+    }
+
+    @Override
+    protected void replaceChild(Node child, Node replacement) {
+        this.value = (ExpressionNode) replacement;
+    }
+
+    protected Frame frame(Frame frame) {
+        return this.global ? frame.global : frame;
+    }
+
+    /* Rewrites to the generic write and stores a value the specialized version could not */
+    protected Object generic(Frame frame, Object result) {
+        this.replace(new Generic(this));
+        this.frame(frame).set(this.slot, result);
+
+        return result;
+    }
+
+    public static final class Uninitialized extends WriteNode {
+        public Uninitialized(int slot, boolean global, ExpressionNode value) {
+            super(slot, global, value);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object result = this.value.execute(frame);
+
+            if (result instanceof Double) {
+                this.replace(new DoubleWrite(this));
+            } else if (result instanceof Boolean) {
+                this.replace(new BooleanWrite(this));
+            } else {
+                this.replace(new Generic(this));
+            }
+
+            this.frame(frame).set(this.slot, result);
+
+            return result;
+        }
+    }
+
+    public static final class DoubleWrite extends WriteNode {
+        private DoubleWrite(WriteNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            try {
+                return this.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                return error.result();
+            }
+        }
+
+        @Override
+        public double executeDouble(Frame frame) throws UnexpectedResultException {
+            double result;
+
+            try {
+                result = this.value.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                this.generic(frame, error.result());
+                throw error;
+            }
+
+            this.frame(frame).setDouble(this.slot, result);
+
+            return result;
+        }
+
+        @Override
+        public void executeVoid(Frame frame) {
+            try {
+                this.executeDouble(frame);
+            } catch (UnexpectedResultException error) {
+                /* already stored by the generic write */
+            }
+        }
+    }
+
+    public static final class BooleanWrite extends WriteNode {
+        private BooleanWrite(WriteNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            try {
+                return this.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                return error.result();
+            }
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) throws UnexpectedResultException {
+            boolean result;
+
+            try {
+                result = this.value.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                this.generic(frame, error.result());
+                throw error;
+            }
+
+            this.frame(frame).setBoolean(this.slot, result);
+
+            return result;
+        }
+
+        @Override
+        public void executeVoid(Frame frame) {
+            try {
+                this.executeBoolean(frame);
+            } catch (UnexpectedResultException error) {
+                /* already stored by the generic write */
+            }
+        }
+    }
+
+    public static final class Generic extends WriteNode {
+        private Generic(WriteNode node) {
+            super(node);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object result = this.value.execute(frame);
+
+            this.frame(frame).set(this.slot, result);
+
+            return result;
+        }
+    }
+}
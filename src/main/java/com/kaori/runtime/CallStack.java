@@ -1,85 +1,320 @@
 package com.kaori.runtime;
 
-import java.util.Stack;
+import java.util.Arrays;
 
+import com.kaori.error.KaoriError;
+
+/*
+ * Slots of the frames in progress, split into segments that each hold a
+ * value lane and a reference lane. A frame never straddles two segments: a
+ * call whose frame doesn't fit in the rest of the current segment starts a
+ * new one, so growing never copies the frames below. Frame pointers and the
+ * index are relative to the frame's segment, and globals live in segment 0,
+ * which grows in place like a frame of unknown size does. Segments above
+ * the one after the current are dropped as calls return, so the memory of
+ * a deep recursion goes back once it unwinds.
+ *
+ * Frames of a known size come from the bytecode, which stores locals to
+ * slots laid out at compile time instead of declaring them, so the next
+ * frame starts frameSize slots past the frame pointer. Frames of unknown
+ * size, from the Interpreter, end wherever their declarations got to
+ */
 public class CallStack {
-    public final Stack<Object> stack;
-    private final Stack<Integer> scopes;
-    private final Stack<Integer> framePointers;
+    public static final int DEFAULT_MAX_DEPTH = 100_000;
+    private static final int SEGMENT_SIZE = 4096;
+
+    private double[][] valueSegments;
+    private Object[][] referenceSegments;
+    private int segment;
+    /* lanes of the current segment and of segment 0 */
+    private double[] values;
+    private Object[] references;
+    private double[] globalValues;
+    private Object[] globalReferences;
+    /* scope starts and frame pointers, kept in plain int stacks so calls don't box */
+    private int[] scopes;
+    private int scopeCount;
+    private int[] framePointers;
+    /* scope count when each frame was entered, so a tail call can drop the scopes its caller opened */
+    private int[] frameScopes;
+    private int[] frameSegments;
+    /* index of the caller when each frame was entered, the frame may have started in another segment */
+    private int[] returnIndexes;
+    private int[] frameSizes;
+    private int frameCount;
     private int index;
+    private final int maxDepth;
 
     public CallStack() {
-        this.stack = new Stack<>();
-        this.scopes = new Stack<>();
-        this.framePointers = new Stack<>();
+        this(DEFAULT_MAX_DEPTH);
+    }
+
+    /* maxDepth is the number of calls that can be in progress at once */
+    public CallStack(int maxDepth) {
+        this.valueSegments = new double[4][];
+        this.referenceSegments = new Object[4][];
+        this.segment = 0;
+        this.scopes = new int[64];
+        this.scopeCount = 0;
+        this.framePointers = new int[64];
+        this.frameScopes = new int[64];
+        this.frameSegments = new int[64];
+        this.returnIndexes = new int[64];
+        this.frameSizes = new int[64];
+        this.frameCount = 0;
         this.index = 0;
+        this.maxDepth = maxDepth;
 
-        final int stackMaxSize = 1_000;
+        this.valueSegments[0] = new double[SEGMENT_SIZE];
+        this.referenceSegments[0] = new Object[SEGMENT_SIZE];
+        this.globalValues = this.valueSegments[0];
+        this.globalReferences = this.referenceSegments[0];
+        this.bind(0);
 
-        stack.setSize(stackMaxSize);
+        this.pushFrame(0, 0);
+    }
 
-        this.framePointers.push(0);
+    private void bind(int segment) {
+        this.segment = segment;
+        this.values = this.valueSegments[segment];
+        this.references = this.referenceSegments[segment];
     }
 
+    /* Makes room for one more slot in the current segment, only frames of unknown size and globals get here */
     private void updateIndex() {
         this.index++;
+
+        if (this.index == this.values.length) {
+            this.valueSegments[this.segment] = Arrays.copyOf(this.values, this.index * 2);
+            this.referenceSegments[this.segment] = Arrays.copyOf(this.references, this.index * 2);
+            this.bind(this.segment);
+
+            if (this.segment == 0) {
+                this.globalValues = this.values;
+                this.globalReferences = this.references;
+            }
+        }
     }
 
     public void declare(Object value) {
-        this.stack.set(index, value);
+        this.references[this.index] = value;
 
         this.updateIndex();
     }
 
     public void define(Object value, int offset, boolean local) {
         if (local) {
-            offset = framePointers.peek() + offset;
+            this.storeLocal(value, offset);
+        } else {
+            this.storeGlobal(value, offset);
         }
-
-        this.stack.set(offset, value);
     }
 
     public Object get(int offset, boolean local) {
-        if (local) {
-            offset = framePointers.peek() + offset;
-        }
-
-        return this.stack.get(offset);
+        return local ? this.loadLocal(offset) : this.loadGlobal(offset);
     }
 
     public Object loadLocal(int offset) {
-        offset = framePointers.peek() + offset;
+        offset = this.framePointers[this.frameCount - 1] + offset;
 
-        return this.stack.get(offset);
+        return this.references[offset];
     }
 
     public Object loadGlobal(int offset) {
-        return this.stack.get(offset);
+        return this.globalReferences[offset];
     }
 
     public void storeLocal(Object value, int offset) {
-        offset = framePointers.peek() + offset;
+        offset = this.framePointers[this.frameCount - 1] + offset;
 
-        this.stack.set(offset, value);
+        this.references[offset] = value;
     }
 
     public void storeGlobal(Object value, int offset) {
-        this.stack.set(offset, value);
+        this.globalReferences[offset] = value;
+    }
+
+    /*
+     * Unboxed value lane used by the VM for numbers and booleans, sharing the
+     * slot layout of the reference lane above
+     */
+    public void declareValue(double value) {
+        this.values[this.index] = value;
+
+        this.updateIndex();
+    }
+
+    public double loadLocalValue(int offset) {
+        offset = this.framePointers[this.frameCount - 1] + offset;
+
+        return this.values[offset];
+    }
+
+    public double loadGlobalValue(int offset) {
+        return this.globalValues[offset];
+    }
+
+    public void storeLocalValue(double value, int offset) {
+        offset = this.framePointers[this.frameCount - 1] + offset;
+
+        this.values[offset] = value;
+    }
+
+    public void storeGlobalValue(double value, int offset) {
+        this.globalValues[offset] = value;
+    }
+
+    /*
+     * Let the trace tier and threaded handlers address slots directly. The
+     * arrays change when a call moves to another segment or a segment
+     * grows, so they are read again after calls, returns and declarations
+     */
+    double[] values() {
+        return this.values;
+    }
+
+    double[] globalValues() {
+        return this.globalValues;
+    }
+
+    int framePointer() {
+        return this.framePointers[this.frameCount - 1];
+    }
+
+    /* Starts a frame at the current index of the current segment */
+    private void pushFrame(int frameSize, int returnIndex) {
+        if (this.frameCount > this.maxDepth) {
+            throw KaoriError.StackOverflowError(this.maxDepth);
+        }
+
+        if (this.frameCount == this.framePointers.length) {
+            this.framePointers = Arrays.copyOf(this.framePointers, this.frameCount * 2);
+            this.frameScopes = Arrays.copyOf(this.frameScopes, this.frameCount * 2);
+            this.frameSegments = Arrays.copyOf(this.frameSegments, this.frameCount * 2);
+            this.returnIndexes = Arrays.copyOf(this.returnIndexes, this.frameCount * 2);
+            this.frameSizes = Arrays.copyOf(this.frameSizes, this.frameCount * 2);
+        }
+
+        this.framePointers[this.frameCount] = this.index;
+        this.returnIndexes[this.frameCount] = returnIndex;
+        this.frameSizes[this.frameCount] = frameSize;
+        this.frameScopes[this.frameCount] = this.scopeCount;
+        this.frameSegments[this.frameCount] = this.segment;
+        this.frameCount++;
     }
 
+    /* Starts a frame of unknown size where the caller's ends, it grows its segment as it declares */
     public void enterFunction() {
-        this.framePointers.push(this.index);
+        int returnIndex = this.index;
+
+        this.index = this.end();
+        this.pushFrame(0, returnIndex);
+    }
+
+    /* Starts a frame of frameSize slots, in a new segment when the current one can't hold them */
+    public void enterFunction(int frameSize) {
+        int returnIndex = this.index;
+
+        this.index = this.end();
+
+        if (this.index + frameSize >= this.values.length) {
+            this.enterSegment(frameSize);
+        }
+
+        this.pushFrame(frameSize, returnIndex);
+    }
+
+    /* First slot past the current frame, whichever of its layout and its declarations reaches further */
+    private int end() {
+        return Math.max(this.index, this.framePointers[this.frameCount - 1] + this.frameSizes[this.frameCount - 1]);
+    }
+
+    /* The segment after the current one, reused when a previous call left it behind */
+    private void enterSegment(int frameSize) {
+        int next = this.segment + 1;
+
+        if (next == this.valueSegments.length) {
+            this.valueSegments = Arrays.copyOf(this.valueSegments, next * 2);
+            this.referenceSegments = Arrays.copyOf(this.referenceSegments, next * 2);
+        }
+
+        if (this.valueSegments[next] == null || this.valueSegments[next].length <= frameSize) {
+            int size = Math.max(SEGMENT_SIZE, frameSize + 1);
+
+            this.valueSegments[next] = new double[size];
+            this.referenceSegments[next] = new Object[size];
+        }
+
+        this.bind(next);
+        this.index = 0;
+    }
+
+    /* Empties the current frame so a tail call can use it for frameSize slots of its own */
+    public void reenterFunction(int frameSize) {
+        this.reserve(frameSize);
+        this.scopeCount = this.frameScopes[this.frameCount - 1];
+        this.index = this.framePointers[this.frameCount - 1];
+    }
+
+    /* Lays the current frame out over frameSize slots, the VM sizes the top level frame with it */
+    public void reserve(int frameSize) {
+        int framePointer = this.framePointers[this.frameCount - 1];
+
+        if (framePointer + frameSize >= this.values.length) {
+            this.valueSegments[this.segment] = Arrays.copyOf(this.values, framePointer + frameSize + 1);
+            this.referenceSegments[this.segment] = Arrays.copyOf(this.references, framePointer + frameSize + 1);
+            this.bind(this.segment);
+
+            if (this.segment == 0) {
+                this.globalValues = this.values;
+                this.globalReferences = this.references;
+            }
+        }
+
+        this.frameSizes[this.frameCount - 1] = frameSize;
     }
 
+    /* Declares an argument in both lanes, the callee's code knows which one it uses */
+    public void declareArgument(double value, Object reference) {
+        this.values[this.index] = value;
+        this.references[this.index] = reference;
+
+        this.updateIndex();
+    }
+
+    /* Whether the frame already has a value in slot offset */
+    public boolean declared(int offset) {
+        return this.index > this.framePointers[this.frameCount - 1] + offset;
+    }
+
+    /* Drops the segments the returning call no longer needs, keeping one spare for the next call */
     public void exitFunction() {
-        this.index = this.framePointers.pop();
+        this.frameCount--;
+        this.index = this.returnIndexes[this.frameCount];
+
+        int segment = this.frameSegments[this.frameCount - 1];
+
+        if (segment != this.segment) {
+            for (int i = segment + 2; i < this.valueSegments.length && this.valueSegments[i] != null; i++) {
+                this.valueSegments[i] = null;
+                this.referenceSegments[i] = null;
+            }
+
+            this.bind(segment);
+        }
     }
 
     public void enterScope() {
-        this.scopes.add(this.index);
+        if (this.scopeCount == this.scopes.length) {
+            this.scopes = Arrays.copyOf(this.scopes, this.scopeCount * 2);
+        }
+
+        this.scopes[this.scopeCount] = this.index;
+        this.scopeCount++;
     }
 
     public void exitScope() {
-        this.index = this.scopes.pop();
+        this.scopeCount--;
+        this.index = this.scopes[this.scopeCount];
     }
 }
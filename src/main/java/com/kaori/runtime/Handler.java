@@ -0,0 +1,10 @@
+package com.kaori.runtime;
+
+/*
+ * One instruction with its operands already decoded and bound, returns the
+ * index of the instruction that runs next
+ */
+@FunctionalInterface
+interface Handler {
+    int execute();
+}
@@ -1,129 +1,408 @@
 package com.kaori.runtime;
 
-import java.util.List;
-import java.util.Stack;
+import java.util.Arrays;
 
 import com.kaori.compiler.bytecode.Bytecode;
-import com.kaori.compiler.bytecode.Instruction;
+import com.kaori.compiler.bytecode.Function;
 import com.kaori.compiler.bytecode.Opcode;
 
 public class KaoriVM {
-    private final List<Instruction> instructions;
-    private final Stack<Object> stack;
+    private final int[] code;
+    private final Object[] constants;
+    private final double[] numbers;
+    private final Function[] functions;
+    private double[] values;
+    private Object[] references;
     private final CallStack callStack;
     private int index;
+    private int top;
+    /* return addresses of the calls in progress */
+    private int[] returns;
+    private int calls;
+
+    /* Trace tier, the arrays are indexed by loop header and stay null when tracing is off */
+    private final TraceSettings settings;
+    private final int[] counters;
+    private final Trace[] traces;
+    private final TraceStats stats;
+    private TraceRecorder recorder;
+    /* value lanes of the current frame's segment and of the globals, with the frame's offset in slots */
+    private double[] slots;
+    private double[] globals;
+    private int base;
 
     public KaoriVM(Bytecode bytecode) {
-        this.instructions = bytecode.instructions();
-        this.stack = new Stack<>();
-        this.callStack = new CallStack();
+        this(bytecode, null);
+    }
+
+    public KaoriVM(Bytecode bytecode, TraceSettings settings) {
+        this(bytecode, settings, CallStack.DEFAULT_MAX_DEPTH);
+    }
+
+    public KaoriVM(Bytecode bytecode, TraceSettings settings, int maxDepth) {
+        this.code = bytecode.code();
+        this.constants = bytecode.constants();
+        this.numbers = unboxed(this.constants);
+        this.functions = bytecode.functions();
+        this.values = new double[bytecode.maxStack()];
+        this.references = new Object[bytecode.maxStack()];
+        this.callStack = new CallStack(maxDepth);
         this.index = 0;
+        this.top = 0;
+        this.returns = new int[64];
+        this.calls = 0;
+
+        this.settings = settings;
+        this.counters = settings == null ? null : new int[this.code.length];
+        this.traces = settings == null ? null : new Trace[this.code.length];
+        this.stats = new TraceStats();
+        this.recorder = null;
+        this.callStack.reserve(bytecode.frameSize());
+        this.bind();
+    }
+
+    /* Calls and returns can move the frame to another array, handlers read it again after them */
+    private void bind() {
+        this.slots = this.callStack.values();
+        this.globals = this.callStack.globalValues();
+        this.base = this.callStack.framePointer();
+    }
+
+    public TraceStats traceStats() {
+        return this.stats;
+    }
+
+    /* Value lane view of the constant pool, uninitialized constants default to 0 */
+    private static double[] unboxed(Object[] constants) {
+        double[] numbers = new double[constants.length];
+
+        for (int i = 0; i < constants.length; i++) {
+            if (constants[i] instanceof Double number) {
+                numbers[i] = number;
+            } else if (constants[i] instanceof Boolean bool) {
+                numbers[i] = bool ? 1 : 0;
+            }
+        }
+
+        return numbers;
+    }
+
+    private static double bool(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    /* Keeps Double.equals semantics, so NaN == NaN and 0.0 != -0.0 */
+    private static boolean same(double left, double right) {
+        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+    }
+
+    private void push(double value) {
+        this.values[this.top++] = value;
     }
 
-    public void advance() {
-        this.index++;
+    private double pop() {
+        return this.values[--this.top];
     }
 
-    public void jumpTo(Object index) {
-        this.index = (Integer) index;
+    private void pushReference(Object value) {
+        this.references[this.top++] = value;
+    }
+
+    private Object popReference() {
+        return this.references[--this.top];
+    }
+
+    public void advance(int size) {
+        this.index += size;
+    }
+
+    public void jumpTo(int index) {
+        this.index = index;
+    }
+
+    /*
+     * Moves the arguments on top of the operand stack into a new frame and
+     * jumps to the function's prologue. Nothing is allocated unless the
+     * operand or return stacks have to grow, which only happens as the
+     * calls get deeper than ever before
+     */
+    private void call(int arguments, int returnAddress) {
+        if (this.calls == this.returns.length) {
+            this.returns = Arrays.copyOf(this.returns, this.calls * 2);
+        }
+
+        this.returns[this.calls] = returnAddress;
+        this.calls++;
+
+        this.invoke(arguments, false);
+    }
+
+    /* Same as call but the callee takes over the current frame and return address */
+    private void tailCall(int arguments) {
+        this.invoke(arguments, true);
+    }
+
+    private void invoke(int arguments, boolean tail) {
+        int base = this.top - arguments;
+        Function function = (Function) this.references[base - 1];
+
+        if (tail) {
+            this.callStack.reenterFunction(function.frameSize());
+        } else {
+            this.callStack.enterFunction(function.frameSize());
+        }
+
+        for (int i = 0; i < arguments; i++) {
+            this.callStack.declareArgument(this.values[base + i], this.references[base + i]);
+            this.references[base + i] = null;
+        }
+
+        this.top = base - 1;
+
+        if (this.top + function.maxStack() + 1 > this.values.length) {
+            int size = Math.max(this.values.length * 2, this.top + function.maxStack() + 1);
+
+            this.values = Arrays.copyOf(this.values, size);
+            this.references = Arrays.copyOf(this.references, size);
+        }
+
+        this.jumpTo(function.entry());
+    }
+
+    /* Functions have no return statement yet, so the result is always the default value */
+    private void ret() {
+        this.callStack.exitFunction();
+
+        this.values[this.top] = 0;
+        this.references[this.top] = null;
+        this.top++;
+
+        this.calls--;
+        this.jumpTo(this.returns[this.calls]);
+    }
+
+    private int operand() {
+        return this.code[this.index + 1];
+    }
+
+    private int operand(int position) {
+        return this.code[this.index + position];
     }
 
     public void run() {
-        while (this.index < instructions.size()) {
-            Instruction instruction = instructions.get(index);
-
-            switch (instruction.opcode()) {
-                case PLUS,
-                        MINUS,
-                        MULTIPLY,
-                        DIVIDE,
-                        MODULO,
-                        AND,
-                        OR,
-                        NOT_EQUAL,
-                        EQUAL,
-                        GREATER,
-                        GREATER_EQUAL,
-                        LESS,
-                        LESS_EQUAL -> {
-                    this.evalBinary(instruction.opcode());
-                    this.advance();
-                }
-
-                case NOT,
-                        NEGATE -> {
-                    this.evalUnary(instruction.opcode());
-                    this.advance();
+        while (this.index < this.code.length) {
+            if (this.recorder != null) {
+                this.record();
+            }
+
+            Opcode opcode = Opcode.of(this.code[this.index]);
+
+            switch (opcode) {
+                case ADD_F64,
+                        SUB_F64,
+                        MUL_F64,
+                        DIV_F64,
+                        MOD_F64,
+                        EQ_F64,
+                        NE_F64,
+                        GT_F64,
+                        GE_F64,
+                        LT_F64,
+                        LE_F64,
+                        EQ_BOOL,
+                        NE_BOOL -> {
+                    this.evalBinary(opcode);
+                    this.advance(1);
                 }
 
-                case LOAD_LOCAL -> {
-                    int offset = (Integer) instruction.operand();
-                    Object value = this.callStack.loadLocal(offset);
+                case EQ_STR,
+                        NE_STR -> {
+                    Object right = this.popReference();
+                    Object left = this.popReference();
+                    boolean equal = left.equals(right);
 
-                    this.stack.add(value);
-                    this.advance();
+                    this.push(bool(opcode == Opcode.EQ_STR ? equal : !equal));
+                    this.advance(1);
                 }
-                case LOAD_GLOBAL -> {
-                    int offset = (Integer) instruction.operand();
-                    Object value = this.callStack.loadGlobal(offset);
 
-                    this.stack.add(value);
-                    this.advance();
+                case NOT_BOOL,
+                        NEG_F64 -> {
+                    this.evalUnary(opcode);
+                    this.advance(1);
                 }
-                case STORE_LOCAL -> {
-                    int offset = (Integer) instruction.operand();
-                    Object top = this.stack.pop();
 
-                    this.callStack.storeLocal(top, offset);
-                    this.advance();
+                case LOAD_LOCAL -> {
+                    this.push(this.callStack.loadLocalValue(this.operand()));
+                    this.advance(2);
+                }
+                case LOAD_LOCAL_REF -> {
+                    this.pushReference(this.callStack.loadLocal(this.operand()));
+                    this.advance(2);
+                }
+                case LOAD_GLOBAL -> {
+                    this.push(this.callStack.loadGlobalValue(this.operand()));
+                    this.advance(2);
+                }
+                case LOAD_GLOBAL_REF -> {
+                    this.pushReference(this.callStack.loadGlobal(this.operand()));
+                    this.advance(2);
+                }
+                case STORE_LOCAL -> {
+                    this.callStack.storeLocalValue(this.pop(), this.operand());
+                    this.advance(2);
+                }
+                case STORE_LOCAL_REF -> {
+                    this.callStack.storeLocal(this.popReference(), this.operand());
+                    this.advance(2);
                 }
                 case STORE_GLOBAL -> {
-                    int offset = (Integer) instruction.operand();
-                    Object top = this.stack.pop();
-
-                    this.callStack.storeGlobal(top, offset);
-                    this.advance();
+                    this.callStack.storeGlobalValue(this.pop(), this.operand());
+                    this.advance(2);
                 }
-
-                case DECLARE -> {
-                    Object top = this.stack.pop();
-                    this.callStack.declare(top);
-
-                    this.advance();
+                case STORE_GLOBAL_REF -> {
+                    this.callStack.storeGlobal(this.popReference(), this.operand());
+                    this.advance(2);
+                }
+                case STORE_LOCAL_KEEP -> {
+                    this.callStack.storeLocalValue(this.values[this.top - 1], this.operand());
+                    this.advance(2);
+                }
+                case STORE_LOCAL_REF_KEEP -> {
+                    this.callStack.storeLocal(this.references[this.top - 1], this.operand());
+                    this.advance(2);
+                }
+                case STORE_GLOBAL_KEEP -> {
+                    this.callStack.storeGlobalValue(this.values[this.top - 1], this.operand());
+                    this.advance(2);
+                }
+                case STORE_GLOBAL_REF_KEEP -> {
+                    this.callStack.storeGlobal(this.references[this.top - 1], this.operand());
+                    this.advance(2);
                 }
-                case PUSH_CONST -> {
-                    this.stack.push(instruction.operand());
 
-                    this.advance();
+                case PUSH_CONST -> {
+                    this.push(this.numbers[this.operand()]);
+                    this.advance(2);
+                }
+                case PUSH_CONST_REF -> {
+                    this.pushReference(this.constants[this.operand()]);
+                    this.advance(2);
+                }
+                case POP -> {
+                    this.top--;
+                    this.advance(1);
                 }
 
                 case JUMP_IF_FALSE -> {
-                    Object top = this.stack.pop();
-
-                    if ((Boolean) top == false) {
-                        this.jumpTo(instruction.operand());
+                    if (this.pop() == 0) {
+                        this.jumpTo(this.operand());
                     } else {
-                        this.advance();
+                        this.advance(2);
                     }
+                }
+                case JUMP_IF_TRUE -> {
+                    if (this.pop() != 0) {
+                        this.jumpTo(this.operand());
+                    } else {
+                        this.advance(2);
+                    }
+                }
+                case JUMP_UNLESS_EQ_F64,
+                        JUMP_UNLESS_NE_F64,
+                        JUMP_UNLESS_GT_F64,
+                        JUMP_UNLESS_GE_F64,
+                        JUMP_UNLESS_LT_F64,
+                        JUMP_UNLESS_LE_F64 -> {
+                    double right = this.pop();
+                    double left = this.pop();
+
+                    boolean condition = switch (opcode) {
+                        case JUMP_UNLESS_EQ_F64 -> same(left, right);
+                        case JUMP_UNLESS_NE_F64 -> !same(left, right);
+                        case JUMP_UNLESS_GT_F64 -> left > right;
+                        case JUMP_UNLESS_GE_F64 -> left >= right;
+                        case JUMP_UNLESS_LT_F64 -> left < right;
+                        default -> left <= right;
+                    };
 
+                    if (condition) {
+                        this.advance(2);
+                    } else {
+                        this.jumpTo(this.operand());
+                    }
                 }
                 case JUMP -> {
-                    this.jumpTo(instruction.operand());
+                    int target = this.operand();
+
+                    if (target < this.index && this.traces != null) {
+                        this.backEdge(target);
+                    } else {
+                        this.jumpTo(target);
+                    }
+                }
+
+                case PUSH_FUNCTION -> {
+                    this.pushReference(this.functions[this.operand()]);
+                    this.advance(3);
+                }
+                case CALL -> {
+                    this.call(this.operand(), this.index + 2);
+                }
+                case TAIL_CALL -> {
+                    this.tailCall(this.operand());
+                }
+                case RETURN -> {
+                    this.ret();
+                }
+                case JUMP_IF_DECLARED -> {
+                    if (this.callStack.declared(this.operand(1))) {
+                        this.jumpTo(this.operand(2));
+                    } else {
+                        this.advance(3);
+                    }
                 }
 
-                case ENTER_SCOPE -> {
-                    this.callStack.enterScope();
-                    this.advance();
+                case PRINT_F64 -> {
+                    System.out.println(this.pop());
+                    this.advance(1);
+                }
+                case PRINT_BOOL -> {
+                    System.out.println(this.pop() != 0);
+                    this.advance(1);
                 }
-                case EXIT_SCOPE -> {
-                    this.callStack.exitScope();
-                    this.advance();
+                case PRINT_REF -> {
+                    System.out.println(this.popReference());
+                    this.advance(1);
                 }
-                case PRINT -> {
-                    Object top = this.stack.pop();
-                    System.out.println(top);
 
-                    this.advance();
+                case INC_LOCAL,
+                        DEC_LOCAL -> {
+                    int offset = this.operand(1);
+                    double value = this.callStack.loadLocalValue(offset);
+                    double step = this.numbers[this.operand(2)];
+
+                    this.callStack.storeLocalValue(opcode == Opcode.INC_LOCAL ? value + step : value - step, offset);
+                    this.advance(3);
+                }
+                case JUMP_UNLESS_LOCAL_LT_CONST,
+                        JUMP_UNLESS_LOCAL_LE_CONST,
+                        JUMP_UNLESS_LOCAL_GT_CONST,
+                        JUMP_UNLESS_LOCAL_GE_CONST -> {
+                    double left = this.callStack.loadLocalValue(this.operand(1));
+                    double right = this.numbers[this.operand(2)];
+
+                    boolean condition = switch (opcode) {
+                        case JUMP_UNLESS_LOCAL_LT_CONST -> left < right;
+                        case JUMP_UNLESS_LOCAL_LE_CONST -> left <= right;
+                        case JUMP_UNLESS_LOCAL_GT_CONST -> left > right;
+                        default -> left >= right;
+                    };
+
+                    if (condition) {
+                        this.advance(4);
+                    } else {
+                        this.jumpTo(this.operand(3));
+                    }
                 }
             }
 
@@ -131,35 +410,403 @@ public class KaoriVM {
 
     }
 
+    /*
+     * Alternative to run that links the program into one handler per
+     * instruction first, each with its operands bound and computing the
+     * index that runs next, so every step is a single call with no decoding
+     * or opcode switch. The trace tier only hooks into run
+     */
+    public void runThreaded() {
+        Handler[] handlers = this.link();
+        int index = 0;
+
+        this.bind();
+
+        while (index < handlers.length) {
+            index = handlers[index].execute();
+        }
+
+        this.index = index;
+    }
+
+    /* Handlers indexed by code offset, operand offsets are left null */
+    private Handler[] link() {
+        Handler[] handlers = new Handler[this.code.length];
+        int index = 0;
+
+        while (index < this.code.length) {
+            handlers[index] = this.handler(index);
+            index += Opcode.of(this.code[index]).size();
+        }
+
+        return handlers;
+    }
+
+    /* Loop back edges count towards recording a trace, or enter the loop's trace once there is one */
+    private void backEdge(int header) {
+        this.jumpTo(header);
+
+        if (this.recorder != null && this.recorder.header != header) {
+            this.abort();
+        }
+
+        Trace trace = this.traces[header];
+
+        if (trace != null) {
+            this.bind();
+            this.jumpTo(trace.run());
+            return;
+        }
+
+        if (this.recorder == null && this.counters[header] >= 0
+                && ++this.counters[header] >= this.settings.threshold()) {
+            this.recorder = new TraceRecorder(header);
+        }
+    }
+
+    /* Calls change the frame the trace's slots are bound to, so they end the recording */
+    private void record() {
+        Opcode opcode = Opcode.of(this.code[this.index]);
+
+        if (this.index == this.recorder.header && this.recorder.size() > 0) {
+            this.install();
+        } else if (this.recorder.size() == this.settings.maxLength() || opcode == Opcode.CALL
+                || opcode == Opcode.TAIL_CALL || opcode == Opcode.RETURN) {
+            this.abort();
+        } else {
+            this.recorder.add(this.index);
+        }
+    }
+
+    private void install() {
+        int header = this.recorder.header;
+        int[] indexes = this.recorder.indexes();
+        Handler[] steps = new Handler[indexes.length];
+        int[] next = new int[indexes.length];
+
+        for (int i = 0; i < indexes.length; i++) {
+            steps[i] = this.handler(indexes[i]);
+            next[i] = i + 1 < indexes.length ? indexes[i + 1] : header;
+        }
+
+        Trace trace = new Trace(header, steps, next);
+
+        this.traces[header] = trace;
+        this.stats.recorded(trace);
+        this.recorder = null;
+    }
+
+    /* Loops that can't be traced, like the outer loop of a nest, are never recorded again */
+    private void abort() {
+        this.counters[this.recorder.header] = Integer.MIN_VALUE;
+        this.stats.abort();
+        this.recorder = null;
+    }
+
+    /* Binds the instruction at index and its operands into a handler returning the next instruction */
+    private Handler handler(int index) {
+        Opcode opcode = Opcode.of(this.code[index]);
+        int next = index + opcode.size();
+        int a = opcode.operands > 0 ? this.code[index + 1] : 0;
+        int b = opcode.operands > 1 ? this.code[index + 2] : 0;
+        int c = opcode.operands > 2 ? this.code[index + 3] : 0;
+
+        return switch (opcode) {
+            case ADD_F64 -> () -> {
+                double right = this.pop();
+                this.push(this.pop() + right);
+                return next;
+            };
+            case SUB_F64 -> () -> {
+                double right = this.pop();
+                this.push(this.pop() - right);
+                return next;
+            };
+            case MUL_F64 -> () -> {
+                double right = this.pop();
+                this.push(this.pop() * right);
+                return next;
+            };
+            case DIV_F64 -> () -> {
+                double right = this.pop();
+                this.push(this.pop() / right);
+                return next;
+            };
+            case MOD_F64 -> () -> {
+                double right = this.pop();
+                this.push(this.pop() % right);
+                return next;
+            };
+            case NEG_F64 -> () -> {
+                this.push(-this.pop());
+                return next;
+            };
+
+            case EQ_F64 -> () -> {
+                double right = this.pop();
+                this.push(bool(same(this.pop(), right)));
+                return next;
+            };
+            case NE_F64 -> () -> {
+                double right = this.pop();
+                this.push(bool(!same(this.pop(), right)));
+                return next;
+            };
+            case GT_F64 -> () -> {
+                double right = this.pop();
+                this.push(bool(this.pop() > right));
+                return next;
+            };
+            case GE_F64 -> () -> {
+                double right = this.pop();
+                this.push(bool(this.pop() >= right));
+                return next;
+            };
+            case LT_F64 -> () -> {
+                double right = this.pop();
+                this.push(bool(this.pop() < right));
+                return next;
+            };
+            case LE_F64 -> () -> {
+                double right = this.pop();
+                this.push(bool(this.pop() <= right));
+                return next;
+            };
+
+            case NOT_BOOL -> () -> {
+                this.push(bool(this.pop() == 0));
+                return next;
+            };
+            case EQ_BOOL -> () -> {
+                double right = this.pop();
+                this.push(bool(this.pop() == right));
+                return next;
+            };
+            case NE_BOOL -> () -> {
+                double right = this.pop();
+                this.push(bool(this.pop() != right));
+                return next;
+            };
+
+            case EQ_STR -> () -> {
+                Object right = this.popReference();
+                this.push(bool(this.popReference().equals(right)));
+                return next;
+            };
+            case NE_STR -> () -> {
+                Object right = this.popReference();
+                this.push(bool(!this.popReference().equals(right)));
+                return next;
+            };
+
+            case LOAD_LOCAL -> () -> {
+                this.push(this.slots[this.base + a]);
+                return next;
+            };
+            case LOAD_LOCAL_REF -> () -> {
+                this.pushReference(this.callStack.loadLocal(a));
+                return next;
+            };
+            case LOAD_GLOBAL -> () -> {
+                this.push(this.globals[a]);
+                return next;
+            };
+            case LOAD_GLOBAL_REF -> () -> {
+                this.pushReference(this.callStack.loadGlobal(a));
+                return next;
+            };
+            case STORE_LOCAL -> () -> {
+                this.slots[this.base + a] = this.pop();
+                return next;
+            };
+            case STORE_LOCAL_REF -> () -> {
+                this.callStack.storeLocal(this.popReference(), a);
+                return next;
+            };
+            case STORE_GLOBAL -> () -> {
+                this.globals[a] = this.pop();
+                return next;
+            };
+            case STORE_GLOBAL_REF -> () -> {
+                this.callStack.storeGlobal(this.popReference(), a);
+                return next;
+            };
+            case STORE_LOCAL_KEEP -> () -> {
+                this.slots[this.base + a] = this.values[this.top - 1];
+                return next;
+            };
+            case STORE_LOCAL_REF_KEEP -> () -> {
+                this.callStack.storeLocal(this.references[this.top - 1], a);
+                return next;
+            };
+            case STORE_GLOBAL_KEEP -> () -> {
+                this.globals[a] = this.values[this.top - 1];
+                return next;
+            };
+            case STORE_GLOBAL_REF_KEEP -> () -> {
+                this.callStack.storeGlobal(this.references[this.top - 1], a);
+                return next;
+            };
+
+            case PUSH_CONST -> {
+                double value = this.numbers[a];
+
+                yield () -> {
+                    this.push(value);
+                    return next;
+                };
+            }
+            case PUSH_CONST_REF -> {
+                Object value = this.constants[a];
+
+                yield () -> {
+                    this.pushReference(value);
+                    return next;
+                };
+            }
+            case POP -> () -> {
+                this.top--;
+                return next;
+            };
+
+            case JUMP -> () -> a;
+            case JUMP_IF_FALSE -> () -> this.pop() == 0 ? a : next;
+            case JUMP_IF_TRUE -> () -> this.pop() != 0 ? a : next;
+            case JUMP_UNLESS_EQ_F64 -> () -> {
+                double right = this.pop();
+                return same(this.pop(), right) ? next : a;
+            };
+            case JUMP_UNLESS_NE_F64 -> () -> {
+                double right = this.pop();
+                return !same(this.pop(), right) ? next : a;
+            };
+            case JUMP_UNLESS_GT_F64 -> () -> {
+                double right = this.pop();
+                return this.pop() > right ? next : a;
+            };
+            case JUMP_UNLESS_GE_F64 -> () -> {
+                double right = this.pop();
+                return this.pop() >= right ? next : a;
+            };
+            case JUMP_UNLESS_LT_F64 -> () -> {
+                double right = this.pop();
+                return this.pop() < right ? next : a;
+            };
+            case JUMP_UNLESS_LE_F64 -> () -> {
+                double right = this.pop();
+                return this.pop() <= right ? next : a;
+            };
+
+            case PUSH_FUNCTION -> {
+                Function function = this.functions[a];
+
+                yield () -> {
+                    this.pushReference(function);
+                    return next;
+                };
+            }
+            case JUMP_IF_DECLARED -> () -> this.callStack.declared(a) ? b : next;
+
+            /* Traces never hold these, they move the frame along for runThreaded */
+            case CALL -> () -> {
+                this.call(a, next);
+                this.bind();
+                return this.index;
+            };
+            case TAIL_CALL -> () -> {
+                this.tailCall(a);
+                this.bind();
+                return this.index;
+            };
+            case RETURN -> () -> {
+                this.ret();
+                this.bind();
+                return this.index;
+            };
+
+            case PRINT_F64 -> () -> {
+                System.out.println(this.pop());
+                return next;
+            };
+            case PRINT_BOOL -> () -> {
+                System.out.println(this.pop() != 0);
+                return next;
+            };
+            case PRINT_REF -> () -> {
+                System.out.println(this.popReference());
+                return next;
+            };
+
+            case INC_LOCAL -> {
+                double step = this.numbers[b];
+
+                yield () -> {
+                    this.slots[this.base + a] += step;
+                    return next;
+                };
+            }
+            case DEC_LOCAL -> {
+                double step = this.numbers[b];
+
+                yield () -> {
+                    this.slots[this.base + a] -= step;
+                    return next;
+                };
+            }
+            case JUMP_UNLESS_LOCAL_LT_CONST -> {
+                double right = this.numbers[b];
+
+                yield () -> this.slots[this.base + a] < right ? next : c;
+            }
+            case JUMP_UNLESS_LOCAL_LE_CONST -> {
+                double right = this.numbers[b];
+
+                yield () -> this.slots[this.base + a] <= right ? next : c;
+            }
+            case JUMP_UNLESS_LOCAL_GT_CONST -> {
+                double right = this.numbers[b];
+
+                yield () -> this.slots[this.base + a] > right ? next : c;
+            }
+            case JUMP_UNLESS_LOCAL_GE_CONST -> {
+                double right = this.numbers[b];
+
+                yield () -> this.slots[this.base + a] >= right ? next : c;
+            }
+        };
+    }
+
     public void evalBinary(Opcode opcode) {
-        Object right = this.stack.pop();
-        Object left = this.stack.pop();
+        double right = this.pop();
+        double left = this.pop();
 
         switch (opcode) {
-            case PLUS -> this.stack.push((Double) left + (Double) right);
-            case MINUS -> this.stack.push((Double) left - (Double) right);
-            case MULTIPLY -> this.stack.push((Double) left * (Double) right);
-            case DIVIDE -> this.stack.push((Double) left / (Double) right);
-            case MODULO -> this.stack.push((Double) left % (Double) right);
-
-            case AND -> this.stack.push((Boolean) left && (Boolean) right);
-            case OR -> this.stack.push((Boolean) left || (Boolean) right);
-
-            case NOT_EQUAL -> this.stack.push(!left.equals(right));
-            case EQUAL -> this.stack.push(left.equals(right));
-            case GREATER -> this.stack.push((Double) left > (Double) right);
-            case GREATER_EQUAL -> this.stack.push((Double) left >= (Double) right);
-            case LESS -> this.stack.push((Double) left < (Double) right);
-            case LESS_EQUAL -> this.stack.push((Double) left <= (Double) right);
+            case ADD_F64 -> this.push(left + right);
+            case SUB_F64 -> this.push(left - right);
+            case MUL_F64 -> this.push(left * right);
+            case DIV_F64 -> this.push(left / right);
+            case MOD_F64 -> this.push(left % right);
+
+            case EQ_BOOL -> this.push(bool(left == right));
+            case NE_BOOL -> this.push(bool(left != right));
+
+            case EQ_F64 -> this.push(bool(same(left, right)));
+            case NE_F64 -> this.push(bool(!same(left, right)));
+            case GT_F64 -> this.push(bool(left > right));
+            case GE_F64 -> this.push(bool(left >= right));
+            case LT_F64 -> this.push(bool(left < right));
+            case LE_F64 -> this.push(bool(left <= right));
+            default -> throw new IllegalStateException("Unhandled binary opcode: " + opcode);
         }
     }
 
     public void evalUnary(Opcode opcode) {
-        Object left = this.stack.pop();
+        double left = this.pop();
 
         switch (opcode) {
-            case NOT -> this.stack.push(!(Boolean) left);
-            case NEGATE -> this.stack.push(-(Double) left);
+            case NOT_BOOL -> this.push(bool(left == 0));
+            case NEG_F64 -> this.push(-left);
+            default -> throw new IllegalStateException("Unhandled unary opcode: " + opcode);
         }
     }
 }
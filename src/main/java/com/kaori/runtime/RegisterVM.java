@@ -0,0 +1,229 @@
+package com.kaori.runtime;
+
+import java.util.Arrays;
+
+import com.kaori.compiler.register.RegisterBytecode;
+import com.kaori.compiler.register.RegisterFunction;
+import com.kaori.compiler.register.RegisterOpcode;
+import com.kaori.error.KaoriError;
+
+/*
+ * Runs register code one frame at a time. Every call gets frames of its
+ * function's register count, copied from a template that already holds the
+ * function's constants, and the caller's frames wait on the frame stack
+ * until RETURN writes the default result to the caller's destination
+ */
+public class RegisterVM {
+    private final int[] code;
+    private final RegisterFunction[] functions;
+    /* frames of each function with only its constants filled in, indexed like functions */
+    private final double[][] valueTemplates;
+    private final Object[][] referenceTemplates;
+    private final double[] globals;
+    private final Object[] globalReferences;
+    /* frames of the callers, the return address and result slot of each call and the arguments it was given */
+    private double[][] valueFrames;
+    private Object[][] referenceFrames;
+    private int[] returns;
+    private int[] destinations;
+    private int[] given;
+    private int calls;
+    private final int maxDepth;
+    private int index;
+
+    public RegisterVM(RegisterBytecode bytecode) {
+        this(bytecode, CallStack.DEFAULT_MAX_DEPTH);
+    }
+
+    /* maxDepth is the number of calls that can be in progress at once */
+    public RegisterVM(RegisterBytecode bytecode, int maxDepth) {
+        this.code = bytecode.code();
+        this.functions = bytecode.functions();
+        this.valueTemplates = new double[this.functions.length][];
+        this.referenceTemplates = new Object[this.functions.length][];
+        this.globals = new double[bytecode.registers()];
+        this.globalReferences = new Object[bytecode.registers()];
+        this.valueFrames = new double[64][];
+        this.referenceFrames = new Object[64][];
+        this.returns = new int[64];
+        this.destinations = new int[64];
+        this.given = new int[64];
+        this.calls = 0;
+        this.maxDepth = maxDepth;
+        this.index = 0;
+
+        load(bytecode.constants(), this.globals, this.globalReferences);
+
+        for (RegisterFunction function : this.functions) {
+            int size = function.registers() + function.constants().length;
+
+            this.valueTemplates[function.index()] = new double[size];
+            this.referenceTemplates[function.index()] = new Object[size];
+
+            load(function.constants(), this.valueTemplates[function.index()],
+                    this.referenceTemplates[function.index()]);
+        }
+    }
+
+    /* Fills the constant slots at the end of a frame */
+    private static void load(Object[] constants, double[] values, Object[] references) {
+        int base = values.length - constants.length;
+
+        for (int i = 0; i < constants.length; i++) {
+            if (constants[i] instanceof Double number) {
+                values[base + i] = number;
+            } else if (constants[i] instanceof Boolean bool) {
+                values[base + i] = bool ? 1 : 0;
+            } else {
+                references[base + i] = constants[i];
+            }
+        }
+    }
+
+    private static double bool(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    /* Keeps Double.equals semantics, so NaN == NaN and 0.0 != -0.0 */
+    private static boolean same(double left, double right) {
+        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+    }
+
+    /* Saves the caller's frames and where the result goes, the callee's frames are set up by run */
+    private void enter(double[] r, Object[] references, int returnAddress, int destination, int arguments) {
+        if (this.calls + 1 > this.maxDepth) {
+            throw KaoriError.StackOverflowError(this.maxDepth);
+        }
+
+        if (this.calls == this.returns.length) {
+            this.valueFrames = Arrays.copyOf(this.valueFrames, this.calls * 2);
+            this.referenceFrames = Arrays.copyOf(this.referenceFrames, this.calls * 2);
+            this.returns = Arrays.copyOf(this.returns, this.calls * 2);
+            this.destinations = Arrays.copyOf(this.destinations, this.calls * 2);
+            this.given = Arrays.copyOf(this.given, this.calls * 2);
+        }
+
+        this.valueFrames[this.calls] = r;
+        this.referenceFrames[this.calls] = references;
+        this.returns[this.calls] = returnAddress;
+        this.destinations[this.calls] = destination;
+        this.given[this.calls] = arguments;
+        this.calls++;
+    }
+
+    public void run() {
+        int[] code = this.code;
+        double[] r = this.globals;
+        Object[] references = this.globalReferences;
+        double[] globals = this.globals;
+        Object[] globalReferences = this.globalReferences;
+        int index = this.index;
+
+        while (index < code.length) {
+            RegisterOpcode opcode = RegisterOpcode.of(code[index]);
+
+            switch (opcode) {
+                case MOVE -> r[code[index + 1]] = r[code[index + 2]];
+                case MOVE_REF -> references[code[index + 1]] = references[code[index + 2]];
+
+                case ADD_F64 -> r[code[index + 1]] = r[code[index + 2]] + r[code[index + 3]];
+                case SUB_F64 -> r[code[index + 1]] = r[code[index + 2]] - r[code[index + 3]];
+                case MUL_F64 -> r[code[index + 1]] = r[code[index + 2]] * r[code[index + 3]];
+                case DIV_F64 -> r[code[index + 1]] = r[code[index + 2]] / r[code[index + 3]];
+                case MOD_F64 -> r[code[index + 1]] = r[code[index + 2]] % r[code[index + 3]];
+                case NEG_F64 -> r[code[index + 1]] = -r[code[index + 2]];
+
+                case EQ_F64 -> r[code[index + 1]] = bool(same(r[code[index + 2]], r[code[index + 3]]));
+                case NE_F64 -> r[code[index + 1]] = bool(!same(r[code[index + 2]], r[code[index + 3]]));
+                case GT_F64 -> r[code[index + 1]] = bool(r[code[index + 2]] > r[code[index + 3]]);
+                case GE_F64 -> r[code[index + 1]] = bool(r[code[index + 2]] >= r[code[index + 3]]);
+                case LT_F64 -> r[code[index + 1]] = bool(r[code[index + 2]] < r[code[index + 3]]);
+                case LE_F64 -> r[code[index + 1]] = bool(r[code[index + 2]] <= r[code[index + 3]]);
+
+                case NOT_BOOL -> r[code[index + 1]] = bool(r[code[index + 2]] == 0);
+                case EQ_BOOL -> r[code[index + 1]] = bool(r[code[index + 2]] == r[code[index + 3]]);
+                case NE_BOOL -> r[code[index + 1]] = bool(r[code[index + 2]] != r[code[index + 3]]);
+
+                case EQ_STR -> r[code[index + 1]] = bool(references[code[index + 2]]
+                        .equals(references[code[index + 3]]));
+                case NE_STR -> r[code[index + 1]] = bool(!references[code[index + 2]]
+                        .equals(references[code[index + 3]]));
+
+                case PRINT_F64 -> System.out.println(r[code[index + 1]]);
+                case PRINT_BOOL -> System.out.println(r[code[index + 1]] != 0);
+                case PRINT_REF -> System.out.println(references[code[index + 1]]);
+
+                case JUMP -> {
+                    index = code[index + 1];
+                    continue;
+                }
+                case JUMP_IF_FALSE -> {
+                    if (r[code[index + 1]] == 0) {
+                        index = code[index + 2];
+                        continue;
+                    }
+                }
+                case JUMP_IF_TRUE -> {
+                    if (r[code[index + 1]] != 0) {
+                        index = code[index + 2];
+                        continue;
+                    }
+                }
+
+                case FUNCTION -> references[code[index + 1]] = this.functions[code[index + 2]];
+                case GET_GLOBAL -> {
+                    r[code[index + 1]] = globals[code[index + 2]];
+                    references[code[index + 1]] = globalReferences[code[index + 2]];
+                }
+                case SET_GLOBAL -> {
+                    globals[code[index + 1]] = r[code[index + 2]];
+                    globalReferences[code[index + 1]] = references[code[index + 2]];
+                }
+                case CALL, TAIL_CALL -> {
+                    RegisterFunction function = (RegisterFunction) references[code[index + 1]];
+                    int first = code[index + 2];
+                    int arguments = code[index + 3];
+                    double[] callee = this.valueTemplates[function.index()].clone();
+                    Object[] calleeReferences = this.referenceTemplates[function.index()].clone();
+
+                    System.arraycopy(r, first, callee, 0, arguments);
+                    System.arraycopy(references, first, calleeReferences, 0, arguments);
+
+                    if (opcode == RegisterOpcode.CALL) {
+                        this.enter(r, references, index + opcode.size(), code[index + 4], arguments);
+                    } else {
+                        this.given[this.calls - 1] = arguments;
+                    }
+
+                    r = callee;
+                    references = calleeReferences;
+                    index = function.entry();
+                    continue;
+                }
+                case RETURN -> {
+                    this.calls--;
+                    r = this.valueFrames[this.calls];
+                    references = this.referenceFrames[this.calls];
+                    this.valueFrames[this.calls] = null;
+                    this.referenceFrames[this.calls] = null;
+
+                    r[this.destinations[this.calls]] = 0;
+                    references[this.destinations[this.calls]] = null;
+
+                    index = this.returns[this.calls];
+                    continue;
+                }
+                case JUMP_IF_DECLARED -> {
+                    if (this.given[this.calls - 1] > code[index + 1]) {
+                        index = code[index + 2];
+                        continue;
+                    }
+                }
+            }
+
+            index += opcode.size();
+        }
+
+        this.index = index;
+    }
+}
@@ -0,0 +1,59 @@
+package com.kaori.runtime;
+
+/*
+ * A compiled loop trace. Every step is a pre-bound handler and next holds
+ * the instruction the recording went to after it, so a step returning
+ * anything else is a guard failure (a branch going the other way than it
+ * did while recording) and the trace exits to the interpreter there
+ */
+public class Trace {
+    private final int header;
+    private final Handler[] steps;
+    private final int[] next;
+    private long entries;
+    private long iterations;
+
+    Trace(int header, Handler[] steps, int[] next) {
+        this.header = header;
+        this.steps = steps;
+        this.next = next;
+        this.entries = 0;
+        this.iterations = 0;
+    }
+
+    /* Runs the loop until a guard fails and returns the instruction to resume at */
+    int run() {
+        Handler[] steps = this.steps;
+        int[] next = this.next;
+
+        this.entries++;
+
+        while (true) {
+            for (int i = 0; i < steps.length; i++) {
+                int index = steps[i].execute();
+
+                if (index != next[i]) {
+                    return index;
+                }
+            }
+
+            this.iterations++;
+        }
+    }
+
+    public int header() {
+        return this.header;
+    }
+
+    public int length() {
+        return this.steps.length;
+    }
+
+    public long entries() {
+        return this.entries;
+    }
+
+    public long iterations() {
+        return this.iterations;
+    }
+}
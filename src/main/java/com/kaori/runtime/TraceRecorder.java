@@ -0,0 +1,33 @@
+package com.kaori.runtime;
+
+import java.util.Arrays;
+
+/* Collects the instruction indexes executed from a loop header until control gets back to it */
+class TraceRecorder {
+    final int header;
+    private int[] indexes;
+    private int size;
+
+    TraceRecorder(int header) {
+        this.header = header;
+        this.indexes = new int[32];
+        this.size = 0;
+    }
+
+    void add(int index) {
+        if (this.size == this.indexes.length) {
+            this.indexes = Arrays.copyOf(this.indexes, this.size * 2);
+        }
+
+        this.indexes[this.size] = index;
+        this.size++;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    int[] indexes() {
+        return Arrays.copyOf(this.indexes, this.size);
+    }
+}
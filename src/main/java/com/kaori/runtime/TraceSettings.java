@@ -0,0 +1,14 @@
+package com.kaori.runtime;
+
+/*
+ * threshold is the number of times a loop has to jump back to its header
+ * before it gets recorded, maxLength caps the instructions in one trace
+ */
+public record TraceSettings(int threshold, int maxLength) {
+    public static final int DEFAULT_THRESHOLD = 1_000;
+    public static final int DEFAULT_MAX_LENGTH = 512;
+
+    public TraceSettings() {
+        this(DEFAULT_THRESHOLD, DEFAULT_MAX_LENGTH);
+    }
+}
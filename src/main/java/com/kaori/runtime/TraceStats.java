@@ -0,0 +1,44 @@
+package com.kaori.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TraceStats {
+    private final List<Trace> traces;
+    private int aborted;
+
+    TraceStats() {
+        this.traces = new ArrayList<>();
+        this.aborted = 0;
+    }
+
+    void recorded(Trace trace) {
+        this.traces.add(trace);
+    }
+
+    void abort() {
+        this.aborted++;
+    }
+
+    public List<Trace> traces() {
+        return this.traces;
+    }
+
+    public int aborted() {
+        return this.aborted;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+
+        report.append(String.format("traces: %d recorded, %d aborted", this.traces.size(), this.aborted));
+
+        for (Trace trace : this.traces) {
+            report.append(String.format("%n  loop at %04d: %d instructions, entered %d times, %d iterations",
+                    trace.header(), trace.length(), trace.entries(), trace.iterations()));
+        }
+
+        return report.toString();
+    }
+}
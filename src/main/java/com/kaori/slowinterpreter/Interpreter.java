@@ -12,18 +12,34 @@ import com.kaori.runtime.CallStack;
 
 public class Interpreter extends Visitor<Object> {
     public final CallStack callStack;
+    /* call left behind by a call in tail position */
+    private FunctionObject tailFunction;
+    private List<Object> tailArguments;
 
     public Interpreter(List<DeclarationAST> declarations) {
+        this(declarations, CallStack.DEFAULT_MAX_DEPTH);
+    }
+
+    public Interpreter(List<DeclarationAST> declarations, int maxDepth) {
         super(declarations);
-        this.callStack = new CallStack();
+        this.callStack = new CallStack(maxDepth);
+        this.tailFunction = null;
+        this.tailArguments = null;
     }
 
     @Override
     public Object visitBinaryExpression(ExpressionAST.BinaryExpression expression) {
         Object left = this.visit(expression.left());
-        Object right = this.visit(expression.right());
         ExpressionAST.BinaryOperator operator = expression.operator();
 
+        /* && and || leave the right operand out once the left one decides the result */
+        if (operator == ExpressionAST.BinaryOperator.AND && !(Boolean) left
+                || operator == ExpressionAST.BinaryOperator.OR && (Boolean) left) {
+            return left;
+        }
+
+        Object right = this.visit(expression.right());
+
         return switch (operator) {
             case PLUS -> (Double) left + (Double) right;
             case MINUS -> (Double) left - (Double) right;
@@ -51,8 +67,7 @@ public class Interpreter extends Visitor<Object> {
             case GREATER_EQUAL -> (Double) left >= (Double) right;
             case LESS -> (Double) left < (Double) right;
             case LESS_EQUAL -> (Double) left <= (Double) right;
-            case AND -> (Boolean) left && (Boolean) right;
-            case OR -> (Boolean) left || (Boolean) right;
+            case AND, OR -> (Boolean) right;
             case EQUAL -> left.equals(right);
             case NOT_EQUAL -> !left.equals(right);
         };
@@ -95,6 +110,12 @@ public class Interpreter extends Visitor<Object> {
         return value;
     }
 
+    /*
+     * A call in tail position only evaluates its arguments and leaves them
+     * for the call that is running, which unwinds back here and runs the
+     * callee in the same frame, so tail recursion needs no Java or call
+     * stack space
+     */
     @Override
     public Object visitFunctionCall(ExpressionAST.FunctionCall expression) {
         FunctionObject functionObject = (FunctionObject) this.visit(expression.callee());
@@ -111,18 +132,37 @@ public class Interpreter extends Visitor<Object> {
 
         }
 
-        this.callStack.enterFunction();
-
-        for (int i = 0; i < functionObject.parameters().size(); i++) {
-            Object defaultValue = this.visit(functionObject.parameters().get(i).right());
-            Object argument = arguments.get(i);
+        if (expression.tail()) {
+            this.tailFunction = functionObject;
+            this.tailArguments = arguments;
 
-            this.callStack.declare(argument == null ? defaultValue : argument);
+            return null;
         }
 
-        this.visitDeclarations(functionObject.declarations());
+        while (functionObject != null) {
+            this.callStack.enterFunction();
+
+            for (int i = 0; i < functionObject.parameters().size(); i++) {
+                Object defaultValue = this.visit(functionObject.parameters().get(i).right());
+                Object argument = arguments.get(i);
+
+                this.callStack.declare(argument == null ? defaultValue : argument);
+            }
+
+            /* each call nests a few visits on the Java stack, which runs out well before maxDepth calls */
+            try {
+                this.visitDeclarations(functionObject.declarations());
+            } catch (StackOverflowError error) {
+                throw KaoriError.StackOverflowError();
+            }
+
+            this.callStack.exitFunction();
 
-        this.callStack.exitFunction();
+            functionObject = this.tailFunction;
+            arguments = this.tailArguments;
+            this.tailFunction = null;
+            this.tailArguments = null;
+        }
 
         return null;
     }